@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.util.StringTokenizer;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Application specific imports
+// none
+
+/**
+ * Entry point for the benchmark jar that runs the selected benchmarks once
+ * for each of a list of thread counts.
+ * <P>
+ *
+ * JMH only allows a single thread count per run, but contention problems
+ * only show up when comparing several. The thread counts are taken from
+ * the system property <CODE>bench.threads</CODE> as a comma separated list,
+ * defaulting to <CODE>1,4</CODE>. All other arguments are the normal JMH
+ * command line options, so for example
+ * <PRE>
+ *   java -Dbench.threads=1,2,8 -jar benchmarks.jar URLParse -p segments=4
+ * </PRE>
+ * runs just the URL parsing benchmarks with 4 path segments at 1, 2 and 8
+ * threads. Giving an explicit <CODE>-t</CODE> option skips the sweep.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+public class BenchmarkMain
+{
+  /** Property holding the list of thread counts to run */
+  private static final String THREADS_PROP = "bench.threads";
+
+  /** The thread counts used when the property is not set */
+  private static final String DEFAULT_THREADS = "1,4";
+
+  /**
+   * Run the benchmarks.
+   *
+   * @param args The JMH command line options
+   */
+  public static void main(String[] args)
+    throws RunnerException, CommandLineOptionException
+  {
+    CommandLineOptions cmd_opts = new CommandLineOptions(args);
+
+    if(cmd_opts.getThreads().hasValue())
+    {
+      new Runner(cmd_opts).run();
+      return;
+    }
+
+    String thread_list = System.getProperty(THREADS_PROP, DEFAULT_THREADS);
+    StringTokenizer strtok = new StringTokenizer(thread_list, ", ");
+
+    while(strtok.hasMoreTokens())
+    {
+      int threads = Integer.parseInt(strtok.nextToken());
+
+      Options opts = new OptionsBuilder()
+        .parent(cmd_opts)
+        .threads(threads)
+        .build();
+
+      new Runner(opts).run();
+    }
+  }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Application specific imports
+// none
+
+/**
+ * Cost of finding the content handler for a MIME type.
+ * <P>
+ *
+ * Lives in the <CODE>org.ietf.uri</CODE> package so that it can call the
+ * package private <CODE>ResourceManager</CODE> directly. The handlers from
+ * urilib-net are placed on the search path. The input size is the number
+ * of extra, empty packages placed in front of the real one, since each is
+ * searched on every lookup. The unknown type shows the cost of a miss,
+ * which has to search every package of both lists.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentHandlerBenchmark
+{
+  /** The package holding the urilib-net content handlers */
+  private static final String NET_CONTENT_PKG = "vlc.net.content";
+
+  /** The MIME type to look up */
+  @Param({"text/plain", "text/uri-list", "application/x-unknown"})
+  public String contentType;
+
+  /** Number of packages that don't hold handlers searched before the real one */
+  @Param({"0", "8"})
+  public int extraPackages;
+
+  /** The classes asked for in the class based lookup */
+  private Class[] classes;
+
+  @Setup
+  public void setup()
+  {
+    StringBuffer buf = new StringBuffer();
+
+    for(int i = 0; i < extraPackages; i++)
+    {
+      buf.append("bench.missing.pkg");
+      buf.append(i);
+      buf.append('|');
+    }
+
+    buf.append(NET_CONTENT_PKG);
+
+    System.setProperty("uri.content.handler.pkgs", buf.toString());
+
+    classes = new Class[] { String.class };
+  }
+
+  @Benchmark
+  public Object getContentHandler()
+  {
+    return ResourceManager.getContentHandler(contentType);
+  }
+
+  @Benchmark
+  public Object getContentHandlerByClass()
+  {
+    return ResourceManager.getContentHandler(contentType, classes);
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Application specific imports
+import org.ietf.uri.resolve.ConfigErrorException;
+
+/**
+ * Cost of selecting a URN resolver for a namespace.
+ * <P>
+ *
+ * A number of local resolvers are registered, each of which only handles
+ * its own namespace. The namespace looked up belongs to the last one
+ * registered, which is the worst case for a linear search. The input size
+ * is the number of resolvers.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolverLookupBenchmark
+{
+  /** Number of local resolvers registered */
+  @Param({"1", "8", "64"})
+  public int resolvers;
+
+  /** The resolvers that were registered, so they can be removed */
+  private URNResolverService[] registered;
+
+  /** The namespace to look up */
+  private String nid;
+
+  /**
+   * Resolver that only answers for a single namespace and never decodes
+   * anything.
+   */
+  static class NamespaceOnlyResolver implements URNResolverService
+  {
+    /** The namespace handled */
+    private final String namespace;
+
+    NamespaceOnlyResolver(String nid)
+    {
+      namespace = nid;
+    }
+
+    public void init()
+      throws ConfigErrorException
+    {
+    }
+
+    public boolean checkService(int type)
+    {
+      return true;
+    }
+
+    public boolean canResolve(String nid)
+    {
+      return namespace.equals(nid);
+    }
+
+    public void setResourceFactory(URIResourceFactory fac)
+    {
+    }
+
+    public Object decode(URN urn, int service)
+    {
+      return null;
+    }
+
+    public Object[] decodeList(URN urn, int service)
+    {
+      return null;
+    }
+  }
+
+  @Setup
+  public void setup()
+  {
+    // Only local resolvers are wanted, so point the configured order at a
+    // type that does not exist.
+    System.setProperty("urn.resolve.order", "bench-none");
+
+    registered = new URNResolverService[resolvers];
+
+    for(int i = 0; i < resolvers; i++)
+    {
+      registered[i] = new NamespaceOnlyResolver("nid" + i);
+      RDSManager.addURNResolver(registered[i]);
+    }
+
+    nid = "nid" + (resolvers - 1);
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    for(int i = 0; i < resolvers; i++)
+      RDSManager.removeURNResolver(registered[i]);
+  }
+
+  @Benchmark
+  public Object getFirstResolver()
+    throws NoURNConfigException
+  {
+    return RDSManager.getFirstResolver(nid, URIResolverService.I2L);
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Application specific imports
+// none
+
+/**
+ * End to end cost of reading a resource through a URL, from finding the
+ * protocol handler to reading the last byte of the stream.
+ * <P>
+ *
+ * Covers the <CODE>file:</CODE> and <CODE>data:</CODE> protocol handlers
+ * from urilib-net, since neither needs a network. The input size is the
+ * number of bytes in the resource.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceReadBenchmark
+{
+  /** The package holding the urilib-net protocol handlers */
+  private static final String NET_PROTOCOL_PKG = "vlc.net.protocol";
+
+  /** Characters used for base64 encoding */
+  private static final char[] BASE64_CHARS =
+    "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+    .toCharArray();
+
+  /** Number of bytes in the resource */
+  @Param({"128", "16384", "1048576"})
+  public int size;
+
+  /** The temporary file being read */
+  private File file;
+
+  /** URL of the temporary file */
+  private URL file_url;
+
+  /** data: URL holding the same bytes */
+  private URL data_url;
+
+  /** Per thread buffer to read into */
+  @State(Scope.Thread)
+  public static class ReadBuffer
+  {
+    byte[] buffer = new byte[8192];
+  }
+
+  @Setup
+  public void setup()
+    throws IOException
+  {
+    System.setProperty("uri.protocol.handler.pkgs", NET_PROTOCOL_PKG);
+
+    byte[] data = new byte[size];
+    for(int i = 0; i < size; i++)
+      data[i] = (byte)('a' + (i % 26));
+
+    file = File.createTempFile("urilib-bench", ".txt");
+    file.deleteOnExit();
+
+    FileOutputStream fos = new FileOutputStream(file);
+    fos.write(data);
+    fos.close();
+
+    file_url = new URL("file://" + file.getAbsolutePath());
+
+    StringBuffer buf = new StringBuffer("data:text/plain;base64,");
+    encode(data, buf);
+    data_url = new URL(buf.toString());
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    file.delete();
+  }
+
+  @Benchmark
+  public long readFile(ReadBuffer buf)
+    throws IOException
+  {
+    return read(file_url, buf.buffer);
+  }
+
+  @Benchmark
+  public long readData(ReadBuffer buf)
+    throws IOException
+  {
+    return read(data_url, buf.buffer);
+  }
+
+  /**
+   * Open the URL and read the stream to the end.
+   *
+   * @param url The URL to read
+   * @param buffer The buffer to read into
+   * @return The number of bytes read
+   */
+  private static long read(URL url, byte[] buffer)
+    throws IOException
+  {
+    ResourceConnection conn = url.getResource();
+    InputStream is = conn.getInputStream();
+    long total = 0;
+    int count;
+
+    while((count = is.read(buffer)) != -1)
+      total += count;
+
+    is.close();
+
+    return total;
+  }
+
+  /**
+   * Base64 encode the bytes onto the end of the buffer.
+   *
+   * @param data The bytes to encode
+   * @param buf The buffer to append to
+   */
+  private static void encode(byte[] data, StringBuffer buf)
+  {
+    int i = 0;
+
+    for(; i + 2 < data.length; i += 3)
+    {
+      int val = ((data[i] & 0xFF) << 16) |
+                ((data[i + 1] & 0xFF) << 8) |
+                (data[i + 2] & 0xFF);
+
+      buf.append(BASE64_CHARS[(val >> 18) & 0x3F]);
+      buf.append(BASE64_CHARS[(val >> 12) & 0x3F]);
+      buf.append(BASE64_CHARS[(val >> 6) & 0x3F]);
+      buf.append(BASE64_CHARS[val & 0x3F]);
+    }
+
+    int left = data.length - i;
+
+    if(left > 0)
+    {
+      int val = (data[i] & 0xFF) << 16;
+      if(left == 2)
+        val |= (data[i + 1] & 0xFF) << 8;
+
+      buf.append(BASE64_CHARS[(val >> 18) & 0x3F]);
+      buf.append(BASE64_CHARS[(val >> 12) & 0x3F]);
+      buf.append((left == 2) ? BASE64_CHARS[(val >> 6) & 0x3F] : '=');
+      buf.append('=');
+    }
+  }
+}
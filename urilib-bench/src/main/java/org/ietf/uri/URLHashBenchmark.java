@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Application specific imports
+// none
+
+/**
+ * Cost of using URLs as hash keys.
+ * <P>
+ *
+ * Two separate sets of equal URL instances are created. One set is used as
+ * the keys of a map and the other to look them up, so every successful
+ * lookup has to go through both <CODE>hashCode()</CODE> and a real
+ * <CODE>equals()</CODE> rather than an identity match. The map is shared
+ * between threads to show any contention in the hash calculation. The
+ * number of distinct URLs is the input size.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class URLHashBenchmark
+{
+  /** Number of distinct URLs */
+  @Param({"16", "1024", "65536"})
+  public int count;
+
+  /** Map keyed by the first set of URLs */
+  private HashMap url_map;
+
+  /** Second set of URLs equal to the keys */
+  private URL[] lookups;
+
+  /** Per thread position in the lookup list */
+  @State(Scope.Thread)
+  public static class Position
+  {
+    int next;
+  }
+
+  @Setup
+  public void setup()
+    throws MalformedURLException
+  {
+    url_map = new HashMap(count * 2);
+    lookups = new URL[count];
+
+    for(int i = 0; i < count; i++)
+    {
+      String str = "http://www" + (i % 97) + ".example.com/path/" + i +
+                   "/index.html?q=" + (i & 15);
+
+      url_map.put(new URL(str), str);
+      lookups[i] = new URL(str);
+    }
+  }
+
+  @Benchmark
+  public Object mapLookup(Position pos)
+  {
+    int idx = pos.next;
+    pos.next = (idx + 1 == count) ? 0 : idx + 1;
+
+    return url_map.get(lookups[idx]);
+  }
+
+  @Benchmark
+  public boolean equalsDistinct(Position pos)
+  {
+    int idx = pos.next;
+    int other = (idx + 1 == count) ? 0 : idx + 1;
+    pos.next = other;
+
+    return lookups[idx].equals(lookups[other]);
+  }
+
+  @Benchmark
+  public int hashCodeFresh(Position pos)
+    throws MalformedURLException
+  {
+    int idx = pos.next;
+    pos.next = (idx + 1 == count) ? 0 : idx + 1;
+
+    // A new instance has no cached hash, so this measures the calculation
+    // along with the parse needed to get there.
+    return new URL(lookups[idx].toExternalForm()).hashCode();
+  }
+}
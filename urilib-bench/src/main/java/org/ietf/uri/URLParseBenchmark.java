@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.net.MalformedURLException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Application specific imports
+// none
+
+/**
+ * Throughput of turning URL strings into their component parts.
+ * <P>
+ *
+ * Compares the single pass parse of <CODE>new URL(String)</CODE> and
+ * <CODE>URLBuilder</CODE> against the older <CODE>URIUtils</CODE> helper
+ * methods that each walk the string again. The length of the URLs is
+ * controlled by the number of path segments. A pool of distinct URLs is
+ * cycled through so that nothing is answered from a single cached value.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class URLParseBenchmark
+{
+  /** Number of distinct URLs to cycle through */
+  private static final int POOL_SIZE = 1024;
+
+  /** Number of path segments in each URL */
+  @Param({"1", "4", "16"})
+  public int segments;
+
+  /** The URL strings */
+  private String[] urls;
+
+  /** The same URLs as ASCII bytes, one after the other */
+  private byte[] url_bytes;
+
+  /** Start offset of each URL in url_bytes */
+  private int[] byte_offsets;
+
+  /** Relative references to resolve against the first URL */
+  private String[] relatives;
+
+  /** Base URL for the relative tests */
+  private URLBuilder base;
+
+  /** The same base as a full URL */
+  private URL base_url;
+
+  /** Reusable builder for the allocation free tests */
+  private URLBuilder builder;
+
+  /** Index of the next URL to use */
+  private int next;
+
+  @Setup
+  public void setup()
+    throws MalformedURLException
+  {
+    urls = new String[POOL_SIZE];
+    relatives = new String[POOL_SIZE];
+    byte_offsets = new int[POOL_SIZE + 1];
+
+    StringBuffer all = new StringBuffer();
+
+    for(int i = 0; i < POOL_SIZE; i++)
+    {
+      StringBuffer buf = new StringBuffer();
+      buf.append((i & 1) == 0 ? "http://" : "https://");
+
+      if((i & 7) == 0)
+        buf.append("user:pass@");
+
+      buf.append("host");
+      buf.append(i & 63);
+      buf.append(".example.com");
+
+      if((i & 3) == 0)
+        buf.append(":8080");
+
+      StringBuffer path = new StringBuffer();
+      for(int j = 0; j < segments; j++)
+      {
+        path.append("/segment");
+        path.append(j);
+      }
+
+      path.append("/file");
+      path.append(i);
+      path.append(".html");
+
+      buf.append(path);
+      buf.append("?key=");
+      buf.append(i);
+      buf.append("&other=value#ref");
+
+      urls[i] = buf.toString();
+      relatives[i] = ((i & 1) == 0 ? "../" : "./") + "file" + i + ".html?x=1";
+
+      byte_offsets[i] = all.length();
+      all.append(urls[i]);
+    }
+
+    byte_offsets[POOL_SIZE] = all.length();
+
+    url_bytes = new byte[all.length()];
+    for(int i = 0; i < url_bytes.length; i++)
+      url_bytes[i] = (byte)all.charAt(i);
+
+    base = new URLBuilder();
+    base.parse(urls[0]);
+    base_url = base.toURL();
+    builder = new URLBuilder();
+  }
+
+  /**
+   * Get the index of the next URL from the pool.
+   *
+   * @return An index into the URL arrays
+   */
+  private int nextIndex()
+  {
+    int idx = next;
+    next = (idx + 1) & (POOL_SIZE - 1);
+
+    return idx;
+  }
+
+  @Benchmark
+  public Object createURI()
+    throws Exception
+  {
+    return URIUtils.createURI(urls[nextIndex()]);
+  }
+
+  @Benchmark
+  public void newURL(Blackhole bh)
+    throws MalformedURLException
+  {
+    URL url = new URL(urls[nextIndex()]);
+
+    bh.consume(url.getHost());
+    bh.consume(url.getPort());
+    bh.consume(url.getPath());
+    bh.consume(url.getQuery());
+  }
+
+  @Benchmark
+  public void uriUtilsPipeline(Blackhole bh)
+    throws MalformedURLException
+  {
+    String url = urls[nextIndex()];
+
+    bh.consume(URIUtils.getScheme(url));
+    bh.consume(URIUtils.getHostAndPortFromUrl(url));
+    bh.consume(URIUtils.getPathFromUrlString(url));
+    bh.consume(URIUtils.getQueryFromUrlString(url));
+  }
+
+  @Benchmark
+  public int builderParseBytes()
+    throws MalformedURLException
+  {
+    int idx = nextIndex();
+    builder.parse(url_bytes, byte_offsets[idx], byte_offsets[idx + 1]);
+
+    return builder.getEnd(URLBuilder.HOST);
+  }
+
+  @Benchmark
+  public int builderResolve()
+    throws MalformedURLException
+  {
+    builder.set(base);
+    builder.resolve(relatives[nextIndex()]);
+
+    return builder.length();
+  }
+
+  @Benchmark
+  public Object urlContextResolve()
+    throws MalformedURLException
+  {
+    return new URL(base_url, relatives[nextIndex()]);
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package vlc.net.resolve.file;
+
+// Standard imports
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+// Application specific imports
+import org.ietf.uri.*;
+
+/**
+ * Cost of decoding URNs with the file based resolver, which is dominated by
+ * the regular expression matching and substitution.
+ * <p/>
+ * A bindings file is generated with the given number of namespaces, each
+ * having one group with the given number of resources. The URN decoded
+ * belongs to the last namespace and matches every resource of its group,
+ * so the list decode does one substitution per resource.
+ * <p/>
+ *
+ * @author Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileResolverBenchmark
+{
+    /** Number of namespaces in the bindings file */
+    @Param({"3", "256"})
+    public int namespaces;
+
+    /** Number of resources in each group */
+    @Param({"1", "16"})
+    public int resources;
+
+    /** The directory holding the generated bindings */
+    private File dir;
+
+    /** The resolver being measured */
+    private Resolver resolver;
+
+    /** The URN to decode */
+    private URN urn;
+
+    @Setup
+    public void setup()
+        throws Exception
+    {
+        dir = File.createTempFile("urilib-bench", "");
+        dir.delete();
+        dir.mkdir();
+
+        File bindings = new File(dir, "urn_bindings");
+        FileWriter out = new FileWriter(bindings);
+
+        for(int i = 0; i < namespaces; i++)
+        {
+            out.write("NID: ns" + i + " /urn:ns" + i + ":([^\\/:]+)/\\1/i\n");
+            out.write("  GRP: grp\n");
+
+            for(int j = 0; j < resources; j++)
+            {
+                out.write("    RES: \"http://host" + j + ".example.com/\" " +
+                          "/urn:ns" + i + ":grp:\\/dir\\/(.*)/\\1/i\n");
+            }
+        }
+
+        out.close();
+
+        System.setProperty("urn.bindings.path", dir.toURI().toString());
+
+        resolver = new Resolver();
+        resolver.init();
+
+        urn = new URN("urn:ns" + (namespaces - 1) + ":grp:/dir/some/file.ext");
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        new File(dir, "urn_bindings").delete();
+        dir.delete();
+    }
+
+    @Benchmark
+    public Object decode()
+        throws UnsupportedServiceException
+    {
+        return resolver.decode(urn, URIResolverService.I2L);
+    }
+
+    @Benchmark
+    public Object decodeList()
+        throws UnsupportedServiceException
+    {
+        return resolver.decodeList(urn, URIResolverService.I2Ls);
+    }
+}
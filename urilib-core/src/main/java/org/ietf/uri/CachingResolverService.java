@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+
+package org.ietf.uri;
+
+/**
+ * A URN resolver that keeps the answers found by the other resolvers so
+ * that repeated requests do not need to ask them again.
+ * <P>
+ *
+ * A caching resolver is named in the resolve order like any other, but
+ * the {@link RDSManager} never adds it to the chain of resolvers for a
+ * namespace. Instead the first one that can handle the namespace and
+ * service is asked for a kept answer before the chain is used, and is
+ * handed the final answer once every resolver has been asked. List
+ * requests keep the lists after the answers of all the resolvers have
+ * been joined together, so a kept list is the same as a fresh one.
+ * <P>
+ *
+ * The manager never calls the plain <CODE>decode</CODE> and
+ * <CODE>decodeList</CODE> methods. If they are called some other way, they
+ * should behave as if the cache had no answers.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+public interface CachingResolverService extends URNResolverService
+{
+  /** The answer kept for a request that found nothing */
+  public static final Object NO_ANSWER = new Object();
+
+  /**
+   * Fetch the answer kept for the URN and service. Arrays are copied so
+   * that the caller may change them.
+   *
+   * @param urn The URN to be resolved
+   * @param service The type of object wanted
+   * @return The kept answer, NO_ANSWER if it is known that there is no
+   *   answer, or null if nothing is kept
+   */
+  public Object lookup(URN urn, int service);
+
+  /**
+   * Keep the answer found for the URN and service. Arrays are copied so
+   * that the caller may change them afterwards.
+   *
+   * @param urn The URN that was resolved
+   * @param service The type of object that was wanted
+   * @param answer The answer found. Null if there was no answer
+   */
+  public void store(URN urn, int service, Object answer);
+}
@@ -230,13 +230,13 @@ public abstract class ContentHandler extends java.net.ContentHandler
     else
     {
       // Compare class type lists. Check the order type from start to
-      // end of the requested class types. This is a yucky 0(n^2)
-      // algorithm to find matches.
-      for(i = 0; i < classes.length; i++)
+      // end of the requested class types and use the first one that we
+      // can supply, either directly or as a derived class.
+      for(i = 0; (ret_val == null) && (i < classes.length); i++)
       {
         for(j = 0; j < supported_classes.length; j++)
         {
-          if(supported_classes[j].isInstance(classes[i]))
+          if(classes[i].isAssignableFrom(supported_classes[j]))
           {
             ret_val = getContent(resc, classes[i]);
             break;
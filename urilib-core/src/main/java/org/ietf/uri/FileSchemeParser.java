@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.net.MalformedURLException;
+
+// Application specific imports
+// none
+
+/**
+ * Scheme parser for the file scheme.
+ * <P>
+ *
+ * File URLs never have user info or a port, so everything in the authority
+ * is taken as the host name. Windows drive letters are commonly written as
+ * though they were the host, as in <CODE>file://C:/dir/file.txt</CODE> or
+ * the older <CODE>file://C|/dir/file.txt</CODE>. When that is found the
+ * host is left empty and the drive letter becomes the start of the path.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+final class FileSchemeParser implements SchemeParser
+{
+  /**
+   * Locate the components of the scheme specific part of a URL.
+   *
+   * @param spec The characters holding the URL
+   * @param start The index of the first character after the scheme's ':'
+   * @param end The index one past the last character of the URL
+   * @param offsets The array to put the component offsets into
+   * @exception MalformedURLException The characters are not valid for this
+   *   scheme
+   */
+  public void parse(CharSequence spec, int start, int end, int[] offsets)
+    throws MalformedURLException
+  {
+    int index = start;
+
+    if((end - index >= 2) &&
+       (spec.charAt(index) == '/') &&
+       (spec.charAt(index + 1) == '/'))
+    {
+      index += 2;
+
+      int host_start = index;
+
+      if(isDriveLetter(spec, index, end))
+      {
+        offsets[HOST_START] = host_start;
+        offsets[HOST_END] = host_start;
+      }
+      else
+      {
+        while(index < end)
+        {
+          char ch = spec.charAt(index);
+
+          if((ch == '/') || (ch == '?') || (ch == '#'))
+            break;
+
+          index++;
+        }
+
+        offsets[HOST_START] = host_start;
+        offsets[HOST_END] = index;
+      }
+    }
+
+    URLTokenizer.tokenizePath(spec, index, end, offsets);
+  }
+
+  /**
+   * Check to see if the characters at the given index are a drive letter
+   * followed by ':' or '|' and then the end of the path segment.
+   *
+   * @param spec The characters holding the URL
+   * @param index The index to check from
+   * @param end The index one past the last character of the URL
+   * @return true if the index starts with a drive letter
+   */
+  private static boolean isDriveLetter(CharSequence spec, int index, int end)
+  {
+    if(end - index < 2)
+      return false;
+
+    char letter = spec.charAt(index);
+    char sep = spec.charAt(index + 1);
+
+    if(!(((letter >= 'a') && (letter <= 'z')) ||
+         ((letter >= 'A') && (letter <= 'Z'))) ||
+       ((sep != ':') && (sep != '|')))
+      return false;
+
+    if(end - index == 2)
+      return true;
+
+    char next = spec.charAt(index + 2);
+
+    return (next == '/') || (next == '\\') || (next == '?') || (next == '#');
+  }
+}
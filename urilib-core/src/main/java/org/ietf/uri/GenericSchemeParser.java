@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.net.MalformedURLException;
+
+// Application specific imports
+// none
+
+/**
+ * Scheme parser used for any scheme without one of its own.
+ * <P>
+ *
+ * Breaks the scheme specific part up using the generic syntax
+ * <CODE>[//[userinfo@]host[:port]]path[?query][#reference]</CODE>.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+final class GenericSchemeParser implements SchemeParser
+{
+  /**
+   * Locate the components of the scheme specific part of a URL.
+   *
+   * @param spec The characters holding the URL
+   * @param start The index of the first character after the scheme's ':'
+   * @param end The index one past the last character of the URL
+   * @param offsets The array to put the component offsets into
+   * @exception MalformedURLException The characters are not valid for this
+   *   scheme
+   */
+  public void parse(CharSequence spec, int start, int end, int[] offsets)
+    throws MalformedURLException
+  {
+    URLTokenizer.tokenizeRest(spec, start, end, offsets);
+  }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.io.*;
+import java.util.*;
+
+// Application specific imports
+// none
+
+/**
+ * Index of the handler, file name map and resolver classes that have been
+ * registered through index files on the classpath.
+ * <P>
+ *
+ * Rather than guessing class names from a package list and probing them
+ * with <CODE>Class.forName()</CODE>, a jar file may list the classes it
+ * supplies in a file under <CODE>META-INF/urilib/</CODE> named after the
+ * type being supplied:
+ * <UL>
+ * <LI><CODE>org.ietf.uri.ContentHandler</CODE> maps MIME types to
+ *     content handlers. A <CODE>java.net.ContentHandler</CODE> may also be
+ *     listed, in which case it is wrapped.
+ * <LI><CODE>org.ietf.uri.URIResourceStream</CODE> maps protocol names to
+ *     protocol handlers.
+ * <LI><CODE>org.ietf.uri.URNResolverService</CODE> maps the resolver names
+ *     used in the resolve order to resolver classes.
+ * <LI><CODE>org.ietf.uri.FileNameMap</CODE> lists file name maps, one per
+ *     line, in order of preference.
+ * </UL>
+ * Each line of a mapping file is of the form <CODE>key = class.name</CODE>.
+ * Keys are not case sensitive. Everything after a '#' is a comment and
+ * blank lines are ignored. The files are in UTF-8 and all copies found on
+ * the classpath are merged, with the first entry for a key winning.
+ * <P>
+ *
+ * The files are read once when this class is loaded and the results are
+ * never changed afterwards. An indexed class is tried before the package
+ * lists are searched. If the system property
+ * <CODE>uri.handler.index.only</CODE> is set to <CODE>true</CODE>, the
+ * package lists are not searched at all and only indexed classes are used.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+final class HandlerIndex
+{
+  /** The directory in the classpath holding the index files */
+  private static final String INDEX_DIR = "META-INF/urilib/";
+
+  /** Property to turn off searching the package lists */
+  private static final String INDEX_ONLY_PROP = "uri.handler.index.only";
+
+  /** Map of lower case MIME type to content handler class name */
+  private static final Map content_index;
+
+  /** Map of lower case protocol name to protocol handler class name */
+  private static final Map protocol_index;
+
+  /** Map of lower case resolver name to resolver class name */
+  private static final Map resolver_index;
+
+  /** List of file name map class names in order of preference */
+  private static final String[] filemap_index;
+
+  /** True if only the indexed classes are to be used */
+  private static final boolean index_only;
+
+  /**
+   * Static initialiser to read all of the index files.
+   */
+  static
+  {
+    ClassLoader loader = HandlerIndex.class.getClassLoader();
+
+    if(loader == null)
+      loader = ClassLoader.getSystemClassLoader();
+
+    content_index = readMap(loader, ContentHandler.class);
+    protocol_index = readMap(loader, URIResourceStream.class);
+    resolver_index = readMap(loader, URNResolverService.class);
+
+    ArrayList maps = new ArrayList();
+    readIndex(loader, FileNameMap.class, maps);
+
+    filemap_index = new String[maps.size()];
+    maps.toArray(filemap_index);
+
+    boolean only = false;
+
+    try
+    {
+      only = Boolean.valueOf(System.getProperty(INDEX_ONLY_PROP)).booleanValue();
+    }
+    catch(SecurityException se)
+    {
+      // if we can't read it, then ignore it. The package lists stay on.
+    }
+
+    index_only = only;
+  }
+
+  /**
+   * Private constructor to prevent instantiation of this static class.
+   */
+  private HandlerIndex()
+  {
+  }
+
+  /**
+   * Check to see if the package lists should be searched after the index.
+   *
+   * @return true if only indexed classes are to be used
+   */
+  static boolean isIndexOnly()
+  {
+    return index_only;
+  }
+
+  /**
+   * Fetch the name of the class registered as the content handler for
+   * the given MIME type.
+   *
+   * @param contentType The MIME type, in any case
+   * @return The class name or null if none is registered
+   */
+  static String getContentHandlerClass(String contentType)
+  {
+    return lookup(content_index, contentType);
+  }
+
+  /**
+   * Fetch the name of the class registered as the protocol handler for
+   * the given protocol.
+   *
+   * @param protocol The protocol name, in any case
+   * @return The class name or null if none is registered
+   */
+  static String getProtocolHandlerClass(String protocol)
+  {
+    return lookup(protocol_index, protocol);
+  }
+
+  /**
+   * Fetch the name of the class registered as the resolver for the given
+   * resolver name.
+   *
+   * @param type The resolver name from the resolve order, in any case
+   * @return The class name or null if none is registered
+   */
+  static String getResolverClass(String type)
+  {
+    return lookup(resolver_index, type);
+  }
+
+  /**
+   * Fetch the names of the registered file name map classes in order of
+   * preference. The array must not be modified.
+   *
+   * @return The class names, which may be an empty array
+   */
+  static String[] getFileNameMapClasses()
+  {
+    return filemap_index;
+  }
+
+  /**
+   * Look up a key in one of the indexes. Keys are stored in lower case.
+   * Nothing is allocated when the index is empty.
+   *
+   * @param index The index to look in
+   * @param key The key to look for
+   * @return The class name or null if none
+   */
+  private static String lookup(Map index, String key)
+  {
+    if(index.isEmpty())
+      return null;
+
+    String ret_val = (String)index.get(key);
+
+    if(ret_val == null)
+      ret_val = (String)index.get(key.toLowerCase());
+
+    return ret_val;
+  }
+
+  /**
+   * Read all of the mapping files for the given type into an unmodifiable
+   * map. Lines without a key are ignored.
+   *
+   * @param loader The class loader to find the files with
+   * @param type The type that the files register classes for
+   * @return The merged map of key to class name
+   */
+  private static Map readMap(ClassLoader loader, Class type)
+  {
+    ArrayList lines = new ArrayList();
+    readIndex(loader, type, lines);
+
+    HashMap ret_val = new HashMap();
+    int size = lines.size();
+
+    for(int i = 0; i < size; i++)
+    {
+      String line = (String)lines.get(i);
+      int split = line.indexOf('=');
+
+      if(split <= 0)
+      {
+        System.err.println("Missing key in index for " + type.getName() +
+                           ": " + line);
+        continue;
+      }
+
+      String key = line.substring(0, split).trim().toLowerCase();
+      String value = line.substring(split + 1).trim();
+
+      if((value.length() != 0) && !ret_val.containsKey(key))
+        ret_val.put(key, value);
+    }
+
+    return Collections.unmodifiableMap(ret_val);
+  }
+
+  /**
+   * Read the non-blank, non-comment lines of every index file for the
+   * given type on the classpath. Errors reading a file are reported and
+   * the file skipped.
+   *
+   * @param loader The class loader to find the files with
+   * @param type The type that the files register classes for
+   * @param lines The list to add the trimmed lines to
+   */
+  private static void readIndex(ClassLoader loader,
+                                Class type,
+                                ArrayList lines)
+  {
+    String name = INDEX_DIR + type.getName();
+    Enumeration files;
+
+    try
+    {
+      files = loader.getResources(name);
+    }
+    catch(IOException ioe)
+    {
+      System.err.println("Error finding index files " + name + ": " + ioe);
+      return;
+    }
+    catch(SecurityException se)
+    {
+      // not allowed to look, so there is no index
+      return;
+    }
+
+    while(files.hasMoreElements())
+    {
+      java.net.URL file = (java.net.URL)files.nextElement();
+      BufferedReader reader = null;
+
+      try
+      {
+        InputStream is = file.openStream();
+        reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+
+        String line;
+
+        while((line = reader.readLine()) != null)
+        {
+          int comment = line.indexOf('#');
+
+          if(comment != -1)
+            line = line.substring(0, comment);
+
+          line = line.trim();
+
+          if(line.length() != 0)
+            lines.add(line);
+        }
+      }
+      catch(IOException ioe)
+      {
+        System.err.println("Error reading index file " + file + ": " + ioe);
+      }
+      finally
+      {
+        if(reader != null)
+        {
+          try
+          {
+            reader.close();
+          }
+          catch(IOException ioe)
+          {
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.net.MalformedURLException;
+
+// Application specific imports
+// none
+
+/**
+ * Scheme parser for the http and https schemes.
+ * <P>
+ *
+ * These two schemes make up the vast majority of URLs seen, so the
+ * authority is handled in one tight scan that finds the user info, an IPv6
+ * literal host and the port together. An IPv6 literal is jumped over as a
+ * whole rather than tracking whether each character is inside the
+ * brackets. Anything that does not have an authority, such as the rather
+ * odd <CODE>http:page.html</CODE>, is passed to the generic parser.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+final class HttpSchemeParser implements SchemeParser
+{
+  /**
+   * Locate the components of the scheme specific part of a URL.
+   *
+   * @param spec The characters holding the URL
+   * @param start The index of the first character after the scheme's ':'
+   * @param end The index one past the last character of the URL
+   * @param offsets The array to put the component offsets into
+   * @exception MalformedURLException The characters are not valid for this
+   *   scheme
+   */
+  public void parse(CharSequence spec, int start, int end, int[] offsets)
+    throws MalformedURLException
+  {
+    if((end - start < 2) ||
+       (spec.charAt(start) != '/') ||
+       (spec.charAt(start + 1) != '/'))
+    {
+      URLTokenizer.tokenizeRest(spec, start, end, offsets);
+      return;
+    }
+
+    int index = start + 2;
+    int host_start = index;
+    int port_sep = -1;
+    boolean have_user = false;
+
+    while(index < end)
+    {
+      char ch = spec.charAt(index);
+
+      if((ch == '/') || (ch == '?') || (ch == '#'))
+        break;
+
+      if(ch == ':')
+      {
+        if(port_sep == -1)
+          port_sep = index;
+      }
+      else if(ch == '@')
+      {
+        // The first '@' ends the user info. Any ':' seen so far was the
+        // password separator, not the port.
+        if(!have_user)
+        {
+          offsets[USER_START] = host_start;
+          offsets[USER_END] = index;
+          host_start = index + 1;
+          port_sep = -1;
+          have_user = true;
+        }
+      }
+      else if((ch == '[') && (index == host_start))
+      {
+        // IPv6 literal. Jump straight to the closing bracket.
+        index++;
+
+        while((index < end) && (spec.charAt(index) != ']'))
+          index++;
+
+        if(index == end)
+          throw new MalformedURLException("Unterminated IPv6 address");
+      }
+
+      index++;
+    }
+
+    offsets[HOST_START] = host_start;
+
+    if(port_sep != -1)
+    {
+      offsets[HOST_END] = port_sep;
+      offsets[PORT_START] = port_sep + 1;
+      offsets[PORT_END] = index;
+    }
+    else
+    {
+      offsets[HOST_END] = index;
+    }
+
+    URLTokenizer.tokenizePath(spec, index, end, offsets);
+  }
+}
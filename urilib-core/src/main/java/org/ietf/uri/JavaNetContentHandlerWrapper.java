@@ -81,6 +81,16 @@ public final class JavaNetContentHandlerWrapper extends ContentHandler
     requiresStream = true;
   }
 
+  /**
+   * Fetch the java.net content handler that this wrapper passes calls to.
+   *
+   * @return The wrapped handler
+   */
+  java.net.ContentHandler getRealHandler()
+  {
+    return real_handler;
+  }
+
   /**
    * Given a fresh stream from a ResourceConnection, read and create an object
    * instance.
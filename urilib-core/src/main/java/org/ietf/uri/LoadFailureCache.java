@@ -0,0 +1,259 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Application specific imports
+// none
+
+/**
+ * Record of the dynamically loaded classes that could not be loaded or
+ * failed to initialise.
+ * <P>
+ *
+ * The handler, file name map and resolver lookups all build class names
+ * from package lists and try to load them. Most of those attempts fail by
+ * design, as each package is only expected to supply a few of the
+ * possible classes. Throwing and catching a ClassNotFoundException for
+ * each package on every request is expensive, so the failures are
+ * remembered here and skipped until they expire.
+ * <P>
+ *
+ * Failures are kept for the number of milliseconds given by the system
+ * property <CODE>uri.load.failure.ttl</CODE>, which defaults to five
+ * minutes. A value of zero turns the cache off and a negative value keeps
+ * failures until the cache is cleared. The cache may be emptied at any
+ * time with {@link URI#clearLoadFailures()}, for example after new classes
+ * have been made available to the class loader.
+ * <P>
+ *
+ * The class names are built from content types and other values that come
+ * from outside, so the number of failures kept is limited by the system
+ * property <CODE>uri.load.failure.size</CODE>, which defaults to 1024.
+ * Expired failures are cleared out when new ones are added. If the cache
+ * is still full after that, some failures are forgotten early, which only
+ * means those classes are tried again.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+final class LoadFailureCache
+{
+  /** Property defining how long a failure is remembered, in milliseconds */
+  private static final String TTL_PROP = "uri.load.failure.ttl";
+
+  /** Property defining the most failures to remember */
+  private static final String SIZE_PROP = "uri.load.failure.size";
+
+  /** The default time to remember a failure, in milliseconds */
+  private static final long DEFAULT_TTL = 5 * 60 * 1000;
+
+  /** The default number of failures to remember */
+  private static final int DEFAULT_SIZE = 1024;
+
+  /** Map of the failed class name to the time the failure expires */
+  private static final ConcurrentHashMap failures = new ConcurrentHashMap();
+
+  /** The time to remember a failure. Zero disables, negative is forever */
+  private static volatile long ttl;
+
+  /** The most failures to remember */
+  private static final int max_size;
+
+  /** The time the expired failures were last cleared out */
+  private static volatile long last_purge;
+
+  /**
+   * Static initialiser to read the time to live from the system property.
+   */
+  static
+  {
+    long time = DEFAULT_TTL;
+    int size = DEFAULT_SIZE;
+
+    try
+    {
+      String prop = System.getProperty(TTL_PROP);
+
+      if(prop != null)
+        time = Long.parseLong(prop.trim());
+
+      prop = System.getProperty(SIZE_PROP);
+
+      if(prop != null)
+        size = Integer.parseInt(prop.trim());
+    }
+    catch(SecurityException se)
+    {
+      // if we can't read it, then ignore it. Use the default.
+    }
+    catch(NumberFormatException nfe)
+    {
+      System.err.println("Invalid load failure setting: " + nfe);
+    }
+
+    ttl = time;
+    max_size = (size < 1) ? 1 : size;
+    last_purge = System.currentTimeMillis();
+  }
+
+  /**
+   * Private constructor to prevent instantiation of this static class.
+   */
+  private LoadFailureCache()
+  {
+  }
+
+  /**
+   * Check to see if the named class has recently failed to load. Expired
+   * failures are removed as they are found.
+   *
+   * @param className The fully qualified name of the class
+   * @return true if the class should not be tried again yet
+   */
+  static boolean hasFailed(String className)
+  {
+    Long expiry = (Long)failures.get(className);
+
+    if(expiry == null)
+      return false;
+
+    long time = expiry.longValue();
+
+    if((time < 0) || (System.currentTimeMillis() < time))
+      return true;
+
+    failures.remove(className, expiry);
+
+    return false;
+  }
+
+  /**
+   * Record that the named class could not be loaded or initialised.
+   * Expired failures are cleared out when the cache is full, or when a
+   * time to live has passed since they were last cleared.
+   *
+   * @param className The fully qualified name of the class
+   */
+  static void addFailure(String className)
+  {
+    long time = ttl;
+
+    if(time == 0)
+      return;
+
+    long now = System.currentTimeMillis();
+    long expiry = (time < 0) ? -1 : now + time;
+
+    if((failures.size() >= max_size) ||
+       ((time > 0) && (now - last_purge > time)))
+      purge(now);
+
+    failures.put(className, new Long(expiry));
+  }
+
+  /**
+   * Remove the expired failures. If that does not bring the cache down
+   * below its size limit, remove others until there is room for a quarter
+   * of the limit again, so that the next few additions don't need to
+   * purge.
+   *
+   * @param now The current time in milliseconds
+   */
+  private static void purge(long now)
+  {
+    last_purge = now;
+
+    Iterator itr = failures.entrySet().iterator();
+
+    while(itr.hasNext())
+    {
+      Map.Entry entry = (Map.Entry)itr.next();
+      long time = ((Long)entry.getValue()).longValue();
+
+      if((time >= 0) && (now >= time))
+        itr.remove();
+    }
+
+    int target = max_size - (max_size + 3) / 4;
+    itr = failures.keySet().iterator();
+
+    while((failures.size() > target) && itr.hasNext())
+    {
+      itr.next();
+      itr.remove();
+    }
+  }
+
+  /**
+   * Change the time that failures are remembered for. Failures that have
+   * already been recorded keep their original expiry time.
+   *
+   * @param time The time in milliseconds. Zero disables the cache and a
+   *   negative value keeps failures until cleared
+   */
+  static void setTimeToLive(long time)
+  {
+    ttl = time;
+
+    if(time == 0)
+      failures.clear();
+  }
+
+  /**
+   * Fetch the time that failures are currently remembered for.
+   *
+   * @return The time in milliseconds. Zero means failures are not kept and
+   *   a negative value means they are kept until cleared
+   */
+  static long getTimeToLive()
+  {
+    return ttl;
+  }
+
+  /**
+   * Forget all of the recorded failures so that every class is tried
+   * again on the next request.
+   */
+  static void clear()
+  {
+    failures.clear();
+  }
+}
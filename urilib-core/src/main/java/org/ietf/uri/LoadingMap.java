@@ -0,0 +1,115 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.util.concurrent.ConcurrentHashMap;
+
+// Application specific imports
+// none
+
+/**
+ * A concurrent map of loaded items that also hands out a lock for each key,
+ * so that an item is only ever loaded once.
+ * <P>
+ *
+ * Reads go straight to the map without locking. When an item is missing,
+ * the caller takes the lock for its key, checks the map again and only
+ * then loads and stores the item:
+ * <PRE>
+ *   Object item = map.get(key);
+ *
+ *   if(item == null)
+ *   {
+ *     synchronized(map.getLock(key))
+ *     {
+ *       item = map.get(key);
+ *
+ *       if(item == null)
+ *       {
+ *         item = load(key);
+ *         map.put(key, item);
+ *       }
+ *     }
+ *   }
+ * </PRE>
+ * Threads after the same key wait for the first one to finish rather than
+ * loading and initialising their own copy. The locks come from a fixed set
+ * picked by the hash of the key, so the keys never need to be remembered.
+ * Threads loading different keys only wait on each other when their keys
+ * happen to share a lock.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+final class LoadingMap extends ConcurrentHashMap
+{
+  /** The number of locks to share between the keys. Must be a power of 2 */
+  private static final int NUM_LOCKS = 64;
+
+  /** The lock objects, shared out between the keys by hash */
+  private final Object[] locks;
+
+  /**
+   * Create a new empty map.
+   */
+  LoadingMap()
+  {
+    locks = new Object[NUM_LOCKS];
+
+    for(int i = 0; i < NUM_LOCKS; i++)
+      locks[i] = new Object();
+  }
+
+  /**
+   * Fetch the lock to hold while loading the item for the given key. The
+   * same lock is always returned for the same key.
+   *
+   * @param key The key of the item to be loaded
+   * @return The object to synchronize on
+   */
+  Object getLock(Object key)
+  {
+    int h = key.hashCode();
+
+    // spread the high bits down so that keys differing only there don't
+    // all land on the same lock
+    h ^= (h >>> 16);
+    h ^= (h >>> 8);
+
+    return locks[h & (NUM_LOCKS - 1)];
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.util.ArrayList;
+import java.util.StringTokenizer;
+
+// Application specific imports
+// none
+
+/**
+ * A pipe ('|') separated list of package names read from a system property,
+ * with a default package always on the end.
+ * <P>
+ *
+ * The handler and resolver searches are driven by package lists held in
+ * system properties. Since the properties may be changed at any time they
+ * have to be read on every search, but they rarely change. The list is
+ * kept already split, trimmed and in lower case, along with the property
+ * string it was made from. When the property is read again, the string is
+ * compared by identity with the one last seen, which is enough as
+ * <CODE>System.getProperty()</CODE> hands back the same string until the
+ * property is set again. The list is only parsed again when it differs.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+final class PackageList
+{
+  /**
+   * The property value and the list made from it. Both are swapped
+   * together so a reader never sees one without the other.
+   */
+  private static class Parsed
+  {
+    /** The property value the list was made from. May be null */
+    final String source;
+
+    /** The package names, default last */
+    final String[] packages;
+
+    /**
+     * Create a new parsed list.
+     *
+     * @param source The property value
+     * @param packages The package names
+     */
+    Parsed(String source, String[] packages)
+    {
+      this.source = source;
+      this.packages = packages;
+    }
+  }
+
+  /** The name of the system property holding the list */
+  private final String property;
+
+  /** The package that always ends the list */
+  private final String default_pkg;
+
+  /** The most recently parsed list */
+  private volatile Parsed parsed;
+
+  /**
+   * Create a new list for the given property.
+   *
+   * @param property The name of the system property holding the list
+   * @param defaultPkg The package that always ends the list
+   */
+  PackageList(String property, String defaultPkg)
+  {
+    this.property = property;
+    default_pkg = defaultPkg;
+    parsed = new Parsed(null, new String[] { defaultPkg });
+  }
+
+  /**
+   * Read the current value of the property. If the property can't be read
+   * because of security restrictions, it is treated as not set.
+   *
+   * @return The value of the property or null
+   */
+  String getValue()
+  {
+    String ret_val = null;
+
+    try
+    {
+      ret_val = System.getProperty(property);
+    }
+    catch(SecurityException se)
+    {
+      // if we can't read it, then ignore it. We still have the default pkg
+    }
+
+    return ret_val;
+  }
+
+  /**
+   * Fetch the package names for the current value of the property. The
+   * array is shared and must not be modified.
+   *
+   * @return The package names in search order, default last
+   */
+  String[] getPackages()
+  {
+    return getPackages(getValue());
+  }
+
+  /**
+   * Fetch the package names for a value of the property that has already
+   * been read. The array is shared and must not be modified.
+   *
+   * @param value The value of the property or null
+   * @return The package names in search order, default last
+   */
+  String[] getPackages(String value)
+  {
+    Parsed current = parsed;
+
+    if(current.source == value)
+      return current.packages;
+
+    ArrayList list = new ArrayList();
+
+    if(value != null)
+    {
+      StringTokenizer strtok = new StringTokenizer(value, "|");
+
+      while(strtok.hasMoreTokens())
+      {
+        String pkg_name = strtok.nextToken().trim();
+
+        if(pkg_name.length() != 0)
+          list.add(pkg_name.toLowerCase());
+      }
+    }
+
+    list.add(default_pkg);
+
+    String[] packages = new String[list.size()];
+    list.toArray(packages);
+
+    parsed = new Parsed(value, packages);
+
+    return packages;
+  }
+}
@@ -16,6 +16,7 @@ package org.ietf.uri;
 // Standard imports
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 // Application specific imports
 import org.ietf.uri.resolve.ConfigErrorException;
@@ -61,6 +62,17 @@ import org.ietf.uri.resolve.ConfigErrorException;
  * <LI>The package <CODE>org.ietf.uri.resolve</CODE> is queried using the
  *     name of the resolver as per the previous step.
  * </OL>
+ * A resolver class registered for the name in a
+ * <CODE>META-INF/urilib/org.ietf.uri.URNResolverService</CODE> index file
+ * on the classpath is tried before the package lists. Resolver classes
+ * that cannot be found or fail to initialise are not tried again until the
+ * failure expires or is cleared with {@link URI#clearLoadFailures()}.
+ * <P>
+ *
+ * The resolvers able to handle each namespace and service are remembered
+ * for <CODE>urn.resolve.chain.ttl</CODE> milliseconds, one minute by
+ * default. Resolvers that change the namespaces they handle can call
+ * {@link #clearResolverChains()} to have them found again straight away.
  * <P>
  *
  * There are many possiblities of how RDSs can be found, depending on the setup
@@ -105,24 +117,35 @@ public final class RDSManager
   private static final String CONFIRM_POLICY = "urn.resolve.confirm";
   private static final String PKG_LIST_PROP = "urn.resolve.pkgs";
   private static final String RESOLVE_ORDER = "urn.resolve.order";
+  private static final String CHAIN_TTL_PROP = "urn.resolve.chain.ttl";
 
   private static final String DEFAULT_PKG = "org.ietf.uri.resolve";
 
+  /** The default time to keep a resolver chain, in milliseconds */
+  private static final long DEFAULT_CHAIN_TTL = 60 * 1000;
+
+  /** The most resolver chains to keep */
+  private static final int MAX_CHAINS = 256;
+
+  /** The package list to search for resolvers */
+  private static final PackageList resolver_pkgs =
+    new PackageList(PKG_LIST_PROP, DEFAULT_PKG);
+
   /** The factory to use, if set */
-  private static URIResolverServiceFactory rds_factory = null;
+  private static volatile URIResolverServiceFactory rds_factory = null;
 
   /**
    * The list of currently loaded RDSs. They are stored using the name
    * used in the config settings as the key, and the RDS instance as the value.
    */
-  private static HashMap rds_loaded = new HashMap();
+  private static final LoadingMap rds_loaded = new LoadingMap();
 
   /**
    * The list of RDSs to search in order, as supplied by the URN config file.
    * Typically, this could be overridden by the system property settings, so
    * is stored as the file only values that are referenced when needed.
    */
-  private static String[] file_rds_search_order;
+  private static volatile String[] file_rds_search_order;
 
   /**
    * The order to be used for checking the RDS's. This should only be used if
@@ -138,80 +161,81 @@ public final class RDSManager
    */
   private static boolean sys_prop_fixed = false;
 
+  /** The last resolve order read from the system property */
+  private static volatile ParsedOrder prop_order;
+
+  /** The order used when there is no order configured at all */
+  private static final String[] NO_ORDER = new String[0];
+
+  /**
+   * The chains of resolvers that can handle each namespace and service,
+   * as ChainEntry instances keyed by the lower case namespace and service.
+   */
+  private static final LoadingMap resolver_chains = new LoadingMap();
+
+  /** The time to keep a chain. Zero disables, negative is forever */
+  private static long chain_ttl;
+
+  /** The resolve order the chains were built with */
+  private static volatile String[] chain_order;
+
+  /**
+   * Count of the times the chains have been thrown away. A chain is only
+   * stored if the count didn't change while it was being built.
+   */
+  private static volatile int chain_generation;
+
   /** The resource factory implementation passed to all the resolvers */
   private static URIResourceFactory resource_factory = null;
 
-  /** List of locally registered URN resolvers */
-  private static ArrayList local_resolvers = null;
+  /**
+   * List of locally registered URN resolvers. Registration is rare and
+   * lookups are frequent, so each change copies the list and readers never
+   * need to lock.
+   */
+  private static final CopyOnWriteArrayList local_resolvers =
+    new CopyOnWriteArrayList();
 
 
   /**
    * Inner class that is used as an enumerator of all the resolvers when
-   * a request is made to get all resolvers. The enumeration takes a snapshot
-   * of the current resolver order which is then presented to the user as they
-   * request the next item.
+   * a request is made to get all resolvers. The enumeration walks a chain
+   * of resolvers that have already been checked against the namespace and
+   * service, so every element it hands out is usable. Chains are never
+   * changed once built, so the enumeration is a snapshot of the resolvers
+   * at the time it was created.
    */
   private static class RDSEnumerator implements Enumeration
   {
-    private String[] resolver_order;
+    /** The resolvers to hand out, in order of preference */
+    private URNResolverService[] resolvers;
 
+    /** Index of the next resolver to hand out */
     private int current_element = 0;
 
-    private int last_element;
-
-    private String namespace;
-    private int rds_service;
-
-    private boolean locals_checked;
-
     /**
-     * Create a new instance of this enumerator. Sets the enumeration up and
-     * takes a snapshot of the current resolver order. This is performed using
-     * System.arraycopy allowing the passed in parameter to be discarded if not
-     * used anywhere else.
-     * <P>
-     *
-     * The enumerator provides two levels of service. The check for more
-     * elements just does a numerical check to see if there are still some
-     * that we haven't considered yet. The request for the next properly checks
-     * and can throw an exception if none of the remaining candidates match
-     * the required profile. A user should always check for a
-     * {@link java.util.NoSuchElementException} when calling this method.
+     * Create a new instance of this enumerator over the given chain.
      *
-     * @param order The resolver order.
-     * @param nid The namespace identifier that must satisfy this list
-     * @param service The RDS service required for the namespace ID
+     * @param chain The resolvers in order of preference
      */
-    public RDSEnumerator(String[] order, String nid, int service)
+    public RDSEnumerator(URNResolverService[] chain)
     {
-      resolver_order = new String[order.length];
-      System.arraycopy(order, 0, resolver_order, 0, order.length);
-
-      namespace = nid;
-      rds_service = service;
-
-      last_element = resolver_order.length - 1;
-      locals_checked = false;
+      resolvers = chain;
     }
 
     /**
-     * Test to see if this enumeration has more elements. Returns true if
-     * we haven't reached to end of the resolver list but does not check to
-     * see if the remaining elements are useful.
+     * Test to see if this enumeration has more elements.
      *
-     * @return true if more resolvers are potentially available.
+     * @return true if more resolvers are available.
      */
     public boolean hasMoreElements()
     {
-      return (!locals_checked && local_resolvers.size() > 0) ||
-             (current_element <= last_element);
+      return (current_element < resolvers.length);
     }
 
     /**
-     * Find the next resolver that matches the required capabilities. A search
-     * of the remaining list is made to find a match. If no match is made then
-     * a <CODE>NoSuchElementException</CODE> is generated and no further
-     * queries should be made of this method.
+     * Fetch the next resolver in order of preference. If there are none
+     * left then a <CODE>NoSuchElementException</CODE> is generated.
      *
      * @return The next URNResolverService in order of preference
      * @exception NoSuchElementException There are no more matching services.
@@ -219,53 +243,137 @@ public final class RDSManager
     public Object nextElement()
       throws NoSuchElementException
     {
-      URNResolverService ret_val = null;
+      if(current_element >= resolvers.length)
+        throw new NoSuchElementException();
 
-      int i = current_element;
+      return resolvers[current_element++];
+    }
+  }
 
-      if(!locals_checked)
-      {
-        int size = local_resolvers.size();
-        for(int j = 0; j < size; j++)
-        {
-          URNResolverService res = (URNResolverService)local_resolvers.get(j);
-          if(res.canResolve(namespace))
-          {
-            ret_val = res;
-            break;
-          }
+  /**
+   * A resolver chain along with the cache in front of it, the namespace it
+   * was built for and the time that it should be built again.
+   */
+  private static final class ChainEntry
+  {
+    /** The resolvers in order of preference */
+    final URNResolverService[] resolvers;
 
-        }
+    /** The cache to use with the resolvers. Null if there is none */
+    final CachingResolverService cache;
 
-        locals_checked = true;
-      }
+    /** The namespace identifier as the resolvers were asked about it */
+    final String nid;
 
-      for( ; (ret_val == null) && (i <= last_element); i++)
-      {
-        // try the hashmap first to see if we have it loaded.
-        Object resolver = rds_loaded.get(resolver_order[i]);
+    /** The time the chain expires. Negative if it never does */
+    final long expiry;
 
-        if(resolver != null)
-          ret_val = (URNResolverService)resolver;
-        else
-          ret_val = loadResolver(resolver_order[i]);
+    /**
+     * Create a new entry for the given chain.
+     *
+     * @param resolvers The resolvers in order of preference
+     * @param cache The cache to use with the resolvers. May be null
+     * @param nid The namespace identifier as the resolvers were asked
+     * @param expiry The time the chain expires. Negative for never
+     */
+    ChainEntry(URNResolverService[] resolvers,
+               CachingResolverService cache,
+               String nid,
+               long expiry)
+    {
+      this.resolvers = resolvers;
+      this.cache = cache;
+      this.nid = nid;
+      this.expiry = expiry;
+    }
 
-        if((ret_val != null) &&
-           ret_val.canResolve(namespace) &&
-           ret_val.checkService(rds_service))
-        {
-          break;
-        }
-        else
-          ret_val = null;
-      }
+    /**
+     * Check that the chain can be used for the given namespace now.
+     *
+     * @param id The namespace identifier as asked for
+     * @param now The current time in milliseconds
+     * @return true if the chain was built for the same namespace and has
+     *   not expired
+     */
+    boolean isValid(String id, long now)
+    {
+      return ((expiry < 0) || (now < expiry)) && nid.equals(id);
+    }
+  }
 
-      current_element = i + 1;
+  /**
+   * Key for the cache of resolver chains, made of a lower case namespace
+   * identifier and a service type.
+   */
+  private static final class ChainKey
+  {
+    /** The namespace identifier */
+    private final String nid;
 
-      if(ret_val == null)
-        throw new NoSuchElementException();
+    /** The service type wanted */
+    private final int service;
 
-      return ret_val;
+    /**
+     * Create a new key for the given namespace and service.
+     *
+     * @param nid The namespace identifier
+     * @param service The service type wanted
+     */
+    ChainKey(String nid, int service)
+    {
+      this.nid = nid;
+      this.service = service;
+    }
+
+    /**
+     * Compare this key to another for equality.
+     *
+     * @param o The object to compare against
+     * @return true if the namespace and service are both the same
+     */
+    public boolean equals(Object o)
+    {
+      if(!(o instanceof ChainKey))
+        return false;
+
+      ChainKey key = (ChainKey)o;
+
+      return (service == key.service) && nid.equals(key.nid);
+    }
+
+    /**
+     * Calculate the hash code of the key.
+     *
+     * @return A hash of the namespace and service
+     */
+    public int hashCode()
+    {
+      return nid.hashCode() * 31 + service;
+    }
+  }
+
+  /**
+   * Holder of the resolve order property and the list parsed from it, so
+   * that the two are always swapped together.
+   */
+  private static final class ParsedOrder
+  {
+    /** The value of the property */
+    final String source;
+
+    /** The resolver names parsed from the property */
+    final String[] order;
+
+    /**
+     * Create a new parsed order.
+     *
+     * @param source The value of the property
+     * @param order The resolver names parsed from the property
+     */
+    ParsedOrder(String source, String[] order)
+    {
+      this.source = source;
+      this.order = order;
     }
   }
 
@@ -308,8 +416,6 @@ public final class RDSManager
 
     if(sys_prop_fixed)
     {
-      String[] resolve_order;
-
       if(resolve_prop != null)
         resolve_order = parsePropConfig(resolve_prop);
       else
@@ -319,9 +425,28 @@ public final class RDSManager
       }
     }
 
+    long time = DEFAULT_CHAIN_TTL;
+
+    try
+    {
+      String prop = System.getProperty(CHAIN_TTL_PROP);
+
+      if(prop != null)
+        time = Long.parseLong(prop.trim());
+    }
+    catch(SecurityException se)
+    {
+      // if we can't read it, then ignore it. Use the default.
+    }
+    catch(NumberFormatException nfe)
+    {
+      System.err.println("Invalid value for " + CHAIN_TTL_PROP + ": " + nfe);
+    }
+
+    chain_ttl = time;
+
     // OK, all worked, now lets create our resource factory interface
     resource_factory = new URIResourceFactoryImpl();
-    local_resolvers = new ArrayList();
   }
 
   /**
@@ -422,12 +547,12 @@ public final class RDSManager
    * enumeration will retain the original order.
    * <P>
    * The return values from the enumeration are guaranteed to be
-   * <CODE>URNResolverSerivces</CODE>. The difference between this and
-   * standard enumerations is that the <CODE>hasMoreElements</CODE> method
-   * returns true if there are <I>potentially</I> more resolvers available.
-   * There may be more resolvers in the list but none satisfy the requirements
-   * and therefore nothing can be returned. If the enumeration runs out of
-   * options then a {@link java.util.NoSuchElementException} is generated.
+   * <CODE>URNResolverSerivces</CODE>. Locally registered resolvers that can
+   * handle the namespace come first, followed by the resolvers from the
+   * resolve order that handle both the namespace and service. A
+   * {@link CachingResolverService} is not a resolver in its own right and
+   * is not included. If the enumeration runs out of options then a
+   * {@link java.util.NoSuchElementException} is generated.
    * <P>
    *
    * @param nid The namespace identifier to be resolved.
@@ -445,7 +570,9 @@ public final class RDSManager
     if(local_resolve_order == null)
       throw new NoURNConfigException("Fetching all resolvers");
 
-    return new RDSEnumerator(local_resolve_order, nid, type);
+    ChainEntry entry = getResolverChain(local_resolve_order, nid, type);
+
+    return new RDSEnumerator(entry.resolvers);
   }
 
   /**
@@ -462,51 +589,240 @@ public final class RDSManager
   public static URNResolverService getFirstResolver(String nid, int type)
     throws NoURNConfigException
   {
-    URNResolverService ret_val = null;
-    String[] local_resolve_order = getResolverOrder();
+    URNResolverService[] chain = getResolvers(nid, type);
 
-    int size = local_resolvers.size();
+    return (chain.length == 0) ? null : chain[0];
+  }
+
+  /**
+   * Fetch every resolver that can handle the nominated query type, in
+   * order of preference. The returned array is shared and must not be
+   * modified.
+   *
+   * @param nid The namespace identifier to be resolved.
+   * @param type The type indicated by the values I2R, I2L etc from the
+   *  URIResolver interface.
+   * @return The resolvers, which may be an empty array
+   * @exception NoURNConfigException Unable to find order for RDS loading.
+   */
+  static URNResolverService[] getResolvers(String nid, int type)
+    throws NoURNConfigException
+  {
+    String[] local_resolve_order = getResolverOrder();
 
     // if everything is dead then....
-    if((local_resolve_order == null) && (size == 0))
+    if((local_resolve_order == null) && local_resolvers.isEmpty())
       throw new NoURNConfigException("Fetching single resolver");
 
-    int i;
+    return getResolverChain(local_resolve_order, nid, type).resolvers;
+  }
 
-    // Try the local resolvers first
-    if(size != 0)
+  /**
+   * Fetch the cache that keeps the answers for the nominated query type.
+   * This is the first {@link CachingResolverService} in the resolve order
+   * that can handle the namespace and service.
+   *
+   * @param nid The namespace identifier to be resolved.
+   * @param type The type indicated by the values I2R, I2L etc from the
+   *  URIResolver interface.
+   * @return The cache or null if there is none
+   */
+  static CachingResolverService getCache(String nid, int type)
+  {
+    return getResolverChain(getResolverOrder(), nid, type).cache;
+  }
+
+  /**
+   * Fetch the chain of resolvers that can handle the namespace and
+   * service. The chain is built the first time it is asked for and then
+   * kept until it expires, or the local resolvers, the resolve order or
+   * the factory change. The returned array must not be modified.
+   * <P>
+   *
+   * Namespace identifiers are not case sensitive, so a chain is kept under
+   * the lower case form of the namespace. The resolvers are still asked
+   * about the namespace as it was written, and a request using the same
+   * namespace in another case builds the chain again.
+   *
+   * @param order The resolver order to use. May be null
+   * @param nid The namespace identifier to be resolved.
+   * @param type The type indicated by the values I2R, I2L etc from the
+   *  URIResolver interface.
+   * @return The resolvers in order of preference and their cache
+   */
+  private static ChainEntry getResolverChain(String[] order,
+                                             String nid,
+                                             int type)
+  {
+    if(order == null)
+      order = NO_ORDER;
+
+    ChainKey key = new ChainKey(SchemeTable.lowerCase(nid), type);
+    ChainEntry entry;
+
+    if(order == chain_order)
     {
-      for(i = 0; i < size; i++)
+      entry = (ChainEntry)resolver_chains.get(key);
+
+      if((entry != null) && entry.isValid(nid, System.currentTimeMillis()))
+        return entry;
+    }
+
+    synchronized(resolver_chains.getLock(key))
+    {
+      int generation;
+
+      synchronized(resolver_chains)
       {
-        URNResolverService res = (URNResolverService)local_resolvers.get(i);
-        if(res.canResolve(nid))
+        if(order != chain_order)
         {
-          ret_val = res;
-          break;
+          chain_order = order;
+          chain_generation++;
+          resolver_chains.clear();
         }
 
+        generation = chain_generation;
+      }
+
+      long now = System.currentTimeMillis();
+      entry = (ChainEntry)resolver_chains.get(key);
+
+      if((entry != null) && entry.isValid(nid, now))
+        return entry;
+
+      entry = buildResolverChain(order, nid, type, now);
+
+      synchronized(resolver_chains)
+      {
+        if((generation == chain_generation) && (entry.expiry != now))
+        {
+          if(resolver_chains.size() >= MAX_CHAINS)
+            purgeChains(now);
+
+          resolver_chains.put(key, entry);
+        }
       }
     }
 
-    for(i = 0; (ret_val != null) && (i < local_resolve_order.length); i++)
+    return entry;
+  }
+
+  /**
+   * Remove the expired chains. If that does not leave room, remove others
+   * until a quarter of the limit is free again. Must be called while
+   * holding the lock on the chain map.
+   *
+   * @param now The current time in milliseconds
+   */
+  private static void purgeChains(long now)
+  {
+    Iterator itr = resolver_chains.values().iterator();
+
+    while(itr.hasNext())
     {
-      // try the hashmap first to see if we have it loaded.
-      Object resolver = rds_loaded.get(local_resolve_order[i]);
+      ChainEntry entry = (ChainEntry)itr.next();
 
-      if(resolver != null)
-        ret_val = (URNResolverService)resolver;
-      else
-        ret_val = loadResolver(local_resolve_order[i]);
+      if((entry.expiry >= 0) && (now >= entry.expiry))
+        itr.remove();
+    }
 
-      if((ret_val != null) &&
-         ret_val.canResolve(nid) &&
-         ret_val.checkService(type))
-        break;
-      else
-        ret_val = null;
+    int target = MAX_CHAINS - MAX_CHAINS / 4;
+    itr = resolver_chains.keySet().iterator();
+
+    while((resolver_chains.size() > target) && itr.hasNext())
+    {
+      itr.next();
+      itr.remove();
     }
+  }
 
-    return ret_val;
+  /**
+   * Build the chain of resolvers that can handle the namespace and
+   * service. The local resolvers that can handle the namespace come
+   * first, then the resolvers from the order that handle both the
+   * namespace and service. Each resolver only appears once. The first
+   * caching resolver that handles the namespace and service is kept
+   * alongside the chain rather than in it.
+   * <P>
+   *
+   * Resolvers may change the namespaces they can handle, so the chain
+   * expires after the <CODE>urn.resolve.chain.ttl</CODE> system property
+   * time, which defaults to one minute. If a resolver in the order could
+   * not be loaded, the chain expires no later than the load failure does
+   * so that the resolver is tried again once the failure is forgotten.
+   *
+   * @param order The resolver order to use
+   * @param nid The namespace identifier to be resolved.
+   * @param type The type indicated by the values I2R, I2L etc from the
+   *  URIResolver interface.
+   * @param now The current time in milliseconds
+   * @return The chain of resolvers in order of preference and their cache
+   */
+  private static ChainEntry buildResolverChain(String[] order,
+                                               String nid,
+                                               int type,
+                                               long now)
+  {
+    ArrayList chain = new ArrayList();
+    Object[] locals = local_resolvers.toArray();
+    CachingResolverService cache = null;
+    long ttl = chain_ttl;
+
+    // Try the local resolvers first
+    for(int i = 0; i < locals.length; i++)
+    {
+      URNResolverService res = (URNResolverService)locals[i];
+
+      if(res instanceof CachingResolverService)
+      {
+        if((cache == null) && res.canResolve(nid) && res.checkService(type))
+          cache = (CachingResolverService)res;
+      }
+      else if(res.canResolve(nid))
+        chain.add(res);
+    }
+
+    for(int i = 0; i < order.length; i++)
+    {
+      URNResolverService res = getResolver(order[i]);
+
+      if(res == null)
+      {
+        long failure_ttl = LoadFailureCache.getTimeToLive();
+
+        if((failure_ttl >= 0) && ((ttl < 0) || (failure_ttl < ttl)))
+          ttl = failure_ttl;
+      }
+      else if(res instanceof CachingResolverService)
+      {
+        if((cache == null) && res.canResolve(nid) && res.checkService(type))
+          cache = (CachingResolverService)res;
+      }
+      else if(!chain.contains(res) &&
+              res.canResolve(nid) &&
+              res.checkService(type))
+        chain.add(res);
+    }
+
+    URNResolverService[] ret_val = new URNResolverService[chain.size()];
+    chain.toArray(ret_val);
+
+    return new ChainEntry(ret_val, cache, nid, (ttl < 0) ? -1 : now + ttl);
+  }
+
+  /**
+   * Throw away all of the cached resolver chains so that they are built
+   * again on the next request. Resolvers call this when the namespaces
+   * they are able to resolve have changed, such as after reloading their
+   * configuration.
+   */
+  public static void clearResolverChains()
+  {
+    synchronized(resolver_chains)
+    {
+      chain_generation++;
+      resolver_chains.clear();
+    }
   }
 
   /**
@@ -555,7 +871,19 @@ public final class RDSManager
         String sys_prop = System.getProperty(RESOLVE_ORDER);
 
         if(sys_prop != null)
-          ret_val = parsePropConfig(sys_prop);
+        {
+          // Only parse the property again if it has been set since the
+          // last time we looked.
+          ParsedOrder parsed = prop_order;
+
+          if((parsed == null) || (parsed.source != sys_prop))
+          {
+            parsed = new ParsedOrder(sys_prop, parsePropConfig(sys_prop));
+            prop_order = parsed;
+          }
+
+          ret_val = parsed.order;
+        }
         else
         {
           if(file_rds_search_order == null)
@@ -573,6 +901,32 @@ public final class RDSManager
     return ret_val;
   }
 
+  /**
+   * Fetch the named resolver, loading it if this is the first time it has
+   * been asked for. A resolver is only ever loaded and initialised once, no
+   * matter how many threads ask for it at the same time.
+   *
+   * @param type The type (defined in the resolver order) to fetch.
+   * @return The URNResolver needed or null if it could not be loaded
+   */
+  private static URNResolverService getResolver(String type)
+  {
+    URNResolverService ret_val = (URNResolverService)rds_loaded.get(type);
+
+    if(ret_val != null)
+      return ret_val;
+
+    synchronized(rds_loaded.getLock(type))
+    {
+      ret_val = (URNResolverService)rds_loaded.get(type);
+
+      if(ret_val == null)
+        ret_val = loadResolver(type);
+    }
+
+    return ret_val;
+  }
+
   /**
    * Find load the named resolver. First check the factory (if it is set)
    * then the search path, and if that all fails, try the default package
@@ -605,35 +959,22 @@ public final class RDSManager
       }
     }
 
-    // hmmm... didn't find one in the factory, lets try the system properties.
-    String pkg_list = null;
-
-    try
-    {
-      pkg_list = System.getProperty(PKG_LIST_PROP);
-    }
-    catch(SecurityException se)
-    {
-      // if we can't read it, then ignore it. We still have the default pkg
-    }
+    // hmmm... didn't find one in the factory, lets try the index and then
+    // the system properties.
+    URNResolverService resolver =
+      createResolver(HandlerIndex.getResolverClass(type));
 
-    // append the default package to the list and prepare it for use
-    pkg_list = (pkg_list == null) ? DEFAULT_PKG : pkg_list + '|' + DEFAULT_PKG;
+    String[] pkg_list = resolver_pkgs.getPackages();
 
-    boolean resolver_found = false;
-    URNResolverService resolver = null;
-    StringTokenizer strtok = new StringTokenizer(pkg_list, "|");
-
-    // Loop through all of the available package names. Trim, splice and dice
-    // each package looking for the appropriate class instance. If we find one,
-    // then do a check to make sure that it implements the correct interface
-    // (URNResolver) before committing to creating an instance of it. If
-    // everything checks out OK, the create an instance and then exit from
-    // the check.
-    while(!resolver_found && strtok.hasMoreTokens())
-    {
-      String pkg_name = strtok.nextToken().trim();
-      pkg_name = pkg_name.toLowerCase();
+    // Loop through all of the available package names looking for the
+    // appropriate class instance.
+    for(int i = 0;
+        (resolver == null) &&
+        !HandlerIndex.isIndexOnly() &&
+        (i < pkg_list.length);
+        i++)
+    {
+      String pkg_name = pkg_list[i];
       StringBuffer buffer = new StringBuffer(pkg_name);
 
       // make up the class name to load
@@ -641,85 +982,111 @@ public final class RDSManager
       buffer.append(type);
       buffer.append(".Resolver");
 
-      String class_name = buffer.toString();
+      resolver = createResolver(buffer.toString());
+    }
 
-      try
-      {
-        Class reference = URNResolverService.class;
-        Class rds_class = Class.forName(class_name);
+    // If we have a valid instance, register it with the hashmap and then
+    // exit the method with the appropriate return value.
+    if(resolver != null)
+      rds_loaded.put(type, resolver);
+
+    return resolver;
+  }
+
+  /**
+   * Load the named class and create an initialised resolver from it. Do a
+   * check to make sure that it implements the correct interface
+   * (URNResolver) before committing to creating an instance of it. If the
+   * class is missing, of the wrong type or fails to initialise, the failure
+   * is recorded so that it is not tried again for a while.
+   *
+   * @param className The fully qualified name of the class or null
+   * @return The new resolver or null if one could not be created
+   */
+  private static URNResolverService createResolver(String className)
+  {
+    if((className == null) || LoadFailureCache.hasFailed(className))
+      return null;
+
+    boolean resolver_found = false;
+    URNResolverService resolver = null;
 
-        Class[] temp_interfaces = rds_class.getInterfaces();
-        String  extension_type;
-        boolean instance_found = false;
+    try
+    {
+      Class reference = URNResolverService.class;
+      Class rds_class = Class.forName(className);
+
+      Class[] temp_interfaces = rds_class.getInterfaces();
 
-        // First check that the class implements the right interfaces
-        // at this level.
-        if(temp_interfaces.length != 0)
+      // First check that the class implements the right interfaces
+      // at this level. Interfaces extending the resolver interface, such
+      // as CachingResolverService, count as well.
+      if(temp_interfaces.length != 0)
+      {
+        for(int i = 0; i < temp_interfaces.length; i++)
         {
-          for(int i = 0; i < temp_interfaces.length; i++)
+          if(reference.isAssignableFrom(temp_interfaces[i]))
           {
-            if(temp_interfaces[i].equals(reference))
-            {
-              // make an instance of it
-              resolver = (URNResolverService)rds_class.newInstance();
-              resolver.init();
-              resolver.setResourceFactory(resource_factory);
-              resolver_found = true;
-            }
+            // make an instance of it
+            resolver = (URNResolverService)rds_class.newInstance();
+            resolver.init();
+            resolver.setResourceFactory(resource_factory);
+            resolver_found = true;
           }
         }
-
-        // If we didn't find the right interface at the top level with the
-        // last check then we recursively check the superclasses for the
-        // same conditions.
-        if(!resolver_found && (backgroundCheck(rds_class, reference)))
-        {
-          // make an instance of it
-          resolver = (URNResolverService)rds_class.newInstance();
-          resolver.init();
-          resolver.setResourceFactory(resource_factory);
-          resolver_found = true;
-        }
-      }
-      catch(ClassNotFoundException cnfe)
-      {
-        // ignore and try the next one
       }
-      catch(InstantiationException ie)
-      {
-        // ignore and try the next one
-      }
-      catch(IllegalAccessException iae)
-      {
-        // ignore and try the next one
-      }
-      catch(ConfigErrorException cfe)
-      {
-        resolver = null;
-        System.err.println();
-        System.err.println("Resolver class " + class_name +
-                           " had an configuration error: ");
-        System.err.println(cfe);
-        System.err.println("Continuing.....");
-      }
-      catch(Throwable th)
+
+      // If we didn't find the right interface at the top level with the
+      // last check then we recursively check the superclasses for the
+      // same conditions.
+      if(!resolver_found && (backgroundCheck(rds_class, reference)))
       {
-        // A last resort catch because something might have screwed
-        // up in the class.forName() static initialisation
-        resolver = null;
-        System.err.println();
-        System.err.println("There was an unexpected error loading " +
-                           " the class " + class_name + ".");
-        System.err.println("This is the error. We'll continue loading anyway");
-        System.err.println(th);
-        System.err.println("Continuing.....");
+        // make an instance of it
+        resolver = (URNResolverService)rds_class.newInstance();
+        resolver.init();
+        resolver.setResourceFactory(resource_factory);
+        resolver_found = true;
       }
     }
+    catch(ClassNotFoundException cnfe)
+    {
+      // ignore and try the next one
+    }
+    catch(InstantiationException ie)
+    {
+      // ignore and try the next one
+    }
+    catch(IllegalAccessException iae)
+    {
+      // ignore and try the next one
+    }
+    catch(ConfigErrorException cfe)
+    {
+      System.err.println();
+      System.err.println("Resolver class " + className +
+                         " had an configuration error: ");
+      System.err.println(cfe);
+      System.err.println("Continuing.....");
+    }
+    catch(Throwable th)
+    {
+      // A last resort catch because something might have screwed
+      // up in the class.forName() static initialisation
+      System.err.println();
+      System.err.println("There was an unexpected error loading " +
+                         " the class " + className + ".");
+      System.err.println("This is the error. We'll continue loading anyway");
+      System.err.println(th);
+      System.err.println("Continuing.....");
+    }
 
-    // If we have a valid instance, register it with the hashmap and then
-    // exit the method with the appropriate return value.
-    if(resolver_found)
-      rds_loaded.put(type, resolver);
+    // Whether it was missing, the wrong type or broken, don't try this
+    // one again for a while.
+    if(!resolver_found)
+    {
+      LoadFailureCache.addFailure(className);
+      resolver = null;
+    }
 
     return resolver;
   }
@@ -746,7 +1113,7 @@ public final class RDSManager
     if(temp_interfaces.length != 0)
     {
       for(j = 0; j < temp_interfaces.length; j++)
-        if(temp_interfaces[j].equals(reference))
+        if(reference.isAssignableFrom(temp_interfaces[j]))
           return true;
     }
 
@@ -781,6 +1148,7 @@ public final class RDSManager
       security.checkSetFactory();
 
     rds_factory = fac;
+    clearResolverChains();
   }
 
   /**
@@ -802,19 +1170,19 @@ public final class RDSManager
    */
   static void addURNResolver(URNResolverService resolver)
   {
-    if((resolver != null) && !local_resolvers.contains(resolver))
-      local_resolvers.add(resolver);
+    if((resolver != null) && local_resolvers.addIfAbsent(resolver))
+      clearResolverChains();
   }
 
   /**
-   * Add a specific URN resolver to the system. If the resolver is already
-   * registered, the request is ignored. Note that this is appended to the
-   * list so registration order is important.
+   * Remove a specific URN resolver from the system. If the resolver is not
+   * registered, the request is ignored.
    *
-   * @param resolver The resolver to add
+   * @param resolver The resolver to remove
    */
   static void removeURNResolver(URNResolverService resolver)
   {
-      local_resolvers.remove(resolver);
+    if(local_resolvers.remove(resolver))
+      clearResolverChains();
   }
 }
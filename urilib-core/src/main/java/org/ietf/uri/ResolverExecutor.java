@@ -0,0 +1,831 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+
+package org.ietf.uri;
+
+// Standard imports
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Application specific imports
+// none
+
+/**
+ * Runs URN resolution requests against a chain of resolvers, either one
+ * after the other or all at once on a shared pool of threads.
+ * <P>
+ *
+ * Sequential mode is the default and behaves exactly as a simple loop over
+ * the resolvers would. When parallel mode is turned on with the
+ * <CODE>urn.resolve.parallel</CODE> system property, every resolver in the
+ * chain is started as soon as the request is submitted and the answers are
+ * collected afterwards in the order of the chain. Each resolver is given
+ * <CODE>urn.resolve.timeout</CODE> milliseconds (default 10 seconds, zero
+ * or less waits forever) from the time of submission. A resolver that does
+ * not answer in time is cancelled and treated as having no answer. The
+ * pool is limited to <CODE>urn.resolve.threads</CODE> threads (default 16).
+ * Once they are all busy, each further request is given a thread of its
+ * own that ends with the request. Requests never run in the calling
+ * thread, so a resolver that hangs cannot stop a batch timing out or a
+ * hedged request moving on to the next resolver.
+ * <P>
+ *
+ * Requests for a single answer may also be hedged. The most preferred
+ * resolver is asked first. If it has not answered after
+ * <CODE>urn.resolve.hedge.delay</CODE> milliseconds the next resolver is
+ * asked as well, and so on down the chain. A resolver that fails or has
+ * no answer causes the next one to be asked straight away. The first
+ * answer wins and the other requests are cancelled. Hedging is off unless
+ * the delay is set to zero or more.
+ * <P>
+ *
+ * Resource connections from requests that are given up on, such as the
+ * losers of a hedged request, resolvers that ran out of time or the rest
+ * of a batch after a resolver failed, are closed rather than left for the
+ * garbage collector. A resolver that is still working when it is given up
+ * on closes them as soon as it is done.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+final class ResolverExecutor
+{
+  /** Property to turn on querying resolvers in parallel */
+  private static final String PARALLEL_PROP = "urn.resolve.parallel";
+
+  /** Property defining how long to wait for each resolver, in milliseconds */
+  private static final String TIMEOUT_PROP = "urn.resolve.timeout";
+
+  /** Property defining the maximum number of resolver threads */
+  private static final String THREADS_PROP = "urn.resolve.threads";
+
+  /** Property defining the delay before asking the next resolver */
+  private static final String HEDGE_PROP = "urn.resolve.hedge.delay";
+
+  /** The default time to wait for a resolver, in milliseconds */
+  private static final long DEFAULT_TIMEOUT = 10000;
+
+  /** The default maximum number of resolver threads */
+  private static final int DEFAULT_THREADS = 16;
+
+  /** Time an idle resolver thread is kept around, in seconds */
+  private static final long IDLE_TIME = 60;
+
+  /** Flag to say resolvers are queried in parallel */
+  private static volatile boolean parallel;
+
+  /** The time to wait for each resolver. Zero or less waits forever */
+  private static volatile long timeout;
+
+  /** Delay before asking the next resolver. Negative turns hedging off */
+  private static volatile long hedge_delay;
+
+  /** The maximum number of threads in the pool */
+  private static final int max_threads;
+
+  /** The pool of resolver threads. Created the first time it is needed */
+  private static ThreadPoolExecutor executor;
+
+  /**
+   * Static initialiser to read the settings from the system properties.
+   */
+  static
+  {
+    boolean enable = false;
+    long time = DEFAULT_TIMEOUT;
+    int threads = DEFAULT_THREADS;
+    long delay = -1;
+
+    try
+    {
+      String prop = System.getProperty(PARALLEL_PROP);
+
+      if(prop != null)
+        enable = prop.trim().equalsIgnoreCase("true");
+
+      prop = System.getProperty(TIMEOUT_PROP);
+
+      if(prop != null)
+        time = Long.parseLong(prop.trim());
+
+      prop = System.getProperty(THREADS_PROP);
+
+      if(prop != null)
+        threads = Integer.parseInt(prop.trim());
+
+      prop = System.getProperty(HEDGE_PROP);
+
+      if(prop != null)
+        delay = Long.parseLong(prop.trim());
+    }
+    catch(SecurityException se)
+    {
+      // if we can't read it, then ignore it. Use the default.
+    }
+    catch(NumberFormatException nfe)
+    {
+      System.err.println("Invalid resolver setting: " + nfe);
+    }
+
+    parallel = enable;
+    timeout = time;
+    max_threads = (threads < 1) ? 1 : threads;
+    hedge_delay = delay;
+  }
+
+  /**
+   * A single request to a resolver that is run by the thread pool.
+   */
+  private static class DecodeTask implements Callable
+  {
+    /** State while the resolver is still working on the answer */
+    private static final int WAITING = 0;
+
+    /** State once the answer has been handed back */
+    private static final int FINISHED = 1;
+
+    /** State once the answer is no longer wanted */
+    private static final int ABANDONED = 2;
+
+    /** The resolver to ask */
+    private final URNResolverService resolver;
+
+    /** The URN to be resolved */
+    private final URN urn;
+
+    /** The type of service requested */
+    private final int type;
+
+    /** Where the task is up to. One of the state constants */
+    private final AtomicInteger state;
+
+    /**
+     * Create a new task for the given resolver.
+     *
+     * @param resolver The resolver to ask
+     * @param urn The URN to be resolved
+     * @param type The type of service requested
+     */
+    DecodeTask(URNResolverService resolver, URN urn, int type)
+    {
+      this.resolver = resolver;
+      this.urn = urn;
+      this.type = type;
+
+      state = new AtomicInteger(WAITING);
+    }
+
+    /**
+     * Ask the resolver for its answer. If the answer is no longer wanted by
+     * the time it arrives, it is released here.
+     *
+     * @return The single object or array returned by the resolver
+     */
+    public Object call()
+      throws Exception
+    {
+      if(state.get() == ABANDONED)
+        return null;
+
+      Object ret_val = decode(resolver, urn, type);
+
+      if(!state.compareAndSet(WAITING, FINISHED))
+      {
+        release(ret_val);
+        ret_val = null;
+      }
+
+      return ret_val;
+    }
+
+    /**
+     * Mark the answer as no longer wanted.
+     *
+     * @return true if the task will release the answer itself, false if
+     *   the answer has already been handed back
+     */
+    boolean abandon()
+    {
+      return state.compareAndSet(WAITING, ABANDONED) ||
+             (state.get() == ABANDONED);
+    }
+  }
+
+  /**
+   * The outstanding requests made to a chain of resolvers. The answers are
+   * fetched with {@link #getResults()}. A batch whose answers are not
+   * going to be used must be given up with {@link #discard()} so that any
+   * resource connections in them are closed.
+   */
+  static final class Batch
+  {
+    /** The resolvers in the order of preference */
+    private final URNResolverService[] resolvers;
+
+    /** The URN to be resolved */
+    private final URN urn;
+
+    /** The type of service requested */
+    private final int type;
+
+    /** The running requests, or null when run sequentially */
+    private final Future[] pending;
+
+    /** The tasks behind the running requests */
+    private final DecodeTask[] tasks;
+
+    /** The time at which to give up waiting. Zero or less waits forever */
+    private final long deadline;
+
+    /** Set when a resolver did not answer in time */
+    private boolean timed_out;
+
+    /** The answers once they have all been fetched */
+    private Object[] results;
+
+    /** Set once the batch has been given up on */
+    private boolean discarded;
+
+    /**
+     * Create a new batch and, in parallel mode, start every request.
+     *
+     * @param resolvers The resolvers in the order of preference
+     * @param urn The URN to be resolved
+     * @param type The type of service requested
+     */
+    Batch(URNResolverService[] resolvers, URN urn, int type)
+    {
+      this.resolvers = resolvers;
+      this.urn = urn;
+      this.type = type;
+
+      long wait = timeout;
+
+      if(parallel && (resolvers.length > 1))
+      {
+        ThreadPoolExecutor pool = getExecutor();
+
+        pending = new Future[resolvers.length];
+        tasks = new DecodeTask[resolvers.length];
+        deadline = (wait > 0) ? System.currentTimeMillis() + wait : 0;
+
+        for(int i = 0; i < resolvers.length; i++)
+        {
+          tasks[i] = new DecodeTask(resolvers[i], urn, type);
+          pending[i] = pool.submit(tasks[i]);
+        }
+      }
+      else
+      {
+        pending = null;
+        tasks = null;
+        deadline = 0;
+      }
+    }
+
+    /**
+     * Fetch the answer from each resolver in the order of preference. An
+     * entry is null if the resolver did not support the service, had no
+     * answer, or did not answer in time. For list services each entry is
+     * the array returned by the resolver.
+     *
+     * @return The answers matching the order of the resolvers
+     * @exception IOException A resolver failed while looking up the URN
+     */
+    Object[] getResults()
+      throws IOException
+    {
+      Object[] ret_val = new Object[resolvers.length];
+      int collected = 0;
+
+      try
+      {
+        for( ; collected < resolvers.length; collected++)
+        {
+          if(pending != null)
+          {
+            ret_val[collected] = waitFor(collected);
+            continue;
+          }
+
+          try
+          {
+            ret_val[collected] = decode(resolvers[collected], urn, type);
+          }
+          catch(UnsupportedServiceException use)
+          {
+            // ignore and move on.
+          }
+        }
+      }
+      finally
+      {
+        // After a failure nothing from this batch is of use to anyone
+        if(collected < resolvers.length)
+        {
+          discarded = true;
+
+          for(int i = 0; i < collected; i++)
+            release(ret_val[i]);
+
+          for(int i = collected; (pending != null) && (i < pending.length); i++)
+            ResolverExecutor.discard(tasks[i], pending[i]);
+        }
+      }
+
+      results = ret_val;
+
+      return ret_val;
+    }
+
+    /**
+     * Give up on the batch. Requests still running are cancelled and any
+     * resource connections in answers that have already been found are
+     * closed. Does nothing if the batch has already been given up on.
+     */
+    void discard()
+    {
+      if(discarded)
+        return;
+
+      discarded = true;
+
+      if(results != null)
+      {
+        for(int i = 0; i < results.length; i++)
+          release(results[i]);
+      }
+      else if(pending != null)
+      {
+        for(int i = 0; i < pending.length; i++)
+          ResolverExecutor.discard(tasks[i], pending[i]);
+      }
+    }
+
+    /**
+     * Check that every resolver gave its answer. Only valid once the
+     * results have been fetched.
+     *
+     * @return false if a resolver did not answer in time
+     */
+    boolean isComplete()
+    {
+      return !timed_out;
+    }
+
+    /**
+     * Wait for a single request to finish within the deadline.
+     *
+     * @param pos The index of the request to wait for
+     * @return The answer or null if there was none in time
+     * @exception IOException The resolver failed while looking up the URN
+     */
+    private Object waitFor(int pos)
+      throws IOException
+    {
+      Future request = pending[pos];
+
+      try
+      {
+        if(deadline <= 0)
+          return request.get();
+
+        long remaining = deadline - System.currentTimeMillis();
+
+        if((remaining <= 0) && !request.isDone())
+          throw new TimeoutException();
+
+        return request.get(remaining, TimeUnit.MILLISECONDS);
+      }
+      catch(TimeoutException te)
+      {
+        ResolverExecutor.discard(tasks[pos], request);
+        timed_out = true;
+        return null;
+      }
+      catch(InterruptedException ie)
+      {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted resolving " + urn);
+      }
+      catch(ExecutionException ee)
+      {
+        Throwable cause = ee.getCause();
+
+        if(cause instanceof UnsupportedServiceException)
+          return null;
+        else if(cause instanceof IOException)
+          throw (IOException)cause;
+        else if(cause instanceof RuntimeException)
+          throw (RuntimeException)cause;
+        else if(cause instanceof Error)
+          throw (Error)cause;
+
+        throw new IOException("Resolver failed: " + cause);
+      }
+    }
+  }
+
+  /**
+   * Private constructor to prevent instantiation of this static class.
+   */
+  private ResolverExecutor()
+  {
+  }
+
+  /**
+   * Turn querying the resolvers in parallel on or off.
+   *
+   * @param enable true to query all resolvers at once
+   */
+  static void setParallel(boolean enable)
+  {
+    parallel = enable;
+  }
+
+  /**
+   * Check to see if resolvers are queried in parallel.
+   *
+   * @return true if all resolvers are queried at once
+   */
+  static boolean isParallel()
+  {
+    return parallel;
+  }
+
+  /**
+   * Set the time to wait for each resolver when querying in parallel.
+   *
+   * @param millis The time in milliseconds. Zero or less waits forever
+   */
+  static void setTimeout(long millis)
+  {
+    timeout = millis;
+  }
+
+  /**
+   * Get the time to wait for each resolver when querying in parallel.
+   *
+   * @return The time in milliseconds. Zero or less waits forever
+   */
+  static long getTimeout()
+  {
+    return timeout;
+  }
+
+  /**
+   * Set the delay before the next resolver is asked for a single answer.
+   *
+   * @param millis The delay in milliseconds. Negative turns hedging off
+   */
+  static void setHedgeDelay(long millis)
+  {
+    hedge_delay = millis;
+  }
+
+  /**
+   * Check to see if requests for a single answer are hedged.
+   *
+   * @return true if more than one resolver may be asked at once
+   */
+  static boolean isHedged()
+  {
+    return hedge_delay >= 0;
+  }
+
+  /**
+   * Ask the resolvers for a single answer, hedging the request across the
+   * chain. The first resolver to give a non-null answer wins and all
+   * other requests are cancelled. If none of them has an answer, the
+   * failure of the most preferred resolver that failed is thrown, or null
+   * returned if they all simply had no answer or ran out of time.
+   *
+   * @param urn The URN to be resolved
+   * @param chain The resolvers in the order of preference
+   * @param type The type of service requested
+   * @return The answer from the first resolver to respond, or null
+   * @exception IOException The resolvers failed while looking up the URN
+   */
+  static Object decodeFirst(URN urn, URNResolverService[] chain, int type)
+    throws IOException
+  {
+    if(chain.length == 1)
+      return decode(chain[0], urn, type);
+
+    long delay = hedge_delay;
+    long wait = timeout;
+
+    CompletionService requests =
+      new ExecutorCompletionService(getExecutor());
+    Future[] started = new Future[chain.length];
+    DecodeTask[] tasks = new DecodeTask[chain.length];
+    Throwable[] errors = new Throwable[chain.length];
+    HashMap index = new HashMap();
+    int next = 0;
+    int running = 0;
+    long deadline = 0;
+    Future winner = null;
+    Object ret_val = null;
+
+    try
+    {
+      while((ret_val == null) && ((running > 0) || (next < chain.length)))
+      {
+        // Nothing left in the air, so ask the next resolver now.
+        if(running == 0)
+        {
+          tasks[next] = new DecodeTask(chain[next], urn, type);
+          started[next] = requests.submit(tasks[next]);
+          index.put(started[next], new Integer(next));
+          next++;
+          running++;
+
+          if(wait > 0)
+            deadline = System.currentTimeMillis() + wait;
+        }
+
+        Future done;
+
+        if(next < chain.length)
+        {
+          done = requests.poll(delay, TimeUnit.MILLISECONDS);
+
+          // Too slow, so ask the next one as well.
+          if(done == null)
+          {
+            tasks[next] = new DecodeTask(chain[next], urn, type);
+            started[next] = requests.submit(tasks[next]);
+            index.put(started[next], new Integer(next));
+            next++;
+            running++;
+
+            if(wait > 0)
+              deadline = System.currentTimeMillis() + wait;
+
+            continue;
+          }
+        }
+        else if(deadline > 0)
+        {
+          long remaining = deadline - System.currentTimeMillis();
+          done = requests.poll(remaining, TimeUnit.MILLISECONDS);
+
+          // Everything still running has had its chance
+          if(done == null)
+            break;
+        }
+        else
+        {
+          done = requests.take();
+        }
+
+        running--;
+
+        try
+        {
+          ret_val = done.get();
+          winner = done;
+        }
+        catch(ExecutionException ee)
+        {
+          Integer pos = (Integer)index.get(done);
+          errors[pos.intValue()] = ee.getCause();
+        }
+      }
+    }
+    catch(InterruptedException ie)
+    {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted resolving " + urn);
+    }
+    finally
+    {
+      for(int i = 0; i < next; i++)
+      {
+        if(started[i] != winner)
+          discard(tasks[i], started[i]);
+      }
+    }
+
+    if(ret_val != null)
+      return ret_val;
+
+    for(int i = 0; i < next; i++)
+    {
+      Throwable cause = errors[i];
+
+      if(cause instanceof IOException)
+        throw (IOException)cause;
+      else if(cause instanceof RuntimeException)
+        throw (RuntimeException)cause;
+      else if(cause instanceof Error)
+        throw (Error)cause;
+      else if(cause != null)
+        throw new IOException("Resolver failed: " + cause);
+    }
+
+    return null;
+  }
+
+  /**
+   * Submit a request to every resolver in the list. In parallel mode the
+   * requests are started immediately, otherwise they are not made until
+   * the results are asked for.
+   *
+   * @param urn The URN to be resolved
+   * @param services The resolvers in the order of preference. May be null
+   * @param type The type of service requested
+   * @return The batch of requests
+   */
+  static Batch submit(URN urn, Enumeration services, int type)
+  {
+    ArrayList list = new ArrayList();
+
+    if(services != null)
+    {
+      while(services.hasMoreElements())
+        list.add(services.nextElement());
+    }
+
+    URNResolverService[] resolvers = new URNResolverService[list.size()];
+    list.toArray(resolvers);
+
+    return new Batch(resolvers, urn, type);
+  }
+
+  /**
+   * Give up on a request. If the resolver is still working it is
+   * cancelled and releases its answer itself. If it has already answered,
+   * the answer is released here.
+   *
+   * @param task The task behind the request
+   * @param request The request to give up on
+   */
+  private static void discard(DecodeTask task, Future request)
+  {
+    if(task.abandon())
+    {
+      request.cancel(true);
+      return;
+    }
+
+    try
+    {
+      release(request.get());
+    }
+    catch(InterruptedException ie)
+    {
+      Thread.currentThread().interrupt();
+    }
+    catch(ExecutionException ee)
+    {
+      // can't happen as the task finished normally. Nothing to release.
+    }
+  }
+
+  /**
+   * Close any resource connections in an answer that is not going to be
+   * handed to anyone.
+   *
+   * @param answer The single object or array from a resolver. May be null
+   */
+  private static void release(Object answer)
+  {
+    if(answer instanceof ResourceConnection)
+    {
+      ((ResourceConnection)answer).close();
+    }
+    else if(answer instanceof Object[])
+    {
+      Object[] list = (Object[])answer;
+
+      for(int i = 0; i < list.length; i++)
+      {
+        if(list[i] instanceof ResourceConnection)
+          ((ResourceConnection)list[i]).close();
+      }
+    }
+  }
+
+  /**
+   * Fetch the shared pool of threads, creating it if needed. The threads
+   * are daemons so that they never hold up the application exiting.
+   *
+   * @return The thread pool
+   */
+  static synchronized ThreadPoolExecutor getExecutor()
+  {
+    if(executor == null)
+    {
+      final ThreadFactory factory = new ThreadFactory()
+      {
+        private final AtomicInteger count = new AtomicInteger();
+
+        public Thread newThread(Runnable r)
+        {
+          Thread t = new Thread(r, "URN Resolver " + count.incrementAndGet());
+          t.setDaemon(true);
+          return t;
+        }
+      };
+
+      // Running an overflow request in the caller would block it until
+      // the resolver answers, so start a thread outside the pool instead.
+      RejectedExecutionHandler overflow = new RejectedExecutionHandler()
+      {
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor pool)
+        {
+          factory.newThread(r).start();
+        }
+      };
+
+      executor = new ThreadPoolExecutor(0,
+                                        max_threads,
+                                        IDLE_TIME,
+                                        TimeUnit.SECONDS,
+                                        new SynchronousQueue(),
+                                        factory,
+                                        overflow);
+    }
+
+    return executor;
+  }
+
+  /**
+   * Make a single request of a resolver, using the list or single item
+   * form of the call depending on the service type.
+   *
+   * @param resolver The resolver to ask
+   * @param urn The URN to be resolved
+   * @param type The type of service requested
+   * @return The single object or array returned by the resolver
+   * @exception UnsupportedServiceException The resolver cannot do it
+   * @exception IOException The resolver failed while looking up the URN
+   */
+  static Object decode(URNResolverService resolver, URN urn, int type)
+    throws UnsupportedServiceException, IOException
+  {
+    switch(type)
+    {
+      case URIResolverService.I2Ls:
+      case URIResolverService.I2Rs:
+      case URIResolverService.I2Cs:
+      case URIResolverService.I2Ns:
+        return resolver.decodeList(urn, type);
+
+      default:
+        return resolver.decode(urn, type);
+    }
+  }
+}
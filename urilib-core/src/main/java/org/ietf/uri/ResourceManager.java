@@ -152,9 +152,19 @@ import java.net.URLStreamHandler;
  * in a seamless way.
  * <P>
  *
- * This implementation does not yet handle and caching optomisations
- * for dynamically changing the system properties while making calls.
- * This will be coming in a future implementation.
+ * Content and protocol handlers are cached once loaded, as are the
+ * content types that no handler could be found for. Each cache is thrown
+ * away whenever its package properties change or a new factory is set.
+ * Handlers returned by the factories are never cached. Loaded filename maps
+ * are kept by package name. Handler and map classes that fail to load are
+ * remembered for a time so that each package is not probed on every
+ * request. Classes registered through {@link HandlerIndex} files are tried
+ * before any package list is searched.
+ * <P>
+ *
+ * All of the caches may be used from any number of threads. Each handler
+ * or map is created exactly once, however many threads ask for it at the
+ * same time.
  * <P>
  *
  * If the protocol handlers are instances of some of the more derived
@@ -208,39 +218,193 @@ final class ResourceManager
 
   // Lots of factory handling variables. Sorted by function
 
+  /** The package list for filename maps */
+  private static final PackageList file_pkgs =
+    new PackageList(FILE_PKG_PROP, FILE_DEFAULT_PKG);
+
+  /** The package list for content handlers */
+  private static final PackageList content_pkgs =
+    new PackageList(CONTENT_PKG_PROP, CONTENT_DEFAULT_PKG);
+
+  /** The package list for java.net content handlers */
+  private static final PackageList content_java_pkgs =
+    new PackageList(CONTENT_JAVA_PROP, CONTENT_JAVA_PKG);
+
+  /** The package list for protocol handlers */
+  private static final PackageList protocol_pkgs =
+    new PackageList(PROTOCOL_PKG_PROP, PROTOCOL_DEFAULT_PKG);
+
   // Filename maps
 
   /** when all else fails map of stuff loaded from content-types.properties */
   private static FileNameMap default_map;
 
   /** default filename map (factory) */
-  private static FileNameMap filename_factory = null;
+  private static volatile FileNameMap filename_factory = null;
+
+  /** The currently loaded filename maps, keyed by package name */
+  private static final LoadingMap filename_handlers = new LoadingMap();
 
-  /** The currently loaded filename maps, in load order */
-  private static HashMap filename_handlers = new HashMap();
+  /** The filename maps listed in the handler index. Null until loaded */
+  private static volatile FileNameMap[] indexed_maps;
 
   // Content handlers
 
   /** The currently set content factory */
-  private static ContentHandlerFactory content_factory = null;
+  private static volatile ContentHandlerFactory content_factory = null;
+
+  /**
+   * Holder of the classes of the currently loaded content handlers, keyed
+   * by content type. Handlers keep state while they work, so a new one is
+   * made from the class for every request. Types that no package could
+   * supply a handler for map to NO_HANDLER so that the search is not
+   * repeated.
+   */
+  private static final LoadingMap content_handlers = new LoadingMap();
+
+  /** Marker in the content handler map for types without a handler */
+  private static final Object NO_HANDLER = new Object();
+
+  /**
+   * The most content types remembered in each content handler map. Content
+   * types come from servers, so there is no limit to how many different
+   * ones may be seen. Types beyond this are looked up every time.
+   */
+  private static final int MAX_CACHED_TYPES = 512;
+
+  /** The content package property the handler map was built with */
+  private static volatile String content_pkg_list;
 
-  /** Holder of the currently loaded content handlers */
-  private static HashMap content_handlers = new HashMap();
+  /** The java content package property the handler map was built with */
+  private static volatile String content_java_list;
 
   /**
-   * Map of a Class type to the content handler that supports it. Although
-   * multiple content handlers may support a given Class type, only the first
-   * one found is actually stored in the map.
+   * Map of a content type and Class type to the maker of the content handler
+   * that supports it, or NO_HANDLER if none does. Although multiple content
+   * handlers may support a given Class type, only the first one found is
+   * actually stored in the map.
    */
-  private static HashMap class_handlers = new HashMap();
+  private static final LoadingMap class_handlers = new LoadingMap();
 
   // Protocol Handlers
 
   /** The currently set content factory */
-  private static URIResourceStreamFactory protocol_factory = null;
+  private static volatile URIResourceStreamFactory protocol_factory = null;
+
+  /** Holder of the currently loaded protocol handlers, keyed by protocol */
+  private static final LoadingMap protocol_handlers = new LoadingMap();
+
+  /** The protocol package property the handler map was built with */
+  private static volatile String protocol_pkg_list;
 
-  /** Holder of the currently loaded content handlers */
-  private static HashMap protocol_handlers = new HashMap();
+  /**
+   * Creates new instances of a content handler class that has already been
+   * loaded once. Handlers from the java.net packages are wrapped.
+   */
+  private static final class HandlerMaker
+  {
+    /** The content handler class */
+    final Class handler_class;
+
+    /** true if the class is a java.net content handler */
+    final boolean java_net;
+
+    /**
+     * Create a maker for the class of the given handler.
+     *
+     * @param handler A handler created from the class
+     */
+    HandlerMaker(ContentHandler handler)
+    {
+      if(handler instanceof JavaNetContentHandlerWrapper)
+      {
+        JavaNetContentHandlerWrapper wrapper =
+          (JavaNetContentHandlerWrapper)handler;
+
+        handler_class = wrapper.getRealHandler().getClass();
+        java_net = true;
+      }
+      else
+      {
+        handler_class = handler.getClass();
+        java_net = false;
+      }
+    }
+
+    /**
+     * Create a new handler instance.
+     *
+     * @return The handler or null if the instance could not be made
+     */
+    ContentHandler create()
+    {
+      try
+      {
+        Object obj = handler_class.newInstance();
+
+        if(java_net)
+          return new JavaNetContentHandlerWrapper((java.net.ContentHandler)obj);
+        else
+          return (ContentHandler)obj;
+      }
+      catch(Exception e)
+      {
+        // It worked the first time, so this is very unlikely
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Key for the class index, made of a content type and the class that
+   * the content is wanted as.
+   */
+  private static final class TypedKey
+  {
+    /** The MIME type of the content */
+    final String content_type;
+
+    /** The class the content is wanted as */
+    final Class wanted;
+
+    /**
+     * Create a new key for the given type and class.
+     *
+     * @param type The MIME type of the content
+     * @param cls The class the content is wanted as
+     */
+    TypedKey(String type, Class cls)
+    {
+      content_type = type;
+      wanted = cls;
+    }
+
+    /**
+     * Compare this key to another for equality.
+     *
+     * @param o The object to compare against
+     * @return true if the content type and class are both the same
+     */
+    public boolean equals(Object o)
+    {
+      if(!(o instanceof TypedKey))
+        return false;
+
+      TypedKey key = (TypedKey)o;
+
+      return (wanted == key.wanted) && content_type.equals(key.content_type);
+    }
+
+    /**
+     * Calculate the hash code of the key.
+     *
+     * @return A hash of the content type and class
+     */
+    public int hashCode()
+    {
+      return content_type.hashCode() * 31 + wanted.hashCode();
+    }
+  }
 
   /**
    * Static initializer. Loads the contents of the default content types
@@ -339,78 +503,41 @@ final class ResourceManager
     if(ret_val != null)
       return ret_val;
 
+    // Next the maps registered in the handler index
+    FileNameMap[] indexed = getIndexedFileNameMaps();
+
+    for(int i = 0; (ret_val == null) && (i < indexed.length); i++)
+      ret_val = indexed[i].getContentTypeFor(filename);
+
+    if(ret_val != null)
+      return ret_val;
+
     // Now try looping through all of the currently loaded maps. We
     // read the current system property and dice it up. We look up
     // the currently loaded set based on the package name from the
     // list, not the full qualified name. This allows us to handle
     // dynamically changing property values.
 
-    String pkg_list = null;
-
-    try
-    {
-      pkg_list = System.getProperty(FILE_PKG_PROP);
-    }
-    catch(SecurityException se)
-    {
-      // if we can't read it, then ignore it. We still have the default pkg
-    }
-
-    // append the default package to the list and prepare it for use
-    pkg_list = (pkg_list == null) ?
-                 FILE_DEFAULT_PKG :
-                 pkg_list + '|' + FILE_DEFAULT_PKG;
-
+    String[] pkg_list = file_pkgs.getPackages();
     boolean match_found = false;
-    StringTokenizer strtok = new StringTokenizer(pkg_list, "|");
 
-
-    // Loop through all of the available package names. Trim, splice and dice
-    // each package looking for the appropriate class instance.
+    // Loop through all of the available package names looking for the
+    // appropriate class instance.
 
     FileNameMap map;
 
-    while(!match_found && strtok.hasMoreTokens())
+    for(int i = 0;
+        !match_found && !HandlerIndex.isIndexOnly() && (i < pkg_list.length);
+        i++)
     {
-      String pkg_name = strtok.nextToken().trim();
-      pkg_name = pkg_name.toLowerCase();
+      String pkg_name = pkg_list[i];
 
-      // check the handler table first
-      map = (FileNameMap)filename_handlers.get(pkg_name);
+      map = findFileNameMap(pkg_name);
 
       if(map != null)
       {
         ret_val = map.getContentTypeFor(filename);
-        if(ret_val != null)
-        {
-          match_found = true;
-          continue;
-        }
-      }
-
-      // make up the class name to load
-      StringBuffer buffer = new StringBuffer(pkg_name);
-      buffer.append(".FileNameMap");
-
-      try
-      {
-        Class cls = Class.forName(buffer.toString());
-        if(cls != null)
-        {
-          map = (FileNameMap)cls.newInstance();
-
-          // add it to the hash table of handlers
-          filename_handlers.put(pkg_name, map);
-
-          ret_val = map.getContentTypeFor(filename);
-
-          if(ret_val != null)
-            match_found = true;
-        }
-      }
-      catch(Exception e)
-      {
-        // don't worry. We can ignore this one and try the next
+        match_found = (ret_val != null);
       }
     }
 
@@ -437,78 +564,41 @@ final class ResourceManager
     if(ret_val != null)
       return ret_val;
 
+    // Next the maps registered in the handler index
+    FileNameMap[] indexed = getIndexedFileNameMaps();
+
+    for(int i = 0; (ret_val == null) && (i < indexed.length); i++)
+      ret_val = indexed[i].getFileExtension(type);
+
+    if(ret_val != null)
+      return ret_val;
+
     // Now try looping through all of the currently loaded maps. We
     // read the current system property and dice it up. We look up
     // the currently loaded set based on the package name from the
     // list, not the full qualified name. This allows us to handle
     // dynamically changing property values.
 
-    String pkg_list = null;
-
-    try
-    {
-      pkg_list = System.getProperty(FILE_PKG_PROP);
-    }
-    catch(SecurityException se)
-    {
-      // if we can't read it, then ignore it. We still have the default pkg
-    }
-
-    // append the default package to the list and prepare it for use
-    pkg_list = (pkg_list == null) ?
-                 FILE_DEFAULT_PKG :
-                 pkg_list + '|' + FILE_DEFAULT_PKG;
-
+    String[] pkg_list = file_pkgs.getPackages();
     boolean match_found = false;
-    StringTokenizer strtok = new StringTokenizer(pkg_list, "|");
-
 
-    // Loop through all of the available package names. Trim, splice and dice
-    // each package looking for the appropriate class instance.
+    // Loop through all of the available package names looking for the
+    // appropriate class instance.
 
     FileNameMap map;
 
-    while(!match_found && strtok.hasMoreTokens())
+    for(int i = 0;
+        !match_found && !HandlerIndex.isIndexOnly() && (i < pkg_list.length);
+        i++)
     {
-      String pkg_name = strtok.nextToken().trim();
-      pkg_name = pkg_name.toLowerCase();
+      String pkg_name = pkg_list[i];
 
-      // check the handler table first
-      map = (FileNameMap)filename_handlers.get(pkg_name);
+      map = findFileNameMap(pkg_name);
 
       if(map != null)
       {
         ret_val = map.getFileExtension(type);
-        if(ret_val != null)
-        {
-          match_found = true;
-          continue;
-        }
-      }
-
-      // make up the class name to load
-      StringBuffer buffer = new StringBuffer(pkg_name);
-      buffer.append(".FileNameMap");
-
-      try
-      {
-        Class cls = Class.forName(buffer.toString());
-        if(cls != null)
-        {
-          map = (FileNameMap)cls.newInstance();
-
-          // add it to the hash table of handlers
-          filename_handlers.put(pkg_name, map);
-
-          ret_val = map.getFileExtension(type);
-
-          if(ret_val != null)
-            match_found = true;
-        }
-      }
-      catch(Exception e)
-      {
-        // don't worry. We can ignore this one and try the next
+        match_found = (ret_val != null);
       }
     }
 
@@ -612,6 +702,99 @@ final class ResourceManager
     return ret_val;
   }
 
+  /**
+   * Fetch the file name map supplied by the named package. The map is
+   * loaded the first time it is asked for, and only once no matter how many
+   * threads ask for it at the same time.
+   *
+   * @param pkgName The lower case name of the package
+   * @return The map or null if the package doesn't have one
+   */
+  private static FileNameMap findFileNameMap(String pkgName)
+  {
+    FileNameMap map = (FileNameMap)filename_handlers.get(pkgName);
+
+    if(map != null)
+      return map;
+
+    // make up the class name to load
+    StringBuffer buffer = new StringBuffer(pkgName);
+    buffer.append(".FileNameMap");
+
+    String class_name = buffer.toString();
+
+    synchronized(filename_handlers.getLock(pkgName))
+    {
+      map = (FileNameMap)filename_handlers.get(pkgName);
+
+      if(map == null)
+      {
+        Object obj = createInstance(class_name);
+
+        if(obj instanceof FileNameMap)
+        {
+          map = (FileNameMap)obj;
+
+          // add it to the hash table of handlers
+          filename_handlers.put(pkgName, map);
+        }
+      }
+    }
+
+    return map;
+  }
+
+  /**
+   * Fetch the file name maps listed in the handler index. The maps are
+   * created the first time this is called.
+   *
+   * @return The maps in order of preference
+   */
+  private static FileNameMap[] getIndexedFileNameMaps()
+  {
+    FileNameMap[] ret_val = indexed_maps;
+
+    if(ret_val != null)
+      return ret_val;
+
+    synchronized(HandlerIndex.class)
+    {
+      ret_val = indexed_maps;
+
+      if(ret_val == null)
+        ret_val = createIndexedFileNameMaps();
+    }
+
+    return ret_val;
+  }
+
+  /**
+   * Create the file name maps listed in the handler index. Only called
+   * while holding the lock on the index.
+   *
+   * @return The maps in order of preference
+   */
+  private static FileNameMap[] createIndexedFileNameMaps()
+  {
+    FileNameMap[] ret_val;
+    String[] names = HandlerIndex.getFileNameMapClasses();
+    ArrayList maps = new ArrayList(names.length);
+
+    for(int i = 0; i < names.length; i++)
+    {
+      Object map = createInstance(names[i]);
+
+      if(map instanceof FileNameMap)
+        maps.add(map);
+    }
+
+    ret_val = new FileNameMap[maps.size()];
+    maps.toArray(ret_val);
+    indexed_maps = ret_val;
+
+    return ret_val;
+  }
+
   //---------------------------------------------------------------------------
   // Content Handler Code
   //---------------------------------------------------------------------------
@@ -636,6 +819,8 @@ final class ResourceManager
         security.checkSetFactory();
 
     content_factory = fac;
+    content_handlers.clear();
+    class_handlers.clear();
   }
 
   /**
@@ -665,58 +850,192 @@ final class ResourceManager
     if(contentType == null)
       return null;
 
+    String pkg_list = content_pkgs.getValue();
+    String java_list = content_java_pkgs.getValue();
+
+    checkContentPackages(pkg_list, java_list);
+
     // first try is our currently loaded lot
-    ContentHandler handler = null;
+    Object entry = content_handlers.get(contentType);
 
-    if(content_handlers != null)
-      handler = (ContentHandler)content_handlers.get(contentType);
+    if(entry instanceof HandlerMaker)
+      return ((HandlerMaker)entry).create();
 
-    if(handler != null)
-      return handler;
+    // next we try the factory. This is never cached as the factory may
+    // want to hand out different handlers over time.
+    ContentHandler handler = null;
 
-    // next we try the factory
     if(content_factory != null)
       handler = content_factory.createContentHandler(contentType);
 
     if(handler != null)
       return handler;
 
-    // hmmm... didn't find one in the factory, lets try the system properties.
-    String pkg_list = null;
+    // Been here before and the packages had nothing for this type
+    if(entry == NO_HANDLER)
+      return null;
 
-    try
+    // Only one thread searches for the handler of a type. Everyone else
+    // waits for it and then makes their own from the class it found.
+    synchronized(content_handlers.getLock(contentType))
+    {
+      entry = content_handlers.get(contentType);
+
+      if(entry == null)
+      {
+        handler = loadContentHandler(contentType, pkg_list, java_list);
+        entry = (handler == null) ? NO_HANDLER : new HandlerMaker(handler);
+
+        // Only keep the result if the package lists did not change while
+        // we were off loading it.
+        if(sameValue(pkg_list, content_pkg_list) &&
+           sameValue(java_list, content_java_list))
+        {
+          cacheEntry(content_handlers, contentType, contentType, entry);
+
+          if(handler != null)
+            indexClasses(contentType, handler, (HandlerMaker)entry);
+        }
+
+        // The first handler made is fresh, so use it directly
+        return handler;
+      }
+    }
+
+    return (entry instanceof HandlerMaker) ? ((HandlerMaker)entry).create() : null;
+  }
+
+  /**
+   * Remember the result of a content handler search. The maps are limited
+   * in size, and a missing handler is only remembered for a well formed
+   * content type, as anything else is most likely junk from a server.
+   *
+   * @param map The map to put the entry in
+   * @param key The key for the entry
+   * @param contentType The content type the entry is for
+   * @param entry The handler maker or NO_HANDLER
+   */
+  private static void cacheEntry(LoadingMap map,
+                                 Object key,
+                                 String contentType,
+                                 Object entry)
+  {
+    if((entry == NO_HANDLER) && !isWellFormedType(contentType))
+      return;
+
+    if(map.size() < MAX_CACHED_TYPES)
+      map.put(key, entry);
+  }
+
+  /**
+   * Check that a content type is of the form type/subtype, where both parts
+   * are made of the characters allowed in a MIME type name. Parameters are
+   * not allowed.
+   *
+   * @param contentType The content type to check
+   * @return true if the content type is well formed
+   */
+  private static boolean isWellFormedType(String contentType)
+  {
+    int len = contentType.length();
+    int slash = contentType.indexOf('/');
+
+    if((slash < 1) || (slash == len - 1) || (len > 255))
+      return false;
+
+    for(int i = 0; i < len; i++)
     {
-      pkg_list = System.getProperty(CONTENT_PKG_PROP);
+      char ch = contentType.charAt(i);
+
+      if(i == slash)
+        continue;
+
+      if(!(((ch >= 'a') && (ch <= 'z')) ||
+           ((ch >= 'A') && (ch <= 'Z')) ||
+           ((ch >= '0') && (ch <= '9')) ||
+           ("!#$&-^_.+".indexOf(ch) != -1)))
+        return false;
     }
-    catch(SecurityException se)
+
+    return true;
+  }
+
+  /**
+   * Clear all of the cached content handlers and the record of content
+   * types that have no handler. The next request for each type will go
+   * back to searching the package lists.
+   */
+  static void clearContentHandlers()
+  {
+    content_handlers.clear();
+    class_handlers.clear();
+  }
+
+  /**
+   * Make sure the content handler cache was built with the given package
+   * lists. If either list has changed since the cache was last used, every
+   * handler and miss is thrown away and the new lists are recorded.
+   *
+   * @param pkgList The current value of the content package property
+   * @param javaList The current value of the java content package property
+   */
+  private static void checkContentPackages(String pkgList, String javaList)
+  {
+    if(sameValue(pkgList, content_pkg_list) &&
+       sameValue(javaList, content_java_list))
+      return;
+
+    synchronized(content_handlers)
     {
-      // if we can't read it, then ignore it. We still have the default pkg
+      content_pkg_list = pkgList;
+      content_java_list = javaList;
+      content_handlers.clear();
+      class_handlers.clear();
     }
+  }
 
-    // append the default package to the list and prepare it for use
-    pkg_list = (pkg_list == null) ?
-                 CONTENT_DEFAULT_PKG :
-                 pkg_list + '|' + CONTENT_DEFAULT_PKG;
+  /**
+   * Locate a content handler by searching the package lists. The uri
+   * packages are searched first, followed by the java.net packages, where
+   * a wrapper is placed around anything found.
+   *
+   * @param contentType The desired MIMEType of the handler
+   * @param pkgList The value of the content package property or null
+   * @param javaList The value of the java content package property or null
+   * @return The appropriate content handler or null if none can be found
+   */
+  private static ContentHandler loadContentHandler(String contentType,
+                                                   String pkgList,
+                                                   String javaList)
+  {
+    ContentHandler handler = createIndexedContentHandler(contentType);
 
+    if((handler != null) || HandlerIndex.isIndexOnly())
+      return handler;
+
+    String[] pkg_list = content_pkgs.getPackages(pkgList);
     boolean handler_found = false;
     char[] content_name = typeToPackageName(contentType);
-    StringTokenizer strtok = new StringTokenizer(pkg_list, "|");
 
-    // Loop through all of the available package names. Trim, splice and dice
-    // each package looking for the appropriate class instance.
-    while(!handler_found && strtok.hasMoreTokens())
+    // Loop through all of the available package names looking for the
+    // appropriate class instance.
+    for(int i = 0; !handler_found && (i < pkg_list.length); i++)
     {
-      String pkg_name = strtok.nextToken().trim();
-      pkg_name = pkg_name.toLowerCase();
+      String pkg_name = pkg_list[i];
       StringBuffer buffer = new StringBuffer(pkg_name);
 
       // make up the class name to load
       buffer.append('.');
       buffer.append(content_name);
 
+      String class_name = buffer.toString();
+
+      if(LoadFailureCache.hasFailed(class_name))
+        continue;
+
       try
       {
-        Class cls = Class.forName(buffer.toString());
+        Class cls = Class.forName(class_name);
         if(cls != null)
         {
           handler = (ContentHandler)cls.newInstance();
@@ -726,6 +1045,7 @@ final class ResourceManager
       catch(Exception e)
       {
         // don't worry. We can ignore this one and try the next
+        LoadFailureCache.addFailure(class_name);
       }
     }
 
@@ -736,39 +1056,29 @@ final class ResourceManager
     // java stuff. If we find one, we'll need to put a wrapper around it.
     // Same as the code above, but this time with different property list and
     // different ContentHandler packaging....
-    try
-    {
-      pkg_list = System.getProperty(CONTENT_JAVA_PROP);
-    }
-    catch(SecurityException se)
-    {
-      // if we can't read it, then ignore it. We still have the default pkg
-    }
-
-    // append the default package to the list and prepare it for use
-    pkg_list = (pkg_list == null) ?
-                 CONTENT_JAVA_PKG :
-                 pkg_list + '|' + CONTENT_JAVA_PKG;
 
+    pkg_list = content_java_pkgs.getPackages(javaList);
     java.net.ContentHandler java_handler = null;
-    content_name = typeToPackageName(contentType);
-    strtok = new StringTokenizer(pkg_list, "|");
 
-    // Loop through all of the available package names. Trim, splice and dice
-    // each package looking for the appropriate class instance.
-    while(!handler_found && strtok.hasMoreTokens())
+    // Loop through all of the available package names looking for the
+    // appropriate class instance.
+    for(int i = 0; !handler_found && (i < pkg_list.length); i++)
     {
-      String pkg_name = strtok.nextToken().trim();
-      pkg_name = pkg_name.toLowerCase();
+      String pkg_name = pkg_list[i];
       StringBuffer buffer = new StringBuffer(pkg_name);
 
       // make up the class name to load
       buffer.append('.');
       buffer.append(content_name);
 
+      String class_name = buffer.toString();
+
+      if(LoadFailureCache.hasFailed(class_name))
+        continue;
+
       try
       {
-        Class cls = Class.forName(buffer.toString());
+        Class cls = Class.forName(class_name);
         if(cls != null)
         {
           java_handler = (java.net.ContentHandler)cls.newInstance();
@@ -779,6 +1089,7 @@ final class ResourceManager
       catch(Exception e)
       {
         // don't worry. We can ignore this one and try the next
+        LoadFailureCache.addFailure(class_name);
       }
     }
 
@@ -786,181 +1097,290 @@ final class ResourceManager
   }
 
   /**
-   * Fetch the content handler for the given mime type and also is capable of
-   * delivering it as one of the required set of classes. The rest of the
-   * content handler lookup rules apply.
+   * Create the content handler registered in the index for the given MIME
+   * type. A java.net content handler is wrapped.
    *
-   * @param contentType The desired MIME type
-   * @param classes The list of class types you want matched
-   * @return The appropriate content handler or null if none can be found
+   * @param contentType The desired MIMEType of the handler
+   * @return The handler or null if none is registered or it can't be made
    */
-  static ContentHandler getContentHandler(String contentType, Class[] classes)
+  private static ContentHandler createIndexedContentHandler(String contentType)
   {
-    // Load the class_handler map.
+    Object handler =
+      createInstance(HandlerIndex.getContentHandlerClass(contentType));
 
-    ContentHandler ret_val = null;
-
-    if((classes == null) || (classes.length == 0))
-      ret_val = getContentHandler(contentType);
+    if(handler instanceof ContentHandler)
+      return (ContentHandler)handler;
+    else if(handler instanceof java.net.ContentHandler)
+      return new JavaNetContentHandlerWrapper((java.net.ContentHandler)handler);
     else
-      ret_val = getContentHandlerByClass(contentType, classes);
+      return null;
+  }
+
+  /**
+   * Create a new instance of the named class. Failures are recorded so that
+   * the class is not tried again for a while.
+   *
+   * @param className The fully qualified name of the class or null
+   * @return The new instance or null if it could not be created
+   */
+  private static Object createInstance(String className)
+  {
+    if((className == null) || LoadFailureCache.hasFailed(className))
+      return null;
+
+    Object ret_val = null;
+
+    try
+    {
+      ret_val = Class.forName(className).newInstance();
+    }
+    catch(Exception e)
+    {
+      LoadFailureCache.addFailure(className);
+    }
 
     return ret_val;
   }
 
   /**
-   * Load all known content handlers and sort them by the classes they
-   * support. Content handlers are loaded in order of preference and stored
-   * in the class_handler map. Classes do not overwrite previously registered
-   * instances. It does not load the items from the factory because it assumes
-   * that they may be dynamically changed.
+   * Compare two possibly null strings for equality.
+   *
+   * @param a The first string
+   * @param b The second string
+   * @return true if both are null or they contain the same characters
+   */
+  private static boolean sameValue(String a, String b)
+  {
+    return (a == b) || ((a != null) && a.equals(b));
+  }
+
+  /**
+   * Fetch the content handler for the given mime type and also is capable of
+   * delivering it as one of the required set of classes. The rest of the
+   * content handler lookup rules apply.
+   * <P>
+   *
+   * The classes are tried in order of preference. For each, the handler
+   * is looked up by content type and class in the class index. The first
+   * time a pair is asked for, the candidate handlers are searched for one
+   * that claims to support the class and the answer is remembered. If no
+   * handler claims to support any of the classes, the normal handler for
+   * the content type is returned and left to work out what it can deliver.
+   *
+   * @param contentType The desired MIME type
+   * @param classes The list of class types you want matched
+   * @return The appropriate content handler or null if none can be found
    */
-  private static ContentHandler getContentHandlerByClass(String contentType,
-                                                         Class[] wanted)
+  static ContentHandler getContentHandler(String contentType, Class[] classes)
   {
+    if((classes == null) || (classes.length == 0))
+      return getContentHandler(contentType);
+
     if(contentType == null)
       return null;
 
-    ContentHandler handler = null;
+    String pkg_list = content_pkgs.getValue();
+    String java_list = content_java_pkgs.getValue();
 
-    if(content_handlers != null)
-      handler = (ContentHandler)content_handlers.get(contentType);
+    checkContentPackages(pkg_list, java_list);
 
-    if(handler != null && checkClassMatch(handler, wanted))
-      return handler;
+    // The factory gets first go as its handlers are never cached.
+    ContentHandler handler = null;
 
-    // next we try the factory
     if(content_factory != null)
       handler = content_factory.createContentHandler(contentType);
 
     if(handler != null)
-      return handler;
-
-    String pkg_list = null;
-
-    try
-    {
-      pkg_list = System.getProperty(CONTENT_PKG_PROP);
-    }
-    catch(SecurityException se)
     {
-      // if we can't read it, then ignore it. We still have the default pkg
+      for(int i = 0; i < classes.length; i++)
+      {
+        if(supportsClass(handler, classes[i]))
+          return handler;
+      }
     }
 
-    // append the default package to the list and prepare it for use
-    pkg_list = (pkg_list == null) ?
-                 CONTENT_DEFAULT_PKG :
-                 pkg_list + '|' + CONTENT_DEFAULT_PKG;
-
-    boolean handler_found = false;
-    char[] content_name = typeToPackageName(contentType);
-    StringTokenizer strtok = new StringTokenizer(pkg_list, "|");
-
-    // Loop through all of the available package names. Trim, splice and dice
-    // each package to load each handler instance. Only add to the handler map
-    // for classes that have not already had a content handler registered.
-    while(!handler_found && strtok.hasMoreTokens())
+    for(int i = 0; i < classes.length; i++)
     {
-      String pkg_name = strtok.nextToken().trim();
-      pkg_name = pkg_name.toLowerCase();
-      StringBuffer buffer = new StringBuffer(pkg_name);
+      TypedKey key = new TypedKey(contentType, classes[i]);
+      Object entry = class_handlers.get(key);
 
-      // make up the class name to load
-      buffer.append('.');
-      buffer.append(content_name);
+      if(entry == null)
+        entry = findClassHandler(key, pkg_list, java_list);
 
-      try
+      if(entry instanceof HandlerMaker)
       {
-        Class cls = Class.forName(buffer.toString());
-        if(cls != null)
-        {
-          handler = (ContentHandler)cls.newInstance();
-          handler_found = checkClassMatch(handler, wanted);
-        }
-      }
-      catch(Exception e)
-      {
-        // don't worry. We can ignore this one and try the next
+        handler = ((HandlerMaker)entry).create();
+
+        if(handler != null)
+          return handler;
       }
     }
 
-    if(handler != null)
-      return handler;
+    return getContentHandler(contentType);
+  }
 
-    // Hmmm.... so we don't have one here. How about we try the old standard
-    // java stuff. If we find one, we'll need to put a wrapper around it.
-    // Same as the code above, but this time with different property list and
-    // different ContentHandler packaging....
-    try
-    {
-      pkg_list = System.getProperty(CONTENT_JAVA_PROP);
-    }
-    catch(SecurityException se)
+  /**
+   * Search for a handler of the content type that supports the class in
+   * the key and remember the answer in the class index. The default
+   * handler for the type is tried first, then the indexed handler and
+   * then every package in the same order as the normal search. Only one
+   * thread searches for a given key.
+   *
+   * @param key The content type and class wanted
+   * @param pkgList The value of the content package property or null
+   * @param javaList The value of the java content package property or null
+   * @return The handler maker or NO_HANDLER if none supports the class
+   */
+  private static Object findClassHandler(TypedKey key,
+                                         String pkgList,
+                                         String javaList)
+  {
+    synchronized(class_handlers.getLock(key))
     {
-      // if we can't read it, then ignore it. We still have the default pkg
-    }
+      Object entry = class_handlers.get(key);
 
-    // append the default package to the list and prepare it for use
-    pkg_list = (pkg_list == null) ?
-                 CONTENT_JAVA_PKG :
-                 pkg_list + '|' + CONTENT_JAVA_PKG;
+      if(entry != null)
+        return entry;
 
-    java.net.ContentHandler java_handler = null;
-    content_name = typeToPackageName(contentType);
-    strtok = new StringTokenizer(pkg_list, "|");
+      String content_type = key.content_type;
+      Class wanted = key.wanted;
+      ContentHandler handler = getContentHandler(content_type);
 
-    // Loop through all of the available package names. Trim, splice and dice
-    // each package looking for the appropriate class instance.
-    while(!handler_found && strtok.hasMoreTokens())
-    {
-      String pkg_name = strtok.nextToken().trim();
-      pkg_name = pkg_name.toLowerCase();
-      StringBuffer buffer = new StringBuffer(pkg_name);
+      // No point making another copy of the default handler to check it
+      String checked = null;
 
-      // make up the class name to load
-      buffer.append('.');
-      buffer.append(content_name);
+      if(handler != null)
+        checked = handler.getClass().getName();
 
-      try
-      {
-        Class cls = Class.forName(buffer.toString());
-        if(cls != null)
-        {
-          java_handler = (java.net.ContentHandler)cls.newInstance();
-          handler = new JavaNetContentHandlerWrapper(java_handler);
-          handler_found = checkClassMatch(handler, wanted);
-        }
-      }
-      catch(Exception e)
+      if((handler == null) || !supportsClass(handler, wanted))
+        handler = createIndexedContentHandler(content_type);
+
+      if((handler != null) && !supportsClass(handler, wanted))
+        handler = null;
+
+      if((handler == null) && !HandlerIndex.isIndexOnly())
       {
-        // don't worry. We can ignore this one and try the next
+        char[] content_name = typeToPackageName(content_type);
+        String[] pkg_list = content_pkgs.getPackages(pkgList);
+
+        for(int i = 0; (handler == null) && (i < pkg_list.length); i++)
+          handler = createClassHandler(pkg_list[i],
+                                       content_name,
+                                       wanted,
+                                       checked,
+                                       false);
+
+        pkg_list = content_java_pkgs.getPackages(javaList);
+
+        for(int i = 0; (handler == null) && (i < pkg_list.length); i++)
+          handler = createClassHandler(pkg_list[i],
+                                       content_name,
+                                       wanted,
+                                       checked,
+                                       true);
       }
+
+      entry = (handler == null) ? NO_HANDLER : new HandlerMaker(handler);
+
+      // Only keep the result if the package lists did not change while
+      // we were off loading it.
+      if(sameValue(pkgList, content_pkg_list) &&
+         sameValue(javaList, content_java_list))
+        cacheEntry(class_handlers, key, content_type, entry);
+
+      return entry;
     }
+  }
 
-    // Now work on the packages defined for the
-    return handler;
+  /**
+   * Create the content handler from one package and check that it supports
+   * the wanted class.
+   *
+   * @param pkgName The lower case name of the package
+   * @param contentName The content type converted to a class name
+   * @param wanted The class that the handler must support
+   * @param checked The name of a class already known not to match or null
+   * @param javaNet true if the package holds java.net content handlers
+   * @return The handler or null if there is none or it doesn't match
+   */
+  private static ContentHandler createClassHandler(String pkgName,
+                                                   char[] contentName,
+                                                   Class wanted,
+                                                   String checked,
+                                                   boolean javaNet)
+  {
+    StringBuffer buffer = new StringBuffer(pkgName);
+
+    // make up the class name to load
+    buffer.append('.');
+    buffer.append(contentName);
+
+    String class_name = buffer.toString();
+
+    if(class_name.equals(checked))
+      return null;
+
+    Object obj = createInstance(class_name);
+    ContentHandler handler = null;
+
+    if(!javaNet && (obj instanceof ContentHandler))
+      handler = (ContentHandler)obj;
+    else if(javaNet && (obj instanceof java.net.ContentHandler))
+      handler = new JavaNetContentHandlerWrapper((java.net.ContentHandler)obj);
+
+    return ((handler != null) && supportsClass(handler, wanted)) ?
+           handler :
+           null;
   }
 
   /**
-   * Check to see if the content handler class matches one of the requested
-   * types.
+   * Add a newly loaded content handler to the class index under every
+   * class that it says it supports. Classes already in the index for the
+   * content type are not overwritten.
+   *
+   * @param contentType The content type the handler was loaded for
+   * @param handler The handler that was loaded
+   * @param maker The maker of the handler to add
+   */
+  private static void indexClasses(String contentType,
+                                   ContentHandler handler,
+                                   HandlerMaker maker)
+  {
+    Class[] supported = handler.getSupportedClasses();
+
+    if(supported == null)
+      return;
+
+    for(int i = 0; (i < supported.length) &&
+                   (class_handlers.size() < MAX_CACHED_TYPES); i++)
+    {
+      if(supported[i] != null)
+        class_handlers.putIfAbsent(new TypedKey(contentType, supported[i]),
+                                   maker);
+    }
+  }
+
+  /**
+   * Check to see if the content handler can deliver content as the
+   * requested type. It can if one of the classes that it supports is the
+   * requested type or derived from it.
    *
    * @param handler The handler to check
-   * @param wanted The classes to check for
+   * @param wanted The class to check for
    * @return true if there is a match between the two
    */
-  private static boolean checkClassMatch(ContentHandler handler,
-                                         Class[] wanted)
+  private static boolean supportsClass(ContentHandler handler, Class wanted)
   {
     Class[] supported = handler.getSupportedClasses();
-    int size = supported == null ? 0 : supported.length;
-    boolean has_match = false;
+    int size = (supported == null) ? 0 : supported.length;
 
-    for(int i = 0; i < size && !has_match; i++)
-      for(int j = 0; j < wanted.length && !has_match; j++)
-        has_match = wanted[j].equals(supported[i]);
+    for(int i = 0; i < size; i++)
+    {
+      if((supported[i] != null) && wanted.isAssignableFrom(supported[i]))
+        return true;
+    }
 
-    return has_match;
+    return false;
   }
 
   /**
@@ -1022,6 +1442,7 @@ final class ResourceManager
         security.checkSetFactory();
 
     protocol_factory = fac;
+    protocol_handlers.clear();
   }
 
   /**
@@ -1051,48 +1472,83 @@ final class ResourceManager
     if(protocol == null)
       return null;
 
-    // first try is our currently loaded lot
-    URIResourceStream handler = null;
+    String pkg_list = protocol_pkgs.getValue();
 
-    if(protocol_handlers != null)
-      handler = (URIResourceStream)protocol_handlers.get(protocol);
+    if(!sameValue(pkg_list, protocol_pkg_list))
+    {
+      synchronized(protocol_handlers)
+      {
+        protocol_pkg_list = pkg_list;
+        protocol_handlers.clear();
+      }
+    }
+
+    // first try is our currently loaded lot
+    URIResourceStream handler =
+      (URIResourceStream)protocol_handlers.get(protocol);
 
     if(handler != null)
       return handler;
 
-    // next we try the factory
+    // next we try the factory. This is never cached as the factory may
+    // want to hand out different handlers over time.
     if(protocol_factory != null)
       handler = protocol_factory.createURIResourceStream(protocol);
 
     if(handler != null)
       return handler;
 
-    // hmmm... didn't find one in the factory, lets try the system properties.
-    String pkg_list = null;
-
-    try
+    // Only one thread loads the handler for a protocol. Everyone else waits
+    // for it and then shares the one instance.
+    synchronized(protocol_handlers.getLock(protocol))
     {
-      pkg_list = System.getProperty(PROTOCOL_PKG_PROP);
-    }
-    catch(SecurityException se)
-    {
-      // if we can't read it, then ignore it. We still have the default pkg
+      handler = (URIResourceStream)protocol_handlers.get(protocol);
+
+      if(handler == null)
+      {
+        handler = loadProtocolHandler(protocol, pkg_list);
+
+        // Only keep the result if the package list did not change while
+        // we were off loading it.
+        if((handler != null) && sameValue(pkg_list, protocol_pkg_list))
+          protocol_handlers.put(protocol, handler);
+      }
     }
 
-    // append the default package to the list and prepare it for use
-    pkg_list = (pkg_list == null) ?
-                 PROTOCOL_DEFAULT_PKG :
-                 pkg_list + '|' + PROTOCOL_DEFAULT_PKG;
+    return handler;
+  }
 
+  /**
+   * Locate a protocol handler from the index or by searching the package
+   * list. If neither has one, a wrapper around the standard java.net
+   * handler is used if there is one for the protocol.
+   *
+   * @param protocol The desired protocol type
+   * @param pkgList The value of the protocol package property or null
+   * @return The appropriate protocol handler or null if none can be found
+   */
+  private static URIResourceStream loadProtocolHandler(String protocol,
+                                                       String pkgList)
+  {
+    URIResourceStream handler = null;
+
+    // the handler registered in the index comes first
+    Object indexed =
+      createInstance(HandlerIndex.getProtocolHandlerClass(protocol));
+
+    if(indexed instanceof URIResourceStream)
+      return (URIResourceStream)indexed;
+
+    String[] pkg_list = protocol_pkgs.getPackages(pkgList);
     boolean handler_found = false;
-    StringTokenizer strtok = new StringTokenizer(pkg_list, "|");
 
-    // Loop through all of the available package names. Trim, splice and dice
-    // each package looking for the appropriate class instance.
-    while(!handler_found && strtok.hasMoreTokens())
+    // Loop through all of the available package names looking for the
+    // appropriate class instance.
+    for(int i = 0;
+        !handler_found && !HandlerIndex.isIndexOnly() && (i < pkg_list.length);
+        i++)
     {
-      String pkg_name = strtok.nextToken().trim();
-      pkg_name = pkg_name.toLowerCase();
+      String pkg_name = pkg_list[i];
       StringBuffer buffer = new StringBuffer(pkg_name);
 
       // make up the class name to load
@@ -1100,9 +1556,14 @@ final class ResourceManager
       buffer.append(protocol);
       buffer.append(".Handler");
 
+      String class_name = buffer.toString();
+
+      if(LoadFailureCache.hasFailed(class_name))
+        continue;
+
       try
       {
-        Class cls = Class.forName(buffer.toString());
+        Class cls = Class.forName(class_name);
         if(cls != null)
         {
           handler = (URIResourceStream)cls.newInstance();
@@ -1112,6 +1573,7 @@ final class ResourceManager
       catch(Exception e)
       {
         // don't worry. We can ignore this one and try the next
+        LoadFailureCache.addFailure(class_name);
       }
     }
 
@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.net.MalformedURLException;
+
+// Application specific imports
+// none
+
+/**
+ * Parser for the scheme specific part of a URL.
+ * <P>
+ *
+ * Once the scheme of a URL has been found, the rest of the string is
+ * handed to the parser registered for that scheme with
+ * {@link URIUtils#setSchemeParser(String, SchemeParser)}. If no parser has
+ * been registered, a generic parser that follows the syntax
+ * <CODE>[//[userinfo@]host[:port]]path[?query][#reference]</CODE> is
+ * used. Parsers for http, https, file and data are provided by default.
+ * <P>
+ *
+ * A parser does not create any strings. It records the start and end index
+ * of each component that it finds into an array using the offset constants
+ * defined here. The start index is inclusive and the end index exclusive.
+ * Before the parser is called, every offset other than those of the scheme
+ * is set to -1, so a parser only needs to fill in the components that are
+ * actually present. The path must always be set, even if it is empty.
+ * <P>
+ *
+ * Implementations must be thread safe, as a single instance is shared by
+ * all threads parsing URLs of that scheme.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+public interface SchemeParser
+{
+  /** Index of the first character of the scheme */
+  public static final int SCHEME_START = 0;
+
+  /** Index of the ':' that terminates the scheme */
+  public static final int SCHEME_END = 1;
+
+  /** Index of the first character of the user info */
+  public static final int USER_START = 2;
+
+  /** Index of the '@' that terminates the user info */
+  public static final int USER_END = 3;
+
+  /** Index of the first character of the host name */
+  public static final int HOST_START = 4;
+
+  /** Index one past the last character of the host name */
+  public static final int HOST_END = 5;
+
+  /** Index of the first digit of the port */
+  public static final int PORT_START = 6;
+
+  /** Index one past the last digit of the port */
+  public static final int PORT_END = 7;
+
+  /** Index of the first character of the path */
+  public static final int PATH_START = 8;
+
+  /** Index one past the last character of the path */
+  public static final int PATH_END = 9;
+
+  /** Index of the first character after the '?' */
+  public static final int QUERY_START = 10;
+
+  /** Index one past the last character of the query */
+  public static final int QUERY_END = 11;
+
+  /** Index of the first character after the '#' */
+  public static final int REF_START = 12;
+
+  /** Index one past the last character of the reference */
+  public static final int REF_END = 13;
+
+  /** The size of the array needed to hold all of the offsets */
+  public static final int NUM_OFFSETS = 14;
+
+  /**
+   * Locate the components of the scheme specific part of a URL. Offsets
+   * are absolute indexes into the sequence, not relative to start.
+   *
+   * @param spec The characters holding the URL
+   * @param start The index of the first character after the scheme's ':'
+   * @param end The index one past the last character of the URL
+   * @param offsets The array to put the component offsets into
+   * @exception MalformedURLException The characters are not valid for this
+   *   scheme
+   */
+  public void parse(CharSequence spec, int start, int end, int[] offsets)
+    throws MalformedURLException;
+}
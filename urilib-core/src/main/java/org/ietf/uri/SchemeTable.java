@@ -0,0 +1,507 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+// none
+
+// Application specific imports
+// none
+
+/**
+ * Immutable, case insensitive map of scheme names to their default port
+ * number and the parser used for the scheme specific part.
+ * <P>
+ *
+ * The table is built as a perfect hash: when it is created a multiplier is
+ * searched for that places every scheme in a slot of its own. A lookup is
+ * then one pass over the characters to hash them, a single slot probe and
+ * one comparison. Case is folded as the characters are read, so nothing is
+ * allocated and the scheme may be looked up directly from a region of a
+ * larger string.
+ * <P>
+ *
+ * Two names can have the same hash, in which case no multiplier will keep
+ * them apart. When that happens, or no multiplier is found before the table
+ * reaches its largest size, the slots are filled by linear probing instead
+ * and a lookup walks forward from its slot until it finds the name or an
+ * empty slot.
+ * <P>
+ *
+ * Since instances never change, adding a scheme creates a new table with
+ * {@link #with(String, int)}. The caller is expected to publish the new
+ * table through a volatile field so that lookups never need to lock.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+final class SchemeTable
+{
+  /** The number of multipliers to try before growing the table */
+  private static final int MAX_ATTEMPTS = 64;
+
+  /** How many times the table may double in size looking for a multiplier */
+  private static final int MAX_GROWTH = 3;
+
+  /** The scheme names, all lower case, in the order they were added */
+  private final String[] schemes;
+
+  /** The ports matching the schemes list */
+  private final int[] scheme_ports;
+
+  /** The parsers matching the schemes list. Null when not set */
+  private final SchemeParser[] scheme_parsers;
+
+  /** The hashed slots holding the scheme names. Null for empty slots */
+  private final String[] keys;
+
+  /** The port numbers matching each slot of the keys */
+  private final int[] ports;
+
+  /** The parsers matching each slot of the keys */
+  private final SchemeParser[] parsers;
+
+  /** The multiplier that spreads the keys without collision */
+  private final int multiplier;
+
+  /** Number of bits to shift the hash right to get a slot index */
+  private final int shift;
+
+  /** true if the slots were filled by linear probing */
+  private final boolean probed;
+
+  /**
+   * Create a new table from the given schemes and ports. Schemes are
+   * converted to lower case. Duplicates use the last port given.
+   *
+   * @param names The scheme names
+   * @param values The default port for each scheme
+   */
+  SchemeTable(String[] names, int[] values)
+  {
+    this(names, values, new SchemeParser[names.length]);
+  }
+
+  /**
+   * Create a new table from the given schemes, ports and parsers. Schemes
+   * are converted to lower case. Duplicates use the last values given.
+   *
+   * @param names The scheme names
+   * @param values The default port for each scheme
+   * @param handlers The parser for each scheme, which may be null
+   */
+  SchemeTable(String[] names, int[] values, SchemeParser[] handlers)
+  {
+    int count = names.length;
+    String[] lc_names = new String[count];
+    int[] lc_ports = new int[count];
+    SchemeParser[] lc_parsers = new SchemeParser[count];
+    int unique = 0;
+
+    for(int i = 0; i < count; i++)
+    {
+      String name = lowerCase(names[i]);
+      int j = 0;
+
+      while((j < unique) && !lc_names[j].equals(name))
+        j++;
+
+      lc_names[j] = name;
+      lc_ports[j] = values[i];
+      lc_parsers[j] = handlers[i];
+
+      if(j == unique)
+        unique++;
+    }
+
+    schemes = new String[unique];
+    scheme_ports = new int[unique];
+    scheme_parsers = new SchemeParser[unique];
+    System.arraycopy(lc_names, 0, schemes, 0, unique);
+    System.arraycopy(lc_ports, 0, scheme_ports, 0, unique);
+    System.arraycopy(lc_parsers, 0, scheme_parsers, 0, unique);
+
+    // Search for a multiplier that gives each scheme its own slot. Start
+    // with a table twice the number of keys and keep doubling until one
+    // is found. With a low load this takes very few attempts. Names with
+    // the same hash can never be split up, so don't even try.
+    int min_bits = 4;
+    while((1 << min_bits) < unique * 2)
+      min_bits++;
+
+    int[] hashes = new int[unique];
+    boolean same_hash = false;
+
+    for(int i = 0; i < unique; i++)
+    {
+      hashes[i] = hash(schemes[i], 0, schemes[i].length());
+
+      for(int j = 0; (j < i) && !same_hash; j++)
+        same_hash = (hashes[i] == hashes[j]);
+    }
+
+    String[] table = null;
+    int mult = 0;
+    int bits = min_bits;
+
+    while((table == null) && !same_hash && (bits <= min_bits + MAX_GROWTH))
+    {
+      int size = 1 << bits;
+      int seed = 0x9E3779B9;
+
+      for(int attempt = 0; (attempt < MAX_ATTEMPTS) && (table == null); attempt++)
+      {
+        mult = seed | 1;
+        seed += 0x632BE5AB;
+
+        String[] slots = new String[size];
+        boolean collision = false;
+
+        for(int i = 0; (i < unique) && !collision; i++)
+        {
+          int idx = (hashes[i] * mult) >>> (32 - bits);
+
+          if(slots[idx] != null)
+            collision = true;
+          else
+            slots[idx] = schemes[i];
+        }
+
+        if(!collision)
+          table = slots;
+      }
+
+      if(table == null)
+        bits++;
+    }
+
+    probed = (table == null);
+
+    if(probed)
+    {
+      // Give up on a perfect hash. The table is at least twice the number
+      // of keys so there is always an empty slot to end a probe.
+      bits = min_bits;
+      mult = 0x9E3779B9 | 1;
+      table = new String[1 << bits];
+    }
+
+    keys = table;
+    multiplier = mult;
+    shift = 32 - bits;
+    ports = new int[table.length];
+    parsers = new SchemeParser[table.length];
+
+    int mask = table.length - 1;
+
+    for(int i = 0; i < unique; i++)
+    {
+      int idx = (hashes[i] * mult) >>> shift;
+
+      if(probed)
+      {
+        while(keys[idx] != null)
+          idx = (idx + 1) & mask;
+
+        keys[idx] = schemes[i];
+      }
+
+      ports[idx] = scheme_ports[i];
+      parsers[idx] = scheme_parsers[i];
+    }
+  }
+
+  /**
+   * Create a new table that contains everything in this table with the
+   * default port of the given scheme changed. If the scheme is not in the
+   * table it is added. A port of zero or less removes the port, and the
+   * scheme is removed entirely if it has no parser either.
+   *
+   * @param scheme The name of the scheme
+   * @param port The default port for the scheme
+   * @return A new table with the change applied
+   */
+  SchemeTable with(String scheme, int port)
+  {
+    String name = lowerCase(scheme.trim());
+    int idx = indexOf(name);
+    SchemeParser parser = (idx == -1) ? null : scheme_parsers[idx];
+
+    return with(name, idx, port, parser);
+  }
+
+  /**
+   * Create a new table that contains everything in this table with the
+   * parser of the given scheme changed. If the scheme is not in the table
+   * it is added. A null parser removes the parser, and the scheme is
+   * removed entirely if it has no default port either.
+   *
+   * @param scheme The name of the scheme
+   * @param parser The parser to use for the scheme
+   * @return A new table with the change applied
+   */
+  SchemeTable with(String scheme, SchemeParser parser)
+  {
+    String name = lowerCase(scheme.trim());
+    int idx = indexOf(name);
+    int port = (idx == -1) ? 0 : scheme_ports[idx];
+
+    return with(name, idx, port, parser);
+  }
+
+  /**
+   * Create a new table replacing or adding the given entry.
+   *
+   * @param name The lower case scheme name
+   * @param idx The index of the name in the schemes list or -1
+   * @param port The default port for the scheme
+   * @param parser The parser for the scheme
+   * @return A new table with the change applied
+   */
+  private SchemeTable with(String name,
+                           int idx,
+                           int port,
+                           SchemeParser parser)
+  {
+    int count = schemes.length;
+    String[] names = new String[count + 1];
+    int[] values = new int[count + 1];
+    SchemeParser[] handlers = new SchemeParser[count + 1];
+    int out = 0;
+
+    for(int i = 0; i < count; i++)
+    {
+      if(i == idx)
+        continue;
+
+      names[out] = schemes[i];
+      values[out] = scheme_ports[i];
+      handlers[out] = scheme_parsers[i];
+      out++;
+    }
+
+    if((port > 0) || (parser != null))
+    {
+      names[out] = name;
+      values[out] = (port > 0) ? port : 0;
+      handlers[out] = parser;
+      out++;
+    }
+
+    String[] new_names = new String[out];
+    int[] new_values = new int[out];
+    SchemeParser[] new_handlers = new SchemeParser[out];
+    System.arraycopy(names, 0, new_names, 0, out);
+    System.arraycopy(values, 0, new_values, 0, out);
+    System.arraycopy(handlers, 0, new_handlers, 0, out);
+
+    return new SchemeTable(new_names, new_values, new_handlers);
+  }
+
+  /**
+   * Find the index of a scheme in the schemes list.
+   *
+   * @param name The lower case scheme name
+   * @return The index or -1 if not found
+   */
+  private int indexOf(String name)
+  {
+    for(int i = 0; i < schemes.length; i++)
+    {
+      if(schemes[i].equals(name))
+        return i;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Look up the default port for the named scheme. Leading and trailing
+   * white space is ignored.
+   *
+   * @param scheme The name of the scheme, in any case
+   * @return The port number or 0 if the scheme is not known
+   */
+  int get(String scheme)
+  {
+    int start = 0;
+    int end = scheme.length();
+
+    while((start < end) && (scheme.charAt(start) <= ' '))
+      start++;
+
+    while((end > start) && (scheme.charAt(end - 1) <= ' '))
+      end--;
+
+    return get(scheme, start, end);
+  }
+
+  /**
+   * Look up the default port for a scheme held in a region of a character
+   * sequence.
+   *
+   * @param src The characters holding the scheme name, in any case
+   * @param start The index of the first character of the name
+   * @param end The index one past the last character of the name
+   * @return The port number or 0 if the scheme is not known
+   */
+  int get(CharSequence src, int start, int end)
+  {
+    int idx = find(src, start, end);
+
+    return (idx == -1) ? 0 : ports[idx];
+  }
+
+  /**
+   * Look up the parser for a scheme held in a region of a character
+   * sequence.
+   *
+   * @param src The characters holding the scheme name, in any case
+   * @param start The index of the first character of the name
+   * @param end The index one past the last character of the name
+   * @return The parser or null if none has been set for the scheme
+   */
+  SchemeParser getParser(CharSequence src, int start, int end)
+  {
+    int idx = find(src, start, end);
+
+    return (idx == -1) ? null : parsers[idx];
+  }
+
+  /**
+   * Find the slot holding the scheme in a region of a character sequence.
+   *
+   * @param src The characters holding the scheme name, in any case
+   * @param start The index of the first character of the name
+   * @param end The index one past the last character of the name
+   * @return The slot index or -1 if the scheme is not known
+   */
+  private int find(CharSequence src, int start, int end)
+  {
+    int idx = (hash(src, start, end) * multiplier) >>> shift;
+
+    if(!probed)
+      return matches(keys[idx], src, start, end) ? idx : -1;
+
+    int mask = keys.length - 1;
+
+    while(keys[idx] != null)
+    {
+      if(matches(keys[idx], src, start, end))
+        return idx;
+
+      idx = (idx + 1) & mask;
+    }
+
+    return -1;
+  }
+
+  /**
+   * Check whether a key is the same as a region of characters, ignoring
+   * the case of the characters.
+   *
+   * @param key The lower case key, which may be null
+   * @param src The characters holding the scheme name, in any case
+   * @param start The index of the first character of the name
+   * @param end The index one past the last character of the name
+   * @return true if the key matches
+   */
+  private static boolean matches(String key,
+                                 CharSequence src,
+                                 int start,
+                                 int end)
+  {
+    if((key == null) || (key.length() != end - start))
+      return false;
+
+    for(int i = start, j = 0; i < end; i++, j++)
+    {
+      if(lowerCase(src.charAt(i)) != key.charAt(j))
+        return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Calculate the case-folded hash of a region of characters.
+   *
+   * @param src The characters to hash
+   * @param start The index of the first character
+   * @param end The index one past the last character
+   * @return The hash value
+   */
+  private static int hash(CharSequence src, int start, int end)
+  {
+    int h = 0;
+
+    for(int i = start; i < end; i++)
+      h = 31 * h + lowerCase(src.charAt(i));
+
+    return h;
+  }
+
+  /**
+   * Convert the ASCII upper case letters of a string to lower case. This is
+   * the same folding used for lookups, so it does not depend on the default
+   * locale.
+   *
+   * @param str The string to convert
+   * @return The lower case equivalent
+   */
+  static String lowerCase(String str)
+  {
+    int len = str.length();
+    char[] chars = new char[len];
+
+    for(int i = 0; i < len; i++)
+      chars[i] = lowerCase(str.charAt(i));
+
+    return new String(chars);
+  }
+
+  /**
+   * Convert an ASCII upper case letter to lower case. Scheme names are
+   * restricted to ASCII so nothing more is needed.
+   *
+   * @param ch The character to convert
+   * @return The lower case equivalent
+   */
+  private static char lowerCase(char ch)
+  {
+    return ((ch >= 'A') && (ch <= 'Z')) ? (char)(ch + ('a' - 'A')) : ch;
+  }
+}
@@ -243,6 +243,41 @@ public abstract class URI
     return ResourceManager.getContentHandlerFactory();
   }
 
+  /**
+   * Throw away all of the content handlers that have been loaded so far,
+   * along with the list of content types that have no handler. Changing
+   * the content handler package properties or the factory does this
+   * automatically, so this is only needed when new handler classes have
+   * become available to the class loader.
+   */
+  public static void clearContentHandlers()
+  {
+    ResourceManager.clearContentHandlers();
+  }
+
+  /**
+   * Forget every handler, file name map and resolver class that has
+   * failed to load so that they are all tried again on the next request.
+   */
+  public static void clearLoadFailures()
+  {
+    LoadFailureCache.clear();
+    RDSManager.clearResolverChains();
+  }
+
+  /**
+   * Set how long a handler, file name map or resolver class that failed to
+   * load is remembered before it is tried again. The default is taken from
+   * the <CODE>uri.load.failure.ttl</CODE> system property.
+   *
+   * @param millis The time in milliseconds. Zero turns off remembering
+   *   failures and a negative value keeps them until cleared
+   */
+  public static void setLoadFailureTimeToLive(long millis)
+  {
+    LoadFailureCache.setTimeToLive(millis);
+  }
+
   /**
    * Set the Filename map factory that will be used to determine MIME types
    * from filenames. The factory may be set multiple times or removed by
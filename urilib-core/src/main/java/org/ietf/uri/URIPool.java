@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Application specific imports
+// none
+
+/**
+ * Optional canonicalisation pool for URI instances and the commonly
+ * repeated strings that they contain.
+ * <P>
+ *
+ * Applications that hold very large numbers of URIs tend to have many
+ * duplicates, and even more that share the same scheme, host or namespace
+ * identifier. When enabled, this pool is consulted by
+ * {@link URIUtils#createURI(String)} so that the same URI string returns the
+ * same instance, and by <CODE>URL</CODE> and <CODE>URN</CODE> so that the
+ * scheme, host and NID strings are shared between instances.
+ * <P>
+ *
+ * Both tables are fixed size and direct mapped. A new entry simply
+ * replaces whatever was in its slot, so the pool can never grow beyond the
+ * size it was created with and lookups never lock. URI instances are held
+ * through weak references so that the pool never keeps an otherwise unused
+ * URI alive. Since the tables are lossy, a miss only means that a duplicate
+ * may be created, never that a wrong answer is given.
+ * <P>
+ *
+ * The pool is disabled by default. The size, in slots, can be set using the
+ * system property <CODE>uri.pool.size</CODE> before this class is loaded or
+ * at any time with {@link URIUtils#setPoolSize(int)}. A size of zero turns
+ * the pool off. Sizes are rounded up to the next power of two.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+final class URIPool
+{
+  /** Property defining the number of slots in the pool */
+  private static final String POOL_SIZE_PROP = "uri.pool.size";
+
+  /** The largest number of slots that we will allocate */
+  private static final int MAX_POOL_SIZE = 1 << 24;
+
+  /**
+   * The number of slots in the string table relative to the URI table.
+   * There are far fewer distinct schemes, hosts and NIDs than URIs.
+   */
+  private static final int STRING_TABLE_SHIFT = 4;
+
+  /** The minimum size of the string table when the pool is enabled */
+  private static final int MIN_STRING_TABLE = 256;
+
+  /**
+   * Holder of a single pooled URI. The key is the string the URI was
+   * created from, which is typically the same instance that the URI holds
+   * internally, so it costs nothing extra.
+   */
+  private static class Entry extends WeakReference
+  {
+    /** The source string for the URI */
+    final String key;
+
+    /**
+     * Create a new entry for the given string and URI.
+     *
+     * @param key The source string
+     * @param uri The URI created from that string
+     */
+    Entry(String key, URI uri)
+    {
+      super(uri);
+      this.key = key;
+    }
+  }
+
+  /** The table of URIs. Null when pooling is disabled */
+  private static volatile AtomicReferenceArray uri_table;
+
+  /**
+   * The table of shared strings. Strings are immutable and safely
+   * published so a plain array is fine here. Null when disabled.
+   */
+  private static volatile String[] string_table;
+
+  /**
+   * Static initialiser to read the pool size from the system property.
+   */
+  static
+  {
+    int size = 0;
+
+    try
+    {
+      String prop = System.getProperty(POOL_SIZE_PROP);
+
+      if(prop != null)
+        size = Integer.parseInt(prop.trim());
+    }
+    catch(SecurityException se)
+    {
+      // if we can't read it, then ignore it. Pool stays off.
+    }
+    catch(NumberFormatException nfe)
+    {
+      System.err.println("Invalid value for " + POOL_SIZE_PROP + ": " + nfe);
+    }
+
+    setSize(size);
+  }
+
+  /**
+   * Private constructor to prevent instantiation of this static class.
+   */
+  private URIPool()
+  {
+  }
+
+  /**
+   * Change the number of slots in the pool. Any currently pooled items are
+   * discarded. A size of zero or less disables the pool.
+   *
+   * @param size The number of slots to use
+   */
+  static void setSize(int size)
+  {
+    if(size <= 0)
+    {
+      uri_table = null;
+      string_table = null;
+      return;
+    }
+
+    int slots = 1;
+    while((slots < size) && (slots < MAX_POOL_SIZE))
+      slots <<= 1;
+
+    int str_slots = Math.max(slots >> STRING_TABLE_SHIFT, MIN_STRING_TABLE);
+
+    string_table = new String[str_slots];
+    uri_table = new AtomicReferenceArray(slots);
+  }
+
+  /**
+   * Get the number of slots in the pool. Zero means that it is disabled.
+   *
+   * @return The current pool size
+   */
+  static int getSize()
+  {
+    AtomicReferenceArray table = uri_table;
+
+    return (table == null) ? 0 : table.length();
+  }
+
+  /**
+   * Check to see if the pool is currently turned on.
+   *
+   * @return true if pooling is enabled
+   */
+  static boolean isEnabled()
+  {
+    return uri_table != null;
+  }
+
+  /**
+   * Look for a previously pooled URI created from the given string.
+   *
+   * @param spec The string the URI would be created from
+   * @return The matching URI or null if not in the pool
+   */
+  static URI get(String spec)
+  {
+    AtomicReferenceArray table = uri_table;
+
+    if(table == null)
+      return null;
+
+    int idx = spread(spec.hashCode()) & (table.length() - 1);
+    Entry entry = (Entry)table.get(idx);
+
+    if((entry == null) || !entry.key.equals(spec))
+      return null;
+
+    return (URI)entry.get();
+  }
+
+  /**
+   * Place a URI into the pool, replacing whatever was in that slot.
+   *
+   * @param spec The string the URI was created from
+   * @param uri The URI to pool
+   */
+  static void put(String spec, URI uri)
+  {
+    AtomicReferenceArray table = uri_table;
+
+    if(table == null)
+      return;
+
+    int idx = spread(spec.hashCode()) & (table.length() - 1);
+    table.set(idx, new Entry(spec, uri));
+  }
+
+  /**
+   * Return the shared instance of the given string. If pooling is
+   * disabled, or the string is not in the table yet, the string passed
+   * in is returned and, if enabled, becomes the shared instance.
+   *
+   * @param str The string to share
+   * @return The shared equivalent of str
+   */
+  static String intern(String str)
+  {
+    String[] table = string_table;
+
+    if((table == null) || (str == null))
+      return str;
+
+    int idx = spread(str.hashCode()) & (table.length - 1);
+    String current = table[idx];
+
+    if(str.equals(current))
+      return current;
+
+    table[idx] = str;
+
+    return str;
+  }
+
+  /**
+   * Return the shared instance of a substring of the given string. When a
+   * shared instance already exists no new string is created at all. The
+   * hash is calculated the same way as <CODE>String.hashCode()</CODE> so
+   * both forms of this method share the one table.
+   *
+   * @param src The string containing the characters
+   * @param start The index of the first character (inclusive)
+   * @param end The index of the last character (exclusive)
+   * @return The shared equivalent of the substring
+   */
+  static String intern(String src, int start, int end)
+  {
+    String[] table = string_table;
+
+    if(table == null)
+      return src.substring(start, end);
+
+    int hash = 0;
+    for(int i = start; i < end; i++)
+      hash = 31 * hash + src.charAt(i);
+
+    int len = end - start;
+    int idx = spread(hash) & (table.length - 1);
+    String current = table[idx];
+
+    if((current != null) &&
+       (current.length() == len) &&
+       src.regionMatches(start, current, 0, len))
+      return current;
+
+    String str = src.substring(start, end);
+    table[idx] = str;
+
+    return str;
+  }
+
+  /**
+   * Spread the bits of a hash code so that strings that only differ in
+   * their last few characters don't all land in neighbouring slots.
+   *
+   * @param h The raw hash code
+   * @return The mixed value
+   */
+  private static int spread(int h)
+  {
+    h ^= (h >>> 16);
+    h *= 0x85ebca6b;
+    h ^= (h >>> 13);
+
+    return h;
+  }
+}
@@ -16,7 +16,6 @@ package org.ietf.uri;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.io.IOException;
-import java.util.HashMap;
 import java.net.FileNameMap;
 import java.net.MalformedURLException;
 
@@ -52,8 +51,14 @@ public final class URIUtils
   implements URIConstants
 {
 
-  /** Hashmap to hold all of the ports to protocol mapping */
-  private static HashMap protocol_ports;
+  /**
+   * The lookup table of scheme names to default ports. Replaced as a whole
+   * when a scheme is registered so that lookups never lock.
+   */
+  private static volatile SchemeTable scheme_ports;
+
+  /** The parser used for schemes that don't have one of their own */
+  private static final SchemeParser GENERIC_PARSER = new GenericSchemeParser();
 
   /**
    * Static initialiser that is used to create the protocol/port lookup
@@ -61,60 +66,95 @@ public final class URIUtils
    */
   static
   {
-    protocol_ports = new HashMap(30);
-
-    protocol_ports.put(HTTP_SCHEME, new Integer(HTTP_PORT));
-    protocol_ports.put(SHTTP_SCHEME, new Integer(SHTTP_PORT));
-    protocol_ports.put(HTTPS_SCHEME, new Integer(HTTPS_PORT));
-    protocol_ports.put(HTTP_NG_SCHEME, new Integer(HTTP_NG_PORT));
-    protocol_ports.put(COFFEE_SCHEME, new Integer(COFFEE_PORT));
-    protocol_ports.put(FTP_SCHEME, new Integer(FTP_PORT));
-    protocol_ports.put(TELNET_SCHEME, new Integer(TELNET_PORT));
-    protocol_ports.put(NNTP_SCHEME, new Integer(NNTP_PORT));
-    protocol_ports.put(NEWS_SCHEME, new Integer(NEWS_PORT));
-    protocol_ports.put(SNEWS_SCHEME, new Integer(SNEWS_PORT));
-    protocol_ports.put(HNEWS_SCHEME, new Integer(HNEWS_PORT));
-    protocol_ports.put(SMTP_SCHEME, new Integer(SMTP_PORT));
-    protocol_ports.put(GOPHER_SCHEME, new Integer(GOPHER_PORT));
-    protocol_ports.put(WAIS_SCHEME, new Integer(WAIS_PORT));
-    protocol_ports.put(WHOIS_SCHEME, new Integer(WHOIS_PORT));
-    protocol_ports.put(WHOIS_PLUS_SCHEME, new Integer(WHOIS_PLUS_PORT));
-    protocol_ports.put(RWHOIS_SCHEME, new Integer(RWHOIS_PORT));
-    protocol_ports.put(IMAP_SCHEME, new Integer(IMAP_PORT));
-    protocol_ports.put(POP_SCHEME, new Integer(POP_PORT));
-    protocol_ports.put(PROSPERO_SCHEME, new Integer(PROSPERO_PORT));
-    protocol_ports.put(IRC_SCHEME, new Integer(IRC_PORT));
-    protocol_ports.put(LDAP_SCHEME, new Integer(LDAP_PORT));
-    protocol_ports.put(Z3950R_SCHEME, new Integer(Z3950R_PORT));
-    protocol_ports.put(Z3950S_SCHEME, new Integer(Z3950S_PORT));
-    protocol_ports.put(VEMMI_SCHEME, new Integer(VEMMI_PORT));
-    protocol_ports.put(VIDEOTEX_SCHEME, new Integer(VIDEOTEX_PORT));
-    protocol_ports.put(NFS_SCHEME, new Integer(NFS_PORT));
+    String[] schemes =
+    {
+      HTTP_SCHEME, SHTTP_SCHEME, HTTPS_SCHEME, HTTP_NG_SCHEME, COFFEE_SCHEME,
+      FTP_SCHEME, TELNET_SCHEME, NNTP_SCHEME, NEWS_SCHEME, SNEWS_SCHEME,
+      HNEWS_SCHEME, SMTP_SCHEME, GOPHER_SCHEME, WAIS_SCHEME, WHOIS_SCHEME,
+      WHOIS_PLUS_SCHEME, RWHOIS_SCHEME, IMAP_SCHEME, POP_SCHEME,
+      PROSPERO_SCHEME, IRC_SCHEME, LDAP_SCHEME, Z3950R_SCHEME,
+      Z3950S_SCHEME, VEMMI_SCHEME, VIDEOTEX_SCHEME, NFS_SCHEME
+    };
+
+    int[] ports =
+    {
+      HTTP_PORT, SHTTP_PORT, HTTPS_PORT, HTTP_NG_PORT, COFFEE_PORT,
+      FTP_PORT, TELNET_PORT, NNTP_PORT, NEWS_PORT, SNEWS_PORT,
+      HNEWS_PORT, SMTP_PORT, GOPHER_PORT, WAIS_PORT, WHOIS_PORT,
+      WHOIS_PLUS_PORT, RWHOIS_PORT, IMAP_PORT, POP_PORT,
+      PROSPERO_PORT, IRC_PORT, LDAP_PORT, Z3950R_PORT,
+      Z3950S_PORT, VEMMI_PORT, VIDEOTEX_PORT, NFS_PORT
+    };
+
+    SchemeParser http = new HttpSchemeParser();
+
+    scheme_ports = new SchemeTable(schemes, ports)
+      .with(HTTP_SCHEME, http)
+      .with(HTTPS_SCHEME, http)
+      .with(FILE_SCHEME, new FileSchemeParser())
+      .with(DATA_SCHEME, new DataSchemeParser());
   }
 
   /**
    * Construct a new URI from the string. If the string starts with "urn:" a
    * URN object is constructed, otherwise a URL is constructed. If the
    * syntax is invalid, and exception will be generated.
+   * <P>
+   * If the URI pool has been enabled, a previously created instance for the
+   * same string may be returned instead of a new object.
    *
    * @param uri The String representing the URI to be constructed
    * @return An object representing the string
    * @throws MalformedURLException Could not treat the string as a URL
    * @throws MalformedURNException Could not treat the string as a URN
+   * @see #setPoolSize(int)
    */
   public static URI createURI(String uri)
     throws MalformedURLException, MalformedURNException
   {
-    URI ret_val = null;
+    URI ret_val = URIPool.get(uri);
+
+    if(ret_val != null)
+      return ret_val;
 
     if(uri.startsWith("urn:"))
       ret_val = new URN(uri);
     else
       ret_val = new URL(uri);
 
+    URIPool.put(uri, ret_val);
+
     return ret_val;
   }
 
+  /**
+   * Set the number of slots in the URI canonicalisation pool. When enabled,
+   * <CODE>createURI</CODE> returns shared instances for repeated strings and
+   * the scheme, host and NID strings of URLs and URNs are shared between
+   * instances. The pool is bounded to the given size and only holds weak
+   * references to the URIs. A size of zero disables pooling. Changing the
+   * size discards everything currently pooled.
+   * <P>
+   * The initial value is taken from the system property
+   * <CODE>uri.pool.size</CODE>. If not set, pooling is disabled.
+   *
+   * @param size The number of slots, rounded up to a power of two
+   */
+  public static void setPoolSize(int size)
+  {
+    URIPool.setSize(size);
+  }
+
+  /**
+   * Get the number of slots in the URI canonicalisation pool.
+   *
+   * @return The pool size, or zero if pooling is disabled
+   */
+  public static int getPoolSize()
+  {
+    return URIPool.getSize();
+  }
+
   /**
    * Get the scheme from the url string that we've been given. The scheme is
    * determined by the regex <CODE>(([^:/?#]+):)?</CODE>. The scheme may be
@@ -183,22 +223,97 @@ public final class URIUtils
   }
 
   /**
-   * Return the default port used by a given protocol.
+   * Return the default port used by a given protocol. The name is not case
+   * sensitive and no objects are created during the lookup.
    *
    * @param protocol the protocol
    * @return the port number, or 0 if unknown
    */
   public static int getDefaultPort(String protocol)
   {
-    String prot = protocol.trim().toLowerCase();
+    return scheme_ports.get(protocol);
+  }
+
+  /**
+   * Return the default port used by a protocol whose name is held in a
+   * region of a larger character sequence, such as the scheme of a URL
+   * that has not been broken into separate strings yet.
+   *
+   * @param src The characters holding the protocol name
+   * @param start The index of the first character of the name
+   * @param end The index one past the last character of the name
+   * @return the port number, or 0 if unknown
+   */
+  static int getDefaultPort(CharSequence src, int start, int end)
+  {
+    return scheme_ports.get(src, start, end);
+  }
+
+  /**
+   * Register the default port for a protocol. This allows custom schemes
+   * to be treated as having a host and port in the same way as the
+   * standard ones. Registering a known scheme replaces its port. A port of
+   * zero or less removes the scheme so that URLs using it are treated as
+   * the generic <CODE>scheme:data</CODE> form.
+   * <P>
+   * The lookup table is rebuilt on each call, so this is intended for
+   * application setup rather than frequent changes.
+   *
+   * @param protocol the protocol
+   * @param port the default port number for the protocol
+   */
+  public static void setDefaultPort(String protocol, int port)
+  {
+    synchronized(URIUtils.class)
+    {
+      scheme_ports = scheme_ports.with(protocol, port);
+    }
+  }
+
+  /**
+   * Register the parser used for the scheme specific part of URLs with the
+   * given scheme. This replaces any existing parser for the scheme,
+   * including the built in ones for http, https, file and data. Setting a
+   * null parser returns the scheme to the generic parser.
+   *
+   * @param protocol the protocol
+   * @param parser the parser to use, or null for the generic one
+   */
+  public static void setSchemeParser(String protocol, SchemeParser parser)
+  {
+    synchronized(URIUtils.class)
+    {
+      scheme_ports = scheme_ports.with(protocol, parser);
+    }
+  }
 
-    int ret_val = 0;
-    Integer val = (Integer)protocol_ports.get(prot);
+  /**
+   * Get the parser used for the scheme specific part of URLs with the given
+   * scheme. If no parser has been registered the generic parser is
+   * returned.
+   *
+   * @param protocol the protocol
+   * @return the parser for the protocol
+   */
+  public static SchemeParser getSchemeParser(String protocol)
+  {
+    return getSchemeParser(protocol, 0, protocol.length());
+  }
 
-    if(val != null)
-      ret_val = val.intValue();
+  /**
+   * Get the parser for a protocol whose name is held in a region of a
+   * larger character sequence.
+   *
+   * @param src The characters holding the protocol name
+   * @param start The index of the first character of the name
+   * @param end The index one past the last character of the name
+   * @return the parser for the protocol
+   */
+  static SchemeParser getSchemeParser(CharSequence src, int start, int end)
+  {
+    SchemeParser parser = scheme_ports.getParser(src, start, end);
 
-    return ret_val;
+    return (parser == null) ? GENERIC_PARSER : parser;
   }
 
   /**
@@ -229,9 +344,9 @@ public final class URIUtils
     String scheme = getScheme(url_chars);
 
     // if the scheme has a default port number, then it must also have a
-    // host available as part of the URL. If it doesn't exist in the hashmap
+    // host available as part of the URL. If it isn't in the port table
     // then assume it doesn't and barf.
-    if(protocol_ports.get(scheme) == null)
+    if((scheme == null) || (scheme_ports.get(scheme) == 0))
       return null;
 
     // now parse the URL. Must rememeber that a URL can also contain password
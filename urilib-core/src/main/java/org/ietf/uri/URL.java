@@ -107,9 +107,20 @@ import java.net.MalformedURLException;
 public final class URL extends URI
   implements java.io.Serializable
 {
-  /** The real java URL */
+  /**
+   * The original string this URL was parsed from. Null if the URL was
+   * built from component parts.
+   */
   private String url_string = null;
 
+  /**
+   * Component boundaries within url_string, as generated by the
+   * URLTokenizer. The host, path, query and reference strings are only
+   * created from these on first request. Null if the URL was built from
+   * component parts, in which case those fields are set directly.
+   */
+  private int[] offsets = null;
+
   /** The path component of the URL */
   private String path = null;
 
@@ -131,8 +142,11 @@ public final class URL extends URI
   /** the protocol scheme type of this URL */
   private String scheme = null;
 
-  /** The value of the hash code for this object instance */
-  private int hash_code = -1;
+  /**
+   * The value of the hash code for this object instance. Zero means it has
+   * not been calculated yet.
+   */
+  private int hash_code = 0;
 
   /** The external string representation of this URL */
   private String external_form = null;
@@ -154,8 +168,8 @@ public final class URL extends URI
   public URL(String protocol, String host, int port, String file)
       throws MalformedURLException
   {
-    this.scheme = protocol;
-    this.host = host;
+    this.scheme = URIPool.intern(protocol);
+    this.host = URIPool.intern(host);
 
     // if the port is -1 fetch the default port in it
     this.port = (port == -1) ? URIUtils.getDefaultPort(scheme) : port;
@@ -201,17 +215,42 @@ public final class URL extends URI
   public URL(String spec)
       throws MalformedURLException
   {
-    scheme = URIUtils.getScheme(spec);
+    // One pass over the string to find where everything lives. Only the
+    // scheme and port are pulled out now. Everything else is cut out of the
+    // original string when first asked for.
+    this(spec, URLTokenizer.tokenize(spec));
+  }
+
+  /**
+   * Create a URL from a string that has already been tokenized. The offsets
+   * array is kept by this instance, so the caller must not change it
+   * afterwards.
+   *
+   * @param spec The string representing the URL
+   * @param parts The offsets of the components within spec
+   * @exception MalformedURLException The port was not a valid number
+   */
+  URL(String spec, int[] parts)
+      throws MalformedURLException
+  {
+    String raw_scheme = URIPool.intern(spec,
+                                       parts[URLTokenizer.SCHEME_START],
+                                       parts[URLTokenizer.SCHEME_END]);
 
-    if(scheme == null)
-      throw new MalformedURLException("No protocol scheme defined");
+    scheme = raw_scheme.toLowerCase();
+    if(scheme != raw_scheme)
+      scheme = URIPool.intern(scheme);
 
-    String[] hostport = URIUtils.getHostAndPortFromUrl(spec);
+    // Only protocols that have a default port are treated as having a
+    // host. Everything else is of the generic form "protocol:blah".
+    int default_port = URIUtils.getDefaultPort(scheme);
 
-    if(hostport != null)
+    if((default_port != 0) && (parts[URLTokenizer.HOST_START] != -1))
     {
-      host = hostport[0];
-      port = (hostport[1] == null) ? 0 : Integer.parseInt(hostport[1]);
+      port = URLTokenizer.getPort(spec, parts);
+      if(port == -1)
+        port = default_port;
+
       generic_url = false;
     }
     else
@@ -219,12 +258,8 @@ public final class URL extends URI
       generic_url = true;
     }
 
-    path = URIUtils.getPathFromUrlString(spec);
-
-    query = URIUtils.getQueryFromUrlString(spec);
-    int refLoc = spec.lastIndexOf("#");
-    if (refLoc > -1)
-      reference = spec.substring(refLoc+1);
+    url_string = spec;
+    offsets = parts;
   }
 
   /**
@@ -236,19 +271,15 @@ public final class URL extends URI
    * Creates a URL by parsing the specification <CODE>spec</CODE> within a
    * specified context. If the <CODE>context</CODE> argument is not
    * <CODE>null</CODE> and the <CODE>spec</CODE> argument is a partial URL
-   * specification, then any of the strings missing components are inherited
-   * from the <CODE>context</CODE> argument.
-   * <P>
-   *
-   * The specification given by the <CODE>String</CODE> argument is parsed
-   * to determine if it specifies a protocol using
-   * <CODE>URIUtils.getScheme()</CODE>.
+   * specification, then it is resolved against the context using the
+   * algorithm of RFC 3986 section 5.2, including the removal of any
+   * <CODE>.</CODE> and <CODE>..</CODE> path segments.
    *
    * <UL>
    * <LI>If the <CODE>spec</CODE> argument does not specify a protocol:
    *     <UL>
    *     <LI>If the context argument is not <CODE>null</CODE>, then the
-   *         protocol is copied from the context argument.
+   *         spec is resolved relative to the context argument.
    *     <LI>If the context argument is <CODE>null</CODE>, then a
    *         <CODE>MalformedURLException</CODE> is thrown.
    *     </UL>
@@ -258,19 +289,20 @@ public final class URL extends URI
    *         different protocol than the specification argument, the context
    *         argument is ignored.
    *     <LI>If the context argument is not <CODE>null</CODE> and specifies
-   *         the same protocol as the specification, the <CODE>host</CODE>,
-   *         <CODE>port</CODE> number are copied from the context argument
-   *         into the newly created <CODE>URL</CODE>. The <CODE>file</CODE>
-   *         argument comes from the spec and is appended to the file from
-   *         the context. Thus a context of
+   *         the same protocol as the specification, the protocol is ignored
+   *         and the rest of the spec is resolved relative to the context.
+   *         Thus a context of
    *         <PRE>http://www.ietf.org/working-groups/index.html</PRE>
    *         and a spec of
-   *         <PRE>mydoc.html</PRE>
+   *         <PRE>http:mydoc.html</PRE>
    *         would result in a URL of
-   *         <PRE>http://www.ietf.org/mydoc.html</PRE>
+   *         <PRE>http://www.ietf.org/working-groups/mydoc.html</PRE>
    *     </UL>
    * </UL>
+   * <P>
    *
+   * When resolving many references against the same base, use a
+   * {@link URLBuilder} directly to avoid creating the intermediate objects.
    *
    * @param context The context in which to parse the specification.
    * @param relPart A <CODE>String</CODE> representation of a relative URL
@@ -280,48 +312,47 @@ public final class URL extends URI
   public URL(URL context, String relPart)
       throws MalformedURLException
   {
-    String protocol = null;
-    String local_host = null;
-    int local_port = 0;
+    this(resolveRelative(context, relPart));
+  }
 
-    protocol = URIUtils.getScheme(relPart);
+  /**
+   * Create a URL from the current contents of a builder.
+   *
+   * @param builder The builder holding a parsed URL
+   * @exception MalformedURLException The port was not a valid number
+   */
+  private URL(URLBuilder builder)
+      throws MalformedURLException
+  {
+    this(builder.toString(), builder.copyOffsets());
+  }
+
+  /**
+   * Resolve the relative part against the context, returning the builder
+   * holding the result.
+   *
+   * @param context The base URL or null
+   * @param relPart The possibly relative reference
+   * @return A builder containing the resolved URL
+   * @exception MalformedURLException There is no context and the relative
+   *   part has no scheme
+   */
+  private static URLBuilder resolveRelative(URL context, String relPart)
+      throws MalformedURLException
+  {
+    URLBuilder builder = new URLBuilder(relPart.length() + 64);
 
-    if(protocol == null)
+    if(context == null)
     {
-      if(context != null)
-        scheme = context.scheme;
-      else
-        throw new MalformedURLException("No protocol specified");
+      builder.parse(relPart);
     }
     else
     {
-      // we have a protocol. The fetch the host and port info. That should
-      // never barf due to a malformed URL (at least it shouldn't!)
-      scheme = protocol;
-      String[] hostport = URIUtils.getHostAndPortFromUrl(relPart);
-
-      if(context != null)
-      {
-        if(context.scheme.equalsIgnoreCase(protocol))
-        {
-          local_host = context.host;
-          local_port = context.port;
-        }
-        else
-        {
-          local_host = hostport[0];
-          local_port = Integer.parseInt(hostport[1]);
-        }
-      }
-      else
-      {
-        local_host = hostport[0];
-        local_port = (hostport[1] == null) ? 0 : Integer.parseInt(hostport[1]);
-      }
+      builder.set(context);
+      builder.resolve(relPart, 0, relPart.length(), false);
     }
 
-    host = local_host;
-    port = local_port;
+    return builder;
   }
 
   /**
@@ -332,8 +363,8 @@ public final class URL extends URI
    */
   public URL(java.net.URL url)
   {
-    scheme = url.getProtocol();
-    host = url.getHost();
+    scheme = URIPool.intern(url.getProtocol());
+    host = URIPool.intern(url.getHost());
     port = url.getPort();
 
     String[] file_parts = URIUtils.stripFile(url.getFile());
@@ -371,6 +402,11 @@ public final class URL extends URI
    */
   public String getHost()
   {
+    if((host == null) && (offsets != null) && !generic_url)
+      host = URIPool.intern(url_string,
+                            offsets[URLTokenizer.HOST_START],
+                            offsets[URLTokenizer.HOST_END]);
+
     return host;
   }
 
@@ -382,7 +418,7 @@ public final class URL extends URI
    */
   public String getFile()
   {
-    return path;
+    return getPath();
   }
 
   /**
@@ -393,6 +429,11 @@ public final class URL extends URI
    */
   public String getPath()
   {
+    if((path == null) && (offsets != null))
+      path = URLTokenizer.getComponent(url_string,
+                                       offsets,
+                                       URLTokenizer.PATH_START);
+
     return path;
   }
 
@@ -405,6 +446,11 @@ public final class URL extends URI
    */
   public String getQuery()
   {
+    if((query == null) && (offsets != null))
+      query = URLTokenizer.getComponent(url_string,
+                                        offsets,
+                                        URLTokenizer.QUERY_START);
+
     return query;
   }
 
@@ -416,9 +462,73 @@ public final class URL extends URI
    */
   public String getRef()
   {
+    if((reference == null) && (offsets != null))
+      reference = URLTokenizer.getComponent(url_string,
+                                            offsets,
+                                            URLTokenizer.REF_START);
+
     return reference;
   }
 
+  /**
+   * Fetch the user info part of this URL, creating it from the source
+   * string if needed.
+   *
+   * @return The user info or null if not defined
+   */
+  private String getUserInfo()
+  {
+    if((user_info == null) && (offsets != null) && !generic_url)
+      user_info = URLTokenizer.getComponent(url_string,
+                                            offsets,
+                                            URLTokenizer.USER_START);
+
+    return user_info;
+  }
+
+  /**
+   * Build the path and query parts as a single string suitable for passing
+   * to a protocol handler.
+   *
+   * @return The path with the query appended, if there is one
+   */
+  private String getFullPath()
+  {
+    String path = getPath();
+    String query = getQuery();
+
+    return (query != null) ? path + '?' + query : path;
+  }
+
+  /**
+   * Check to see if the string that this URL was parsed from is exactly
+   * what toExternalForm() would build. That is true when the scheme is
+   * already lower case, there is no "URL:" prefix, generic URLs did not
+   * contain an authority and any explicit port is not the default.
+   *
+   * @return true if the source string can be used as the external form
+   */
+  private boolean isCanonicalSource()
+  {
+    if((url_string == null) || (offsets[URLTokenizer.SCHEME_START] != 0))
+      return false;
+
+    if(!url_string.startsWith(scheme))
+      return false;
+
+    if(generic_url)
+      return (offsets[URLTokenizer.HOST_START] == -1);
+
+    int port_start = offsets[URLTokenizer.PORT_START];
+
+    if(port_start == -1)
+      return true;
+
+    return (offsets[URLTokenizer.PORT_END] > port_start) &&
+           (url_string.charAt(port_start) != '0') &&
+           (port != URIUtils.getDefaultPort(scheme));
+  }
+
   /**
    * Compares two URLs, excluding the reference and query parts.
    * <P>
@@ -435,8 +545,11 @@ public final class URL extends URI
       return false;
 
     // Compare the hosts.
-    if(((host == null) && (other.host == null)) ||
-       ((host != null) && !host.equalsIgnoreCase(other.host)))
+    String my_host = getHost();
+    String other_host = other.getHost();
+
+    if((my_host != null) ? !my_host.equalsIgnoreCase(other_host)
+                         : (other_host != null))
       return false;
 
     // Compare the ports.
@@ -444,7 +557,9 @@ public final class URL extends URI
       return false;
 
     // Compare the files.
-    if (!((path != null) && path.equals(other.path)))
+    String my_path = getPath();
+
+    if (!((my_path != null) && my_path.equals(other.getPath())))
         return false;
 
     return true;
@@ -470,8 +585,8 @@ public final class URL extends URI
     if(stream == null)
       throw new UnsupportedServiceException(scheme + " is not supported");
 
-    String full_path = (query != null) ? path + '?' + query : path;
-    ResourceConnection resc = stream.openConnection(host, port, full_path);
+    String full_path = getFullPath();
+    ResourceConnection resc = stream.openConnection(getHost(), port, full_path);
 
     return resc;
   }
@@ -497,8 +612,8 @@ public final class URL extends URI
   {
     URIResourceStream stream = ResourceManager.getProtocolHandler(scheme);
 
-    String full_path = (query != null) ? path + '?' + query : path;
-    ResourceConnection resc = stream.openConnection(host, port, full_path);
+    String full_path = getFullPath();
+    ResourceConnection resc = stream.openConnection(getHost(), port, full_path);
 
     ResourceConnection[] ret_val = { resc };
 
@@ -627,6 +742,14 @@ public final class URL extends URI
     if(external_form != null)
       return external_form;
 
+    // If the original string is already in the form we would generate, use
+    // it directly rather than building a copy of it.
+    if(isCanonicalSource())
+    {
+      external_form = url_string;
+      return external_form;
+    }
+
     StringBuffer buffer = new StringBuffer(scheme);
 
     if(!generic_url)
@@ -634,9 +757,15 @@ public final class URL extends URI
     else
       buffer.append(':');
 
-    if(user_info != null)
+    String user = getUserInfo();
+    String host = getHost();
+    String path = getPath();
+    String query = getQuery();
+    String reference = getRef();
+
+    if(user != null)
     {
-      buffer.append(user_info);
+      buffer.append(user);
       buffer.append('@');
     }
 
@@ -714,57 +843,97 @@ public final class URL extends URI
       return false;
 
     // Check query. Case sensitive checking here
-    if(((query != null) && !query.equals(other.query)) ||
-       (query != other.query))
+    String my_query = getQuery();
+    String other_query = other.getQuery();
+
+    if((my_query != null) ? !my_query.equals(other_query)
+                          : (other_query != null))
       return false;
 
-    // Check query. Case sensitive checking here
-    if(((reference != null) && !reference.equals(other.reference)) ||
-       (reference != other.reference))
+    // Check reference. Case sensitive checking here
+    String my_ref = getRef();
+    String other_ref = other.getRef();
+
+    if((my_ref != null) ? !my_ref.equals(other_ref) : (other_ref != null))
       return false;
 
     return true;
   }
 
   /**
-   * Creates an integer suitable for hash table indexing. The hashcode is based
-   * on the addition of the all the hashcodes for the internal strings and the
-   * port number represented as an integer.
+   * Creates an integer suitable for hash table indexing. Each component is
+   * folded in turn into a running value so that the position of a string
+   * matters (<CODE>http://a/b</CODE> and <CODE>http://b/a</CODE> no longer
+   * collide) and the result is then mixed to spread the bits. The scheme
+   * and host are hashed ignoring case to match the rules of
+   * <CODE>equals()</CODE>.
+   * <P>
+   * The value is cached without locking. If two threads calculate it at the
+   * same time they both arrive at the same answer, so the race is harmless.
    *
    * @return  a hash code for this <CODE>URL</CODE>.
    */
-  public synchronized int hashCode()
+  public int hashCode()
   {
-    if(hash_code != -1)
-      return hash_code;
+    int val = hash_code;
 
-    int val = 0;
+    if(val != 0)
+      return val;
 
-    // Generate the protocol part.
-    if(scheme != null)
-      val += scheme.hashCode();
+    // Generate the protocol and host parts.
+    val = hashIgnoreCase(scheme);
+    val = 31 * val + hashIgnoreCase(getHost());
 
-    // Generate the host part.
-    if(host != null)
-      val += host.hashCode();
+    // Generate the port part.
+    val = 31 * val + port;
 
     // Generate the file part.
-    if(path != null)
-      val += path.hashCode();
+    String path = getPath();
+    val = 31 * val + ((path == null) ? 0 : path.hashCode());
 
     // Generate the query part
-    if(query != null)
-      val += query.hashCode();
+    String query = getQuery();
+    val = 31 * val + ((query == null) ? 0 : query.hashCode());
 
-    // Genrate the reference part
-    if(reference != null)
-      val += reference.hashCode();
+    // Generate the reference part
+    String reference = getRef();
+    val = 31 * val + ((reference == null) ? 0 : reference.hashCode());
 
-    // Generate the port part.
-    val += port;
+    // Final avalanche so that the low bits used by hash tables depend on
+    // every component.
+    val ^= (val >>> 16);
+    val *= 0x85ebca6b;
+    val ^= (val >>> 13);
+    val *= 0xc2b2ae35;
+    val ^= (val >>> 16);
+
+    // zero is reserved to mean "not calculated yet"
+    if(val == 0)
+      val = 1;
 
     hash_code = val;
 
     return val;
   }
+
+  /**
+   * Generate a hash of the string that ignores the case of the characters.
+   * Does the conversion a char at a time so no lower case copy is needed.
+   *
+   * @param str The string to hash. May be null
+   * @return The hash value or 0 for a null string
+   */
+  private static int hashIgnoreCase(String str)
+  {
+    if(str == null)
+      return 0;
+
+    int val = 0;
+    int len = str.length();
+
+    for(int i = 0; i < len; i++)
+      val = 31 * val + Character.toLowerCase(str.charAt(i));
+
+    return val;
+  }
 }
@@ -0,0 +1,899 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+// Standard imports
+import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+
+// Application specific imports
+// none
+
+/**
+ * A reusable, mutable holder of a parsed URL for high volume parsing.
+ * <P>
+ *
+ * Creating a <CODE>URL</CODE> requires a <CODE>String</CODE> to start with,
+ * and that string is then cut up into further strings for each of the
+ * components. When processing very large numbers of URLs, such as those
+ * found in access logs or the output of a web crawler, most of those
+ * strings are thrown away almost immediately. This class allows the URL
+ * to be parsed straight out of a <CODE>CharSequence</CODE>, or out of a
+ * region of a <CODE>byte[]</CODE> or <CODE>ByteBuffer</CODE>, with no
+ * object allocation at all once the internal buffer has grown to the size
+ * of the longest URL seen.
+ * <P>
+ *
+ * After a successful parse the component parts are available as spans
+ * within the character array returned by {@link #getChars()}. Each
+ * component is identified by one of the constants defined in this class.
+ * Strings are only created when explicitly asked for with
+ * {@link #getComponent(int)} or when converting to a full <CODE>URL</CODE>
+ * with {@link #toURL()}.
+ * <P>
+ *
+ * Parsing is purely syntactic, using the generic form
+ * <CODE>scheme:[//[userinfo@]host[:port]]path[?query][#reference]</CODE>.
+ * Unlike <CODE>URL</CODE>, a host is reported for any scheme that is
+ * followed by <CODE>//</CODE>. Bytes are treated as ISO-8859-1 characters,
+ * which is correct for any properly escaped URL.
+ * <P>
+ *
+ * A builder holding an absolute URL can also resolve a relative reference
+ * against itself, in place, using the algorithm of RFC 3986 section 5.2
+ * including the removal of dot segments. Together with
+ * {@link #set(URLBuilder)} this allows every link in a document to be
+ * resolved against a base without creating any intermediate strings.
+ * <P>
+ *
+ * Instances are not thread safe. The intended use is one builder per
+ * thread that is reused for every line of input.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+public class URLBuilder
+{
+  /** Component identifier for the scheme */
+  public static final int SCHEME = 0;
+
+  /** Component identifier for the user info */
+  public static final int USER_INFO = 1;
+
+  /** Component identifier for the host name */
+  public static final int HOST = 2;
+
+  /** Component identifier for the port digits */
+  public static final int PORT = 3;
+
+  /** Component identifier for the path */
+  public static final int PATH = 4;
+
+  /** Component identifier for the query, not including the '?' */
+  public static final int QUERY = 5;
+
+  /** Component identifier for the reference, not including the '#' */
+  public static final int REFERENCE = 6;
+
+  /** The default starting size of the character buffer */
+  private static final int DEFAULT_CAPACITY = 256;
+
+  /** The characters of the current URL */
+  private char[] buffer;
+
+  /** View of the buffer handed to the tokenizer */
+  private CharBuffer buffer_view;
+
+  /** The number of valid characters in the buffer */
+  private int length;
+
+  /** The component offsets of the current URL */
+  private int[] offsets;
+
+  /** Second buffer that a resolved URL is built in before swapping */
+  private char[] scratch;
+
+  /** The component offsets of a reference being resolved */
+  private int[] ref_offsets;
+
+  /** The explicit port number, or -1 if none was given */
+  private int port;
+
+  /** Flag indicating that the buffer currently holds a parsed URL */
+  private boolean parsed;
+
+  /**
+   * Create a new, empty builder with the default buffer size.
+   */
+  public URLBuilder()
+  {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Create a new, empty builder with the given initial buffer size. The
+   * buffer grows as needed.
+   *
+   * @param capacity The initial number of characters to allow for
+   */
+  public URLBuilder(int capacity)
+  {
+    buffer = new char[Math.max(capacity, 16)];
+    buffer_view = CharBuffer.wrap(buffer);
+    scratch = new char[buffer.length];
+    offsets = new int[URLTokenizer.NUM_OFFSETS];
+    ref_offsets = new int[URLTokenizer.NUM_OFFSETS];
+    clear();
+  }
+
+  /**
+   * Clear the builder so that it no longer holds a URL. The buffer is kept
+   * for the next parse.
+   */
+  public void clear()
+  {
+    length = 0;
+    port = -1;
+    parsed = false;
+
+    for(int i = 0; i < URLTokenizer.NUM_OFFSETS; i++)
+      offsets[i] = -1;
+  }
+
+  /**
+   * Parse all of the given characters as a URL, replacing the current
+   * contents of this builder.
+   *
+   * @param spec The characters to parse
+   * @exception MalformedURLException No scheme could be found or the port
+   *   was not a number
+   */
+  public void parse(CharSequence spec)
+    throws MalformedURLException
+  {
+    parse(spec, 0, spec.length());
+  }
+
+  /**
+   * Parse a region of the given characters as a URL, replacing the current
+   * contents of this builder.
+   *
+   * @param spec The characters to parse
+   * @param start The index of the first character of the URL
+   * @param end The index one past the last character of the URL
+   * @exception MalformedURLException No scheme could be found or the port
+   *   was not a number
+   */
+  public void parse(CharSequence spec, int start, int end)
+    throws MalformedURLException
+  {
+    int len = end - start;
+    ensureCapacity(len);
+
+    if(spec instanceof String)
+      ((String)spec).getChars(start, end, buffer, 0);
+    else if(spec instanceof StringBuffer)
+      ((StringBuffer)spec).getChars(start, end, buffer, 0);
+    else if(spec instanceof StringBuilder)
+      ((StringBuilder)spec).getChars(start, end, buffer, 0);
+    else
+    {
+      for(int i = 0; i < len; i++)
+        buffer[i] = spec.charAt(start + i);
+    }
+
+    length = len;
+    tokenize();
+  }
+
+  /**
+   * Parse a region of the given byte array as a URL, replacing the current
+   * contents of this builder. Each byte is taken as a single ISO-8859-1
+   * character.
+   *
+   * @param data The bytes to parse
+   * @param start The index of the first byte of the URL
+   * @param end The index one past the last byte of the URL
+   * @exception MalformedURLException No scheme could be found or the port
+   *   was not a number
+   */
+  public void parse(byte[] data, int start, int end)
+    throws MalformedURLException
+  {
+    int len = end - start;
+    ensureCapacity(len);
+
+    for(int i = 0; i < len; i++)
+      buffer[i] = (char)(data[start + i] & 0xFF);
+
+    length = len;
+    tokenize();
+  }
+
+  /**
+   * Parse the remaining bytes of the buffer, from its position to its
+   * limit, as a URL. The position of the buffer is not changed. Each byte
+   * is taken as a single ISO-8859-1 character.
+   *
+   * @param data The bytes to parse
+   * @exception MalformedURLException No scheme could be found or the port
+   *   was not a number
+   */
+  public void parse(ByteBuffer data)
+    throws MalformedURLException
+  {
+    int pos = data.position();
+    int len = data.limit() - pos;
+
+    if(data.hasArray())
+    {
+      int base = data.arrayOffset() + pos;
+      parse(data.array(), base, base + len);
+    }
+    else
+    {
+      ensureCapacity(len);
+
+      for(int i = 0; i < len; i++)
+        buffer[i] = (char)(data.get(pos + i) & 0xFF);
+
+      length = len;
+      tokenize();
+    }
+  }
+
+  /**
+   * Replace the contents of this builder with a copy of another builder.
+   * Typically used to reset the base URL before resolving each link.
+   *
+   * @param base The builder to copy
+   */
+  public void set(URLBuilder base)
+  {
+    ensureCapacity(base.length);
+    System.arraycopy(base.buffer, 0, buffer, 0, base.length);
+    System.arraycopy(base.offsets, 0, offsets, 0, URLTokenizer.NUM_OFFSETS);
+
+    length = base.length;
+    port = base.port;
+    parsed = base.parsed;
+  }
+
+  /**
+   * Replace the contents of this builder with the given URL.
+   *
+   * @param base The URL to copy
+   * @exception MalformedURLException The URL could not be parsed again
+   */
+  public void set(URL base)
+    throws MalformedURLException
+  {
+    parse(base.toExternalForm());
+  }
+
+  /**
+   * Resolve a URI reference against the URL currently held, replacing it
+   * with the result. Resolution follows RFC 3986 section 5.2 in strict
+   * mode, so a reference with a scheme is always taken as absolute.
+   *
+   * @param ref The reference to resolve, which may be relative
+   * @exception MalformedURLException The builder does not hold a URL or the
+   *   result has an invalid port
+   */
+  public void resolve(CharSequence ref)
+    throws MalformedURLException
+  {
+    resolve(ref, 0, ref.length(), true);
+  }
+
+  /**
+   * Resolve a region of a URI reference against the URL currently held,
+   * replacing it with the result. Resolution follows RFC 3986 section 5.2.
+   * When not strict, a reference that has the same scheme as the base is
+   * treated as relative, which is the behaviour that older parsers had for
+   * references such as <CODE>http:page.html</CODE>.
+   *
+   * @param ref The reference to resolve, which may be relative
+   * @param start The index of the first character of the reference
+   * @param end The index one past the last character of the reference
+   * @param strict false if a matching scheme in the reference is ignored
+   * @exception MalformedURLException The builder does not hold a URL or the
+   *   result has an invalid port
+   */
+  public void resolve(CharSequence ref, int start, int end, boolean strict)
+    throws MalformedURLException
+  {
+    if(!parsed)
+      throw new MalformedURLException("No base URL to resolve against");
+
+    int[] r = ref_offsets;
+    URLTokenizer.tokenizeReference(ref, start, end, r);
+
+    int r_scheme = r[URLTokenizer.SCHEME_START];
+
+    if(!strict && (r_scheme != -1))
+    {
+      int len = r[URLTokenizer.SCHEME_END] - r_scheme;
+      int b_scheme = offsets[URLTokenizer.SCHEME_START];
+      boolean same = (len == offsets[URLTokenizer.SCHEME_END] - b_scheme);
+
+      for(int i = 0; same && (i < len); i++)
+        same = Character.toLowerCase(ref.charAt(r_scheme + i)) ==
+               Character.toLowerCase(buffer[b_scheme + i]);
+
+      if(same)
+        r_scheme = -1;
+    }
+
+    // Worst case is the whole base plus the whole reference plus the
+    // delimiters that may be added between them.
+    int needed = length + (end - start) + 8;
+    if(scratch.length < needed)
+      scratch = new char[Math.max(needed, buffer.length)];
+
+    char[] out = scratch;
+    int pos;
+
+    int r_auth = authorityStart(r);
+    int r_path = r[URLTokenizer.PATH_START];
+    int r_path_end = r[URLTokenizer.PATH_END];
+    boolean use_ref_query = true;
+
+    if(r_scheme != -1)
+    {
+      pos = copy(ref, r_scheme, r[URLTokenizer.SCHEME_END], out, 0);
+      out[pos++] = ':';
+
+      if(r_auth != -1)
+        pos = copyAuthority(ref, r, out, pos);
+
+      pos = copyPath(ref, r_path, r_path_end, out, pos);
+    }
+    else
+    {
+      pos = copy(buffer,
+                 offsets[URLTokenizer.SCHEME_START],
+                 offsets[URLTokenizer.SCHEME_END],
+                 out,
+                 0);
+      out[pos++] = ':';
+
+      if(r_auth != -1)
+      {
+        pos = copyAuthority(ref, r, out, pos);
+        pos = copyPath(ref, r_path, r_path_end, out, pos);
+      }
+      else
+      {
+        int b_auth = authorityStart(offsets);
+
+        if(b_auth != -1)
+          pos = copyAuthority(buffer_view, offsets, out, pos);
+
+        int b_path = offsets[URLTokenizer.PATH_START];
+        int b_path_end = offsets[URLTokenizer.PATH_END];
+
+        if(r_path == r_path_end)
+        {
+          // Empty path. Take the base path and, unless the reference has
+          // one, the base query.
+          pos = copy(buffer, b_path, b_path_end, out, pos);
+
+          if(r[URLTokenizer.QUERY_START] == -1)
+          {
+            use_ref_query = false;
+
+            if(offsets[URLTokenizer.QUERY_START] != -1)
+            {
+              out[pos++] = '?';
+              pos = copy(buffer,
+                         offsets[URLTokenizer.QUERY_START],
+                         offsets[URLTokenizer.QUERY_END],
+                         out,
+                         pos);
+            }
+          }
+        }
+        else if(ref.charAt(r_path) == '/')
+        {
+          pos = copyPath(ref, r_path, r_path_end, out, pos);
+        }
+        else
+        {
+          // Merge: everything in the base path up to and including the
+          // last '/', then the reference path.
+          int path_start = pos;
+
+          if((b_auth != -1) && (b_path == b_path_end))
+          {
+            out[pos++] = '/';
+          }
+          else
+          {
+            int last = b_path_end - 1;
+            while((last >= b_path) && (buffer[last] != '/'))
+              last--;
+
+            pos = copy(buffer, b_path, last + 1, out, pos);
+          }
+
+          pos = copy(ref, r_path, r_path_end, out, pos);
+          pos = removeDotSegments(out, path_start, pos);
+        }
+      }
+    }
+
+    if(use_ref_query && (r[URLTokenizer.QUERY_START] != -1))
+    {
+      out[pos++] = '?';
+      pos = copy(ref,
+                 r[URLTokenizer.QUERY_START],
+                 r[URLTokenizer.QUERY_END],
+                 out,
+                 pos);
+    }
+
+    if(r[URLTokenizer.REF_START] != -1)
+    {
+      out[pos++] = '#';
+      pos = copy(ref,
+                 r[URLTokenizer.REF_START],
+                 r[URLTokenizer.REF_END],
+                 out,
+                 pos);
+    }
+
+    // Swap the buffers over and tokenize the result.
+    scratch = buffer;
+    buffer = out;
+    buffer_view = CharBuffer.wrap(buffer);
+    length = pos;
+
+    tokenize();
+  }
+
+  /**
+   * Check to see if the builder currently holds a successfully parsed URL.
+   *
+   * @return true if there is a URL available
+   */
+  public boolean isParsed()
+  {
+    return parsed;
+  }
+
+  /**
+   * Get the internal character buffer. The component offsets returned by
+   * this class are indexes into this array. The array is only valid until
+   * the next call to one of the parse methods.
+   *
+   * @return The character buffer
+   */
+  public char[] getChars()
+  {
+    return buffer;
+  }
+
+  /**
+   * Get the number of characters of the current URL held in the buffer.
+   *
+   * @return The length of the URL in characters
+   */
+  public int length()
+  {
+    return length;
+  }
+
+  /**
+   * Check to see if the given component was present in the URL. A
+   * component may be present but empty, such as the query of
+   * <CODE>http://host/path?</CODE>.
+   *
+   * @param component The identifier of the component to check
+   * @return true if the component was present
+   */
+  public boolean hasComponent(int component)
+  {
+    return offsets[component << 1] != -1;
+  }
+
+  /**
+   * Get the index in the buffer of the first character of the given
+   * component.
+   *
+   * @param component The identifier of the component
+   * @return The start index or -1 if the component is not present
+   */
+  public int getStart(int component)
+  {
+    return offsets[component << 1];
+  }
+
+  /**
+   * Get the index in the buffer one past the last character of the given
+   * component.
+   *
+   * @param component The identifier of the component
+   * @return The end index or -1 if the component is not present
+   */
+  public int getEnd(int component)
+  {
+    return offsets[(component << 1) + 1];
+  }
+
+  /**
+   * Get the explicit port number given in the URL. No default port is
+   * substituted if there was none.
+   *
+   * @return The port number or -1 if not given
+   */
+  public int getPort()
+  {
+    return port;
+  }
+
+  /**
+   * Compare the given component against a string without creating a
+   * string from the component.
+   *
+   * @param component The identifier of the component
+   * @param value The string to compare against
+   * @param ignoreCase true if the comparison should not be case sensitive
+   * @return true if the component is present and matches the value
+   */
+  public boolean componentEquals(int component,
+                                 String value,
+                                 boolean ignoreCase)
+  {
+    int start = offsets[component << 1];
+
+    if(start == -1)
+      return false;
+
+    int len = offsets[(component << 1) + 1] - start;
+
+    if(len != value.length())
+      return false;
+
+    for(int i = 0; i < len; i++)
+    {
+      char a = buffer[start + i];
+      char b = value.charAt(i);
+
+      if(a == b)
+        continue;
+
+      if(!ignoreCase ||
+         (Character.toLowerCase(a) != Character.toLowerCase(b)))
+        return false;
+    }
+
+    return true;
+  }
+
+  /**
+   * Create a new string holding the given component.
+   *
+   * @param component The identifier of the component
+   * @return The component string or null if it is not present
+   */
+  public String getComponent(int component)
+  {
+    int start = offsets[component << 1];
+
+    if(start == -1)
+      return null;
+
+    return new String(buffer, start, offsets[(component << 1) + 1] - start);
+  }
+
+  /**
+   * Create a full <CODE>URL</CODE> instance from the current contents. The
+   * characters are not parsed a second time.
+   *
+   * @return A new URL representing the current contents
+   * @exception MalformedURLException The builder does not hold a URL
+   */
+  public URL toURL()
+    throws MalformedURLException
+  {
+    if(!parsed)
+      throw new MalformedURLException("No URL has been parsed");
+
+    return new URL(new String(buffer, 0, length), copyOffsets());
+  }
+
+  /**
+   * Create a copy of the current component offsets in the form used by
+   * <CODE>URL</CODE>.
+   *
+   * @return A new array of offsets
+   */
+  int[] copyOffsets()
+  {
+    return (int[])offsets.clone();
+  }
+
+  /**
+   * Return the characters of the current URL as a string.
+   *
+   * @return The URL as a string
+   */
+  public String toString()
+  {
+    return new String(buffer, 0, length);
+  }
+
+  /**
+   * Run the tokenizer over the current buffer contents. If it fails the
+   * builder is cleared before the exception is passed on.
+   *
+   * @exception MalformedURLException No scheme could be found or the port
+   *   was not a number
+   */
+  private void tokenize()
+    throws MalformedURLException
+  {
+    try
+    {
+      URLTokenizer.tokenize(buffer_view, 0, length, offsets);
+      port = URLTokenizer.getPort(buffer_view, offsets);
+      parsed = true;
+    }
+    catch(MalformedURLException mue)
+    {
+      clear();
+      throw mue;
+    }
+  }
+
+  /**
+   * Find the start of the authority of a set of offsets.
+   *
+   * @param parts The offsets to look at
+   * @return The index of the start of the authority or -1 if none
+   */
+  private static int authorityStart(int[] parts)
+  {
+    int start = parts[URLTokenizer.USER_START];
+
+    return (start != -1) ? start : parts[URLTokenizer.HOST_START];
+  }
+
+  /**
+   * Copy the "//" and the authority from the source to the output.
+   *
+   * @param src The characters that the offsets refer to
+   * @param parts The offsets of the source
+   * @param out The array to copy into
+   * @param pos The index in out to start writing at
+   * @return The index in out after the last character written
+   */
+  private static int copyAuthority(CharSequence src,
+                                   int[] parts,
+                                   char[] out,
+                                   int pos)
+  {
+    int end = parts[URLTokenizer.PORT_END];
+    if(end == -1)
+      end = parts[URLTokenizer.HOST_END];
+
+    out[pos++] = '/';
+    out[pos++] = '/';
+
+    return copy(src, authorityStart(parts), end, out, pos);
+  }
+
+  /**
+   * Copy a path into the output and remove any dot segments from it.
+   *
+   * @param src The characters holding the path
+   * @param start The index of the start of the path
+   * @param end The index one past the end of the path
+   * @param out The array to copy into
+   * @param pos The index in out to start writing at
+   * @return The index in out after the last character written
+   */
+  private static int copyPath(CharSequence src,
+                              int start,
+                              int end,
+                              char[] out,
+                              int pos)
+  {
+    int path_end = copy(src, start, end, out, pos);
+
+    return removeDotSegments(out, pos, path_end);
+  }
+
+  /**
+   * Copy a range of characters into the output.
+   *
+   * @param src The characters to copy from
+   * @param start The index of the first character to copy
+   * @param end The index one past the last character to copy
+   * @param out The array to copy into
+   * @param pos The index in out to start writing at
+   * @return The index in out after the last character written
+   */
+  private static int copy(CharSequence src,
+                          int start,
+                          int end,
+                          char[] out,
+                          int pos)
+  {
+    for(int i = start; i < end; i++)
+      out[pos++] = src.charAt(i);
+
+    return pos;
+  }
+
+  /**
+   * Copy a range of characters into the output.
+   *
+   * @param src The characters to copy from
+   * @param start The index of the first character to copy
+   * @param end The index one past the last character to copy
+   * @param out The array to copy into
+   * @param pos The index in out to start writing at
+   * @return The index in out after the last character written
+   */
+  private static int copy(char[] src, int start, int end, char[] out, int pos)
+  {
+    int len = end - start;
+    System.arraycopy(src, start, out, pos, len);
+
+    return pos + len;
+  }
+
+  /**
+   * Remove the "." and ".." segments from a path held in a character
+   * array, as described in RFC 3986 section 5.2.4. The work is done in
+   * place because the output can never be longer than the input that has
+   * been consumed so far.
+   *
+   * @param buf The array holding the path
+   * @param start The index of the first character of the path
+   * @param end The index one past the last character of the path
+   * @return The new end index of the path
+   */
+  static int removeDotSegments(char[] buf, int start, int end)
+  {
+    int in = start;
+    int out = start;
+
+    while(in < end)
+    {
+      int left = end - in;
+      char ch = buf[in];
+
+      if(ch == '.')
+      {
+        // "./" or "../" prefixes are dropped, as is a lone "." or "..".
+        if(left == 1)
+          break;
+
+        char next = buf[in + 1];
+
+        if(next == '/')
+        {
+          in += 2;
+          continue;
+        }
+
+        if(next == '.')
+        {
+          if(left == 2)
+            break;
+
+          if(buf[in + 2] == '/')
+          {
+            in += 3;
+            continue;
+          }
+        }
+      }
+      else if((ch == '/') && (left >= 2) && (buf[in + 1] == '.'))
+      {
+        if(left == 2)
+        {
+          // trailing "/."
+          buf[out++] = '/';
+          break;
+        }
+
+        char next = buf[in + 2];
+
+        if(next == '/')
+        {
+          in += 2;
+          continue;
+        }
+
+        if((next == '.') && ((left == 3) || (buf[in + 3] == '/')))
+        {
+          // "/.." removes the last segment written so far
+          while(out > start)
+          {
+            out--;
+            if(buf[out] == '/')
+              break;
+          }
+
+          if(left == 3)
+          {
+            buf[out++] = '/';
+            break;
+          }
+
+          in += 3;
+          continue;
+        }
+      }
+
+      // Move the first segment, including any leading '/', to the output.
+      do
+      {
+        buf[out++] = buf[in++];
+      }
+      while((in < end) && (buf[in] != '/'));
+    }
+
+    return out;
+  }
+
+  /**
+   * Make sure the buffer can hold at least the given number of characters.
+   * The current contents are not preserved.
+   *
+   * @param size The number of characters required
+   */
+  private void ensureCapacity(int size)
+  {
+    if(size <= buffer.length)
+      return;
+
+    int new_size = buffer.length;
+    while(new_size < size)
+      new_size <<= 1;
+
+    buffer = new char[new_size];
+    buffer_view = CharBuffer.wrap(buffer);
+
+    if(scratch.length < new_size)
+      scratch = new char[new_size];
+  }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package org.ietf.uri;
+
+import java.net.MalformedURLException;
+
+/**
+ * Single pass tokenizer that locates the component parts of a URL string.
+ * <P>
+ *
+ * Rather than creating strings for each part, the tokenizer walks the
+ * characters of the source string exactly once and records the start and
+ * end index of each component into an <CODE>int</CODE> array. The caller
+ * is then free to create substrings of only the parts it is interested in.
+ * The array is indexed using the constants defined in this class. Each
+ * component is described by a start index (inclusive) and an end index
+ * (exclusive). If the component is not present in the string, both values
+ * are set to -1.
+ * <P>
+ *
+ * The string is broken up using the generic syntax:
+ * <PRE>
+ *   scheme:[//[userinfo@]host[:port]]path[?query][#reference]
+ * </PRE>
+ * Everything after the scheme is handed to the {@link SchemeParser}
+ * registered for that scheme, which for most schemes is the generic parser
+ * of this class. A leading <CODE>URL:</CODE> or <CODE>URI:</CODE> wrapper,
+ * as described in RFC 1738, is skipped before looking for the scheme.
+ * IPv6 literal hosts enclosed in square brackets are kept intact so that
+ * the colons they contain are not treated as the port delimiter.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+final class URLTokenizer
+{
+  /** Index of the first character of the scheme */
+  static final int SCHEME_START = SchemeParser.SCHEME_START;
+
+  /** Index of the ':' that terminates the scheme */
+  static final int SCHEME_END = SchemeParser.SCHEME_END;
+
+  /** Index of the first character of the user info */
+  static final int USER_START = SchemeParser.USER_START;
+
+  /** Index of the '@' that terminates the user info */
+  static final int USER_END = SchemeParser.USER_END;
+
+  /** Index of the first character of the host name */
+  static final int HOST_START = SchemeParser.HOST_START;
+
+  /** Index one past the last character of the host name */
+  static final int HOST_END = SchemeParser.HOST_END;
+
+  /** Index of the first digit of the port */
+  static final int PORT_START = SchemeParser.PORT_START;
+
+  /** Index one past the last digit of the port */
+  static final int PORT_END = SchemeParser.PORT_END;
+
+  /** Index of the first character of the path */
+  static final int PATH_START = SchemeParser.PATH_START;
+
+  /** Index one past the last character of the path */
+  static final int PATH_END = SchemeParser.PATH_END;
+
+  /** Index of the first character after the '?' */
+  static final int QUERY_START = SchemeParser.QUERY_START;
+
+  /** Index one past the last character of the query */
+  static final int QUERY_END = SchemeParser.QUERY_END;
+
+  /** Index of the first character after the '#' */
+  static final int REF_START = SchemeParser.REF_START;
+
+  /** Index one past the last character of the reference */
+  static final int REF_END = SchemeParser.REF_END;
+
+  /** The size of the array needed to hold all of the offsets */
+  static final int NUM_OFFSETS = SchemeParser.NUM_OFFSETS;
+
+  /**
+   * Private constructor to prevent instantiation of this static class.
+   */
+  private URLTokenizer()
+  {
+  }
+
+  /**
+   * Tokenize the given string into a newly allocated offsets array.
+   *
+   * @param spec The string to parse as a URL
+   * @return The array of offsets, indexed by the constants of this class
+   * @exception MalformedURLException No scheme could be found or the port
+   *   was not a number
+   */
+  static int[] tokenize(String spec)
+    throws MalformedURLException
+  {
+    int[] offsets = new int[NUM_OFFSETS];
+    tokenize(spec, offsets);
+
+    return offsets;
+  }
+
+  /**
+   * Tokenize the given string, placing the component offsets into the
+   * provided array. The array must be at least <CODE>NUM_OFFSETS</CODE>
+   * long. Any existing values in the array are overwritten.
+   *
+   * @param spec The string to parse as a URL
+   * @param offsets The array to put the component offsets into
+   * @exception MalformedURLException No scheme could be found or the port
+   *   was not a number
+   */
+  static void tokenize(String spec, int[] offsets)
+    throws MalformedURLException
+  {
+    tokenize(spec, 0, spec.length(), offsets);
+  }
+
+  /**
+   * Tokenize a region of the given character sequence, placing the
+   * component offsets into the provided array. Offsets are absolute indexes
+   * into the sequence, not relative to the start of the region. The array
+   * must be at least <CODE>NUM_OFFSETS</CODE> long. Any existing values in
+   * the array are overwritten.
+   *
+   * @param spec The characters to parse as a URL
+   * @param start The index of the first character of the URL
+   * @param end The index one past the last character of the URL
+   * @param offsets The array to put the component offsets into
+   * @exception MalformedURLException No scheme could be found or the port
+   *   was not a number
+   */
+  static void tokenize(CharSequence spec, int start, int end, int[] offsets)
+    throws MalformedURLException
+  {
+    int index = start;
+    char ch = 0;
+
+    for(int i = USER_START; i < NUM_OFFSETS; i++)
+      offsets[i] = -1;
+
+    // quick case insensitive compare to see if the URI starts with either
+    // "URL:" or "URI:"
+    if((end - start > 4) && (spec.charAt(start + 3) == ':'))
+    {
+      char c0 = spec.charAt(start);
+      char c1 = spec.charAt(start + 1);
+      char c2 = spec.charAt(start + 2);
+
+      if((c0 == 'u' || c0 == 'U') &&
+         (c1 == 'r' || c1 == 'R') &&
+         (c2 == 'i' || c2 == 'I' || c2 == 'l' || c2 == 'L'))
+        index = start + 4;
+    }
+
+    // The scheme. Everything up to the first ':' provided that we don't hit
+    // one of the other delimiters first.
+    int scheme_start = index;
+
+    while(index < end)
+    {
+      ch = spec.charAt(index);
+      if((ch == ':') || (ch == '/') || (ch == '?') || (ch == '#'))
+        break;
+
+      index++;
+    }
+
+    if((index == scheme_start) || (index == end) || (ch != ':'))
+      throw new MalformedURLException("No protocol scheme defined");
+
+    offsets[SCHEME_START] = scheme_start;
+    offsets[SCHEME_END] = index;
+
+    SchemeParser parser = URIUtils.getSchemeParser(spec, scheme_start, index);
+    parser.parse(spec, index + 1, end, offsets);
+  }
+
+  /**
+   * Tokenize a region of the given character sequence as a URI reference.
+   * This is the same as <CODE>tokenize()</CODE> except that the reference
+   * may be relative, in which case there is no scheme and both scheme
+   * offsets are set to -1. A scheme is only recognised if it starts with a
+   * letter and is made up of the characters allowed by RFC 3986. No
+   * <CODE>URL:</CODE> wrapper is allowed.
+   *
+   * @param spec The characters to parse as a URI reference
+   * @param start The index of the first character of the reference
+   * @param end The index one past the last character of the reference
+   * @param offsets The array to put the component offsets into
+   * @exception MalformedURLException The parser for the scheme of an
+   *   absolute reference did not accept it
+   */
+  static void tokenizeReference(CharSequence spec,
+                                int start,
+                                int end,
+                                int[] offsets)
+    throws MalformedURLException
+  {
+    for(int i = 0; i < NUM_OFFSETS; i++)
+      offsets[i] = -1;
+
+    int index = start;
+    char ch = 0;
+
+    while(index < end)
+    {
+      ch = spec.charAt(index);
+
+      if(((ch >= 'a') && (ch <= 'z')) || ((ch >= 'A') && (ch <= 'Z')))
+        index++;
+      else if((index > start) &&
+              (((ch >= '0') && (ch <= '9')) ||
+               (ch == '+') || (ch == '-') || (ch == '.')))
+        index++;
+      else
+        break;
+    }
+
+    if((index > start) && (index < end) && (ch == ':'))
+    {
+      offsets[SCHEME_START] = start;
+      offsets[SCHEME_END] = index;
+
+      SchemeParser parser = URIUtils.getSchemeParser(spec, start, index);
+      parser.parse(spec, index + 1, end, offsets);
+    }
+    else
+    {
+      tokenizeRest(spec, start, end, offsets);
+    }
+  }
+
+  /**
+   * Tokenize everything after the scheme using the generic syntax. The
+   * authority, path, query and reference offsets must all have been set to
+   * -1 before calling this.
+   *
+   * @param spec The characters to parse
+   * @param index The index of the first character after the scheme
+   * @param end The index one past the last character to parse
+   * @param offsets The array to put the component offsets into
+   */
+  static void tokenizeRest(CharSequence spec,
+                           int index,
+                           int end,
+                           int[] offsets)
+  {
+    char ch = 0;
+
+    // Authority part. Only present if we have "//" immediately following
+    // the scheme. The authority runs until the next '/', '?' or '#'.
+    if((index + 1 < end) &&
+       (spec.charAt(index) == '/') &&
+       (spec.charAt(index + 1) == '/'))
+    {
+      index += 2;
+
+      int auth_start = index;
+      int user_end = -1;
+      int port_sep = -1;
+      boolean in_literal = false;
+
+      while(index < end)
+      {
+        ch = spec.charAt(index);
+
+        if((ch == '/') || (ch == '?') || (ch == '#'))
+          break;
+
+        switch(ch)
+        {
+          case '@':
+            // Only the first '@' counts. Reset anything we thought we had
+            // found as a port because that was really the password.
+            if(user_end == -1)
+            {
+              user_end = index;
+              port_sep = -1;
+            }
+            break;
+
+          case '[':
+            in_literal = true;
+            break;
+
+          case ']':
+            in_literal = false;
+            break;
+
+          case ':':
+            if(!in_literal && (port_sep == -1))
+              port_sep = index;
+            break;
+        }
+
+        index++;
+      }
+
+      int auth_end = index;
+      int host_start = auth_start;
+
+      if(user_end != -1)
+      {
+        offsets[USER_START] = auth_start;
+        offsets[USER_END] = user_end;
+        host_start = user_end + 1;
+      }
+
+      offsets[HOST_START] = host_start;
+
+      if(port_sep != -1)
+      {
+        offsets[HOST_END] = port_sep;
+        offsets[PORT_START] = port_sep + 1;
+        offsets[PORT_END] = auth_end;
+      }
+      else
+      {
+        offsets[HOST_END] = auth_end;
+      }
+    }
+
+    tokenizePath(spec, index, end, offsets);
+  }
+
+  /**
+   * Tokenize the path, query and reference. The query and reference
+   * offsets must have been set to -1 before calling this.
+   *
+   * @param spec The characters to parse
+   * @param index The index of the first character of the path
+   * @param end The index one past the last character to parse
+   * @param offsets The array to put the component offsets into
+   */
+  static void tokenizePath(CharSequence spec,
+                           int index,
+                           int end,
+                           int[] offsets)
+  {
+    char ch = 0;
+
+    // The path. Always present, even if empty.
+    offsets[PATH_START] = index;
+
+    while(index < end)
+    {
+      ch = spec.charAt(index);
+      if((ch == '?') || (ch == '#'))
+        break;
+
+      index++;
+    }
+
+    offsets[PATH_END] = index;
+
+    if((index < end) && (ch == '?'))
+    {
+      index++;
+      offsets[QUERY_START] = index;
+
+      while((index < end) && (spec.charAt(index) != '#'))
+        index++;
+
+      offsets[QUERY_END] = index;
+    }
+
+    if(index < end)
+    {
+      // must be sitting on a '#' by now.
+      offsets[REF_START] = index + 1;
+      offsets[REF_END] = end;
+    }
+  }
+
+  /**
+   * Convert the port characters of the string into a port number. If there
+   * are no port characters then -1 is returned. The digits are converted
+   * in place so that no intermediate string is needed.
+   *
+   * @param spec The source characters that were tokenized
+   * @param offsets The offsets generated for those characters
+   * @return The port number or -1 if not set
+   * @exception MalformedURLException The port contained non-digit chars
+   */
+  static int getPort(CharSequence spec, int[] offsets)
+    throws MalformedURLException
+  {
+    int start = offsets[PORT_START];
+    int end = offsets[PORT_END];
+
+    if(start >= end)
+      return -1;
+
+    int port = 0;
+
+    for(int i = start; i < end; i++)
+    {
+      char ch = spec.charAt(i);
+
+      if((ch < '0') || (ch > '9'))
+        throw new MalformedURLException("Invalid port number " +
+                                        spec.subSequence(start, end));
+
+      port = port * 10 + (ch - '0');
+
+      if(port > 0xFFFF)
+        throw new MalformedURLException("Port number out of range " +
+                                        spec.subSequence(start, end));
+    }
+
+    return port;
+  }
+
+  /**
+   * Convenience method to fetch a component of the string as a new
+   * string. If the component was not present then null is returned.
+   *
+   * @param spec The source string that was tokenized
+   * @param offsets The offsets generated for that string
+   * @param start The index constant of the start of the component
+   * @return The substring or null if not present
+   */
+  static String getComponent(String spec, int[] offsets, int start)
+  {
+    int begin = offsets[start];
+
+    return (begin == -1) ? null : spec.substring(begin, offsets[start + 1]);
+  }
+}
@@ -140,6 +140,12 @@ public final class URN extends URI
    */
   private String reference;
 
+  /**
+   * The lexically normalised form of this URN used for equality testing
+   * and hashing. Created on first use.
+   */
+  private transient String normal_form;
+
   /**
    * Creates a URN object from the string representation.
    * <P>
@@ -182,7 +188,7 @@ public final class URN extends URI
       // Now the namespace
       int nid_pos = urn.indexOf(':', 4);
 
-      namespace  = urn.substring(4, nid_pos);
+      namespace  = URIPool.intern(urn, 4, nid_pos);
 
       reference = urn.substring(nid_pos + 1);
     }
@@ -205,7 +211,7 @@ public final class URN extends URI
     if((nid == null) || (nss == null))
       throw new NullPointerException("Null portion of URN supplied");
 
-    this.namespace = nid;
+    this.namespace = URIPool.intern(nid);
     this.reference = nss;
 
     this.urn = "urn:" + nid + ':' + nss;
@@ -246,13 +252,45 @@ public final class URN extends URI
   public URL getURL()
     throws UnsupportedServiceException, IOException
   {
-    URNResolverService service =
-      RDSManager.getFirstResolver(namespace, URIResolverService.I2L);
+    CachingResolverService cache =
+      RDSManager.getCache(namespace, URIResolverService.I2L);
+    Object answer = findAnswer(cache, URIResolverService.I2L);
 
-    if(service == null)
-      throw new UnsupportedServiceException("No URL resolution is available");
+    if(answer != null)
+      return (answer == CachingResolverService.NO_ANSWER) ? null : (URL)answer;
+
+    URL ret_val;
+
+    if(ResolverExecutor.isHedged())
+    {
+      URNResolverService[] chain =
+        RDSManager.getResolvers(namespace, URIResolverService.I2L);
+
+      if(chain.length == 0)
+        throw new UnsupportedServiceException("No URL resolution is available");
+
+      ret_val = (URL)
+        ResolverExecutor.decodeFirst(this, chain, URIResolverService.I2L);
+
+      // Nothing may be because the resolvers ran out of time, so only
+      // keep a real answer.
+      if(ret_val != null)
+        keepAnswer(cache, URIResolverService.I2L, ret_val);
+    }
+    else
+    {
+      URNResolverService service =
+        RDSManager.getFirstResolver(namespace, URIResolverService.I2L);
 
-    return (URL)service.decode(this, URIResolverService.I2L);
+      if(service == null)
+        throw new UnsupportedServiceException("No URL resolution is available");
+
+      ret_val = (URL)service.decode(this, URIResolverService.I2L);
+
+      keepAnswer(cache, URIResolverService.I2L, ret_val);
+    }
+
+    return ret_val;
   }
 
   /**
@@ -270,95 +308,88 @@ public final class URN extends URI
   public URL[] getURLList()
     throws UnsupportedServiceException, IOException
   {
-    Enumeration services =
+    CachingResolverService cache =
+      RDSManager.getCache(namespace, URIResolverService.I2Ls);
+    Object answer = findAnswer(cache, URIResolverService.I2Ls);
+
+    if(answer != null)
+      return (URL[])answer;
+
+    Enumeration list_services =
       RDSManager.getAllResolvers(namespace, URIResolverService.I2Ls);
+    Enumeration services =
+      RDSManager.getAllResolvers(namespace, URIResolverService.I2L);
+
+    if((services == null) && (list_services == null))
+      throw new UnsupportedServiceException("URL lists are not available");
+
+    // Start both passes before collecting any of the answers so that in
+    // parallel mode every resolver is working at the same time.
+    ResolverExecutor.Batch list_pass =
+      ResolverExecutor.submit(this, list_services, URIResolverService.I2Ls);
+    ResolverExecutor.Batch single_pass =
+      ResolverExecutor.submit(this, services, URIResolverService.I2L);
 
-    int i;
-    boolean list_supported = (services != null);
-    URNResolverService resolver;
+    Object[] list_results = null;
+    Object[] single_results = null;
+
+    try
+    {
+      list_results = list_pass.getResults();
+      single_results = single_pass.getResults();
+    }
+    finally
+    {
+      // A failure in either pass leaves the answers of both of no use
+      if(single_results == null)
+      {
+        list_pass.discard();
+        single_pass.discard();
+      }
+    }
+
+    Object[] results = list_results;
     Object[] urls;
     LinkedList found_resources = new LinkedList();
     HashMap res_map = new HashMap();
 
-    // Loop through all of the returned services and see if they can
-    // resolve this particular URN. If they can then this is added to the
-    // list of items. If not, then it is ignored and the next call made.
-    while(services.hasMoreElements())
+    // Loop through all of the answers in order of resolver preference.
+    // Resolvers that could not handle this particular URN have no answer
+    // and are ignored.
+    for(int i = 0; i < results.length; i++)
     {
-      try
-      {
-        resolver = (URNResolverService)services.nextElement();
-      }
-      catch(NoSuchElementException nsee)
-      {
-        // we've reached the end of the list so there's no point continuing
-        // the search.
-        break;
-      }
+      urls = (Object[])results[i];
 
-      try
+      if(urls != null)
       {
-        urls = resolver.decodeList(this, URIResolverService.I2Ls);
-
-        if(urls != null)
+        // Add all of the found resources. We don't want to duplicate
+        // the outputs of two resolvers giving the same resource, so
+        // we check them before adding it to the list.
+        //
+        // This works nicely for URIs, but ResourceConnections and URCs
+        // are a bit of an unknown quantity at the moment.
+        for(int j = 0; j < urls.length; j++)
         {
-          // Add all of the found resources. We don't want to duplicate
-          // the outputs of two resolvers giving the same resource, so
-          // we check them before adding it to the list.
-          //
-          // This works nicely for URIs, but ResourceConnections and URCs
-          // are a bit of an unknown quantity at the moment.
-          for(int j = 0; j < urls.length; j++)
+          if(!res_map.containsKey(urls[j].toString()))
           {
-            if(!res_map.containsKey(urls[j].toString()))
-            {
-              found_resources.add(urls[j]);
-              res_map.put(urls[j].toString(), urls[j]);
-            }
+            found_resources.add(urls[j]);
+            res_map.put(urls[j].toString(), urls[j]);
           }
         }
       }
-      catch(UnsupportedServiceException use)
-      {
-        // ignore and move on.
-      }
     }
 
-
     // Now check to see if we can add extra using the single resource.
-    services = RDSManager.getAllResolvers(namespace, URIResolverService.I2L);
-
-    if((services == null) && !list_supported)
-      throw new UnsupportedServiceException("URL lists are not available");
-
+    results = single_results;
     Object a_url;
 
-    // This time we're looking through the list of single resolvers available
-    while(services.hasMoreElements())
+    for(int i = 0; i < results.length; i++)
     {
-      try
-      {
-        resolver = (URNResolverService)services.nextElement();
-      }
-      catch(NoSuchElementException nsee)
-      {
-        // we've reached the end of the list so there's no point continuing
-        // the search.
-        break;
-      }
-
-      try
+      a_url = results[i];
+      if((a_url != null) && !res_map.containsKey(a_url.toString()))
       {
-        a_url = resolver.decode(this, URIResolverService.I2L);
-        if((a_url != null) && !res_map.containsKey(a_url.toString()))
-        {
-          found_resources.add(a_url);
-          res_map.put(a_url.toString(), a_url);
-        }
-      }
-      catch(UnsupportedServiceException use)
-      {
-        // ignore and move on.
+        found_resources.add(a_url);
+        res_map.put(a_url.toString(), a_url);
       }
     }
 
@@ -367,6 +398,10 @@ public final class URN extends URI
     URL[] ret_val = new URL[found_resources.size()];
     found_resources.toArray(ret_val);
 
+    // A resolver that ran out of time might still have answers
+    if(list_pass.isComplete() && single_pass.isComplete())
+      keepAnswer(cache, URIResolverService.I2Ls, ret_val);
+
     return ret_val;
   }
 
@@ -381,13 +416,24 @@ public final class URN extends URI
   public URC getURC()
     throws UnsupportedServiceException, IOException
   {
+    CachingResolverService cache =
+      RDSManager.getCache(namespace, URIResolverService.I2C);
+    Object answer = findAnswer(cache, URIResolverService.I2C);
+
+    if(answer != null)
+      return (answer == CachingResolverService.NO_ANSWER) ? null : (URC)answer;
+
     URNResolverService service =
       RDSManager.getFirstResolver(namespace, URIResolverService.I2C);
 
     if(service == null)
       throw new UnsupportedServiceException("No URL resolution is available");
 
-    return (URC)service.decode(this, URIResolverService.I2C);
+    URC ret_val = (URC)service.decode(this, URIResolverService.I2C);
+
+    keepAnswer(cache, URIResolverService.I2C, ret_val);
+
+    return ret_val;
   }
 
   /**
@@ -401,80 +447,74 @@ public final class URN extends URI
   public URC[] getURCList()
     throws UnsupportedServiceException, IOException
   {
-    Enumeration services =
+    CachingResolverService cache =
+      RDSManager.getCache(namespace, URIResolverService.I2Cs);
+    Object answer = findAnswer(cache, URIResolverService.I2Cs);
+
+    if(answer != null)
+      return (URC[])answer;
+
+    Enumeration list_services =
       RDSManager.getAllResolvers(namespace, URIResolverService.I2Cs);
+    Enumeration services =
+      RDSManager.getAllResolvers(namespace, URIResolverService.I2C);
 
-    int i;
-    boolean list_supported = (services != null);
-    URNResolverService resolver;
-    Object[] urcs;
-    LinkedList found_resources = new LinkedList();
+    if((services == null) && (list_services == null))
+      throw new UnsupportedServiceException("URC lists are not available");
+
+    // Start both passes before collecting any of the answers so that in
+    // parallel mode every resolver is working at the same time.
+    ResolverExecutor.Batch list_pass =
+      ResolverExecutor.submit(this, list_services, URIResolverService.I2Cs);
+    ResolverExecutor.Batch single_pass =
+      ResolverExecutor.submit(this, services, URIResolverService.I2C);
+
+    Object[] list_results = null;
+    Object[] single_results = null;
 
-    // Loop through all of the returned services and see if they can
-    // resolve this particular URN. If they can then this is added to the
-    // list of items. If not, then it is ignored and the next call made.
-    while(services.hasMoreElements())
+    try
     {
-      try
-      {
-        resolver = (URNResolverService)services.nextElement();
-      }
-      catch(NoSuchElementException nsee)
+      list_results = list_pass.getResults();
+      single_results = single_pass.getResults();
+    }
+    finally
+    {
+      // A failure in either pass leaves the answers of both of no use
+      if(single_results == null)
       {
-        // we've reached the end of the list so there's no point continuing
-        // the search.
-        break;
+        list_pass.discard();
+        single_pass.discard();
       }
+    }
 
-      try
-      {
-        urcs = resolver.decodeList(this, URIResolverService.I2Cs);
+    Object[] results = list_results;
+    Object[] urcs;
+    LinkedList found_resources = new LinkedList();
 
-        if(urcs != null)
-        {
-          // GRRRR. Need to write an ArrayCollection to make this easy.
-          for(int j = 0; j < urcs.length; j++)
-            found_resources.add(urcs[j]);
-        }
-      }
-      catch(UnsupportedServiceException use)
+    // Loop through all of the answers in order of resolver preference.
+    // Resolvers that could not handle this particular URN have no answer
+    // and are ignored.
+    for(int i = 0; i < results.length; i++)
+    {
+      urcs = (Object[])results[i];
+
+      if(urcs != null)
       {
-        // ignore and move on.
+        // GRRRR. Need to write an ArrayCollection to make this easy.
+        for(int j = 0; j < urcs.length; j++)
+          found_resources.add(urcs[j]);
       }
     }
 
     // Now check to see if we can add extra using the single resource.
-    services = RDSManager.getAllResolvers(namespace, URIResolverService.I2C);
-
-    if((services == null) && !list_supported)
-      throw new UnsupportedServiceException("URC lists are not available");
-
+    results = single_results;
     Object a_urc;
 
-    // This time we're looking through the list of single resolvers available
-    while(services.hasMoreElements())
+    for(int i = 0; i < results.length; i++)
     {
-      try
-      {
-        resolver = (URNResolverService)services.nextElement();
-      }
-      catch(NoSuchElementException nsee)
-      {
-        // we've reached the end of the list so there's no point continuing
-        // the search.
-        break;
-      }
-
-      try
-      {
-        a_urc = resolver.decode(this, URIResolverService.I2C);
-        if((a_urc != null) && !found_resources.contains(a_urc))
-          found_resources.add(a_urc);
-      }
-      catch(UnsupportedServiceException use)
-      {
-        // ignore and move on.
-      }
+      a_urc = results[i];
+      if((a_urc != null) && !found_resources.contains(a_urc))
+        found_resources.add(a_urc);
     }
 
     // Now this is all done, just turn the linked list into an array and
@@ -482,6 +522,10 @@ public final class URN extends URI
     URC[] ret_val = new URC[found_resources.size()];
     found_resources.toArray(ret_val);
 
+    // A resolver that ran out of time might still have answers
+    if(list_pass.isComplete() && single_pass.isComplete())
+      keepAnswer(cache, URIResolverService.I2Cs, ret_val);
+
     return ret_val;
   }
 
@@ -512,79 +556,74 @@ public final class URN extends URI
   public URN[] getURNList()
     throws UnsupportedServiceException, IOException
   {
-    Enumeration services =
+    CachingResolverService cache =
+      RDSManager.getCache(namespace, URIResolverService.I2Ns);
+    Object answer = findAnswer(cache, URIResolverService.I2Ns);
+
+    if(answer != null)
+      return (URN[])answer;
+
+    Enumeration list_services =
       RDSManager.getAllResolvers(namespace, URIResolverService.I2Ns);
+    Enumeration services =
+      RDSManager.getAllResolvers(namespace, URIResolverService.I2N);
 
-    int i;
-    boolean list_supported = (services != null);
-    URNResolverService resolver;
-    Object[] urns;
-    LinkedList found_resources = new LinkedList();
+    if((services == null) && (list_services == null))
+      throw new UnsupportedServiceException("URN lists are not available");
+
+    // Start both passes before collecting any of the answers so that in
+    // parallel mode every resolver is working at the same time.
+    ResolverExecutor.Batch list_pass =
+      ResolverExecutor.submit(this, list_services, URIResolverService.I2Ns);
+    ResolverExecutor.Batch single_pass =
+      ResolverExecutor.submit(this, services, URIResolverService.I2N);
+
+    Object[] list_results = null;
+    Object[] single_results = null;
 
-    // Loop through all of the returned services and see if they can
-    // resolve this particular URN. If they can then this is added to the
-    // list of items. If not, then it is ignored and the next call made.
-    while(services.hasMoreElements())
+    try
     {
-      try
-      {
-        resolver = (URNResolverService)services.nextElement();
-      }
-      catch(NoSuchElementException nsee)
+      list_results = list_pass.getResults();
+      single_results = single_pass.getResults();
+    }
+    finally
+    {
+      // A failure in either pass leaves the answers of both of no use
+      if(single_results == null)
       {
-        // we've reached the end of the list so there's no point continuing
-        // the search.
-        break;
+        list_pass.discard();
+        single_pass.discard();
       }
+    }
 
-      try
-      {
-        urns = resolver.decodeList(this, URIResolverService.I2Ns);
-        if(urns != null)
-        {
-          // GRRRR. Need to write an ArrayCollection to make this easy.
-          for(int j = 0; j < urns.length; j++)
-            found_resources.add(urns[j]);
-        }
-      }
-      catch(UnsupportedServiceException use)
+    Object[] results = list_results;
+    Object[] urns;
+    LinkedList found_resources = new LinkedList();
+
+    // Loop through all of the answers in order of resolver preference.
+    // Resolvers that could not handle this particular URN have no answer
+    // and are ignored.
+    for(int i = 0; i < results.length; i++)
+    {
+      urns = (Object[])results[i];
+
+      if(urns != null)
       {
-        // ignore and move on.
+        // GRRRR. Need to write an ArrayCollection to make this easy.
+        for(int j = 0; j < urns.length; j++)
+          found_resources.add(urns[j]);
       }
     }
 
     // Now check to see if we can add extra using the single resource.
-    services = RDSManager.getAllResolvers(namespace, URIResolverService.I2N);
-
-    if((services == null) && !list_supported)
-      throw new UnsupportedServiceException("URN lists are not available");
-
+    results = single_results;
     Object a_urn;
 
-    // This time we're looking through the list of single resolvers available
-    while(services.hasMoreElements())
+    for(int i = 0; i < results.length; i++)
     {
-      try
-      {
-        resolver = (URNResolverService)services.nextElement();
-      }
-      catch(NoSuchElementException nsee)
-      {
-        // we've reached the end of the list so there's no point continuing
-        // the search.
-        break;
-      }
-
-      try
-      {
-        a_urn = resolver.decode(this, URIResolverService.I2N);
-        if(a_urn != null)
-          found_resources.add(a_urn);
-      }
-      catch(UnsupportedServiceException use)
-      {
-        // ignore and move on.
-      }
+      a_urn = results[i];
+      if(a_urn != null)
+        found_resources.add(a_urn);
     }
 
     // Now this is all done, just turn the linked list into an array and
@@ -592,6 +631,10 @@ public final class URN extends URI
     URN[] ret_val = new URN[found_resources.size()];
     found_resources.toArray(ret_val);
 
+    // A resolver that ran out of time might still have answers
+    if(list_pass.isComplete() && single_pass.isComplete())
+      keepAnswer(cache, URIResolverService.I2Ns, ret_val);
+
     return ret_val;
   }
 
@@ -610,6 +653,18 @@ public final class URN extends URI
   public ResourceConnection getResource()
     throws UnsupportedServiceException, IOException
   {
+    if(ResolverExecutor.isHedged())
+    {
+      URNResolverService[] chain =
+        RDSManager.getResolvers(namespace, URIResolverService.I2R);
+
+      if(chain.length == 0)
+        throw new UnsupportedServiceException("No URL resolution is available");
+
+      return (ResourceConnection)
+        ResolverExecutor.decodeFirst(this, chain, URIResolverService.I2R);
+    }
+
     URNResolverService service =
       RDSManager.getFirstResolver(namespace, URIResolverService.I2R);
 
@@ -634,79 +689,67 @@ public final class URN extends URI
   public ResourceConnection[] getResourceList()
     throws UnsupportedServiceException, IOException
   {
-    Enumeration services =
+    Enumeration list_services =
       RDSManager.getAllResolvers(namespace, URIResolverService.I2Rs);
+    Enumeration services =
+      RDSManager.getAllResolvers(namespace, URIResolverService.I2R);
 
-    int i;
-    boolean list_supported = (services != null);
-    URNResolverService resolver;
-    Object[] res_list;
-    LinkedList found_resources = new LinkedList();
+    if((services == null) && (list_services == null))
+      throw new UnsupportedServiceException("Resource lists are not available");
+
+    // Start both passes before collecting any of the answers so that in
+    // parallel mode every resolver is working at the same time.
+    ResolverExecutor.Batch list_pass =
+      ResolverExecutor.submit(this, list_services, URIResolverService.I2Rs);
+    ResolverExecutor.Batch single_pass =
+      ResolverExecutor.submit(this, services, URIResolverService.I2R);
 
-    // Loop through all of the returned services and see if they can
-    // resolve this particular URN. If they can then this is added to the
-    // list of items. If not, then it is ignored and the next call made.
-    while(services.hasMoreElements())
+    Object[] list_results = null;
+    Object[] single_results = null;
+
+    try
     {
-      try
-      {
-        resolver = (URNResolverService)services.nextElement();
-      }
-      catch(NoSuchElementException nsee)
+      list_results = list_pass.getResults();
+      single_results = single_pass.getResults();
+    }
+    finally
+    {
+      // A failure in either pass leaves the answers of both of no use
+      if(single_results == null)
       {
-        // we've reached the end of the list so there's no point continuing
-        // the search.
-        break;
+        list_pass.discard();
+        single_pass.discard();
       }
+    }
 
-      try
-      {
-        res_list = resolver.decodeList(this, URIResolverService.I2Rs);
-        if(res_list != null)
-        {
-          // GRRRR. Need to write an ArrayCollection to make this easy.
-          for(int j = 0; j < res_list.length; j++)
-            found_resources.add(res_list[j]);
-        }
-      }
-      catch(UnsupportedServiceException use)
+    Object[] results = list_results;
+    Object[] res_list;
+    LinkedList found_resources = new LinkedList();
+
+    // Loop through all of the answers in order of resolver preference.
+    // Resolvers that could not handle this particular URN have no answer
+    // and are ignored.
+    for(int i = 0; i < results.length; i++)
+    {
+      res_list = (Object[])results[i];
+
+      if(res_list != null)
       {
-        // ignore and move on.
+        // GRRRR. Need to write an ArrayCollection to make this easy.
+        for(int j = 0; j < res_list.length; j++)
+          found_resources.add(res_list[j]);
       }
     }
 
     // Now check to see if we can add extra using the single resource.
-    services = RDSManager.getAllResolvers(namespace, URIResolverService.I2R);
-
-    if((services == null) && !list_supported)
-      throw new UnsupportedServiceException("Resource lists are not available");
-
+    results = single_results;
     Object a_res;
 
-    // This time we're looking through the list of single resolvers available
-    while(services.hasMoreElements())
+    for(int i = 0; i < results.length; i++)
     {
-      try
-      {
-        resolver = (URNResolverService)services.nextElement();
-      }
-      catch(NoSuchElementException nsee)
-      {
-        // we've reached the end of the list so there's no point continuing
-        // the search.
-        break;
-      }
-
-      try
-      {
-        a_res = resolver.decode(this, URIResolverService.I2R);
-        if(a_res != null)
-          found_resources.add(a_res);
-      }
-      catch(UnsupportedServiceException use)
-      {
-        // ignore and move on.
-      }
+      a_res = results[i];
+      if(a_res != null)
+        found_resources.add(a_res);
     }
 
     // Now this is all done, just turn the linked list into an array and
@@ -719,6 +762,33 @@ public final class URN extends URI
     return ret_val;
   }
 
+  /**
+   * Fetch the answer kept by the cache for this URN.
+   *
+   * @param cache The cache to ask. May be null
+   * @param service The type of object wanted
+   * @return The kept answer, NO_ANSWER or null if nothing is kept
+   */
+  private Object findAnswer(CachingResolverService cache, int service)
+  {
+    return (cache == null) ? null : cache.lookup(this, service);
+  }
+
+  /**
+   * Hand the answer found by the resolvers to the cache to keep.
+   *
+   * @param cache The cache to keep the answer in. May be null
+   * @param service The type of object that was wanted
+   * @param answer The answer found. May be null
+   */
+  private void keepAnswer(CachingResolverService cache,
+                          int service,
+                          Object answer)
+  {
+    if(cache != null)
+      cache.store(this, service, answer);
+  }
+
   /**
    * Create a string representation of the URI.
    *
@@ -758,11 +828,82 @@ public final class URN extends URI
     if(!(uri instanceof URN))
       return false;
 
+    if(uri == this)
+      return true;
+
     URN other = (URN)uri;
 
-    // very simplistic implementation for the moment.
-    return (other.namespace.equals(namespace) &&
-            other.reference.equals(reference));
+    return getNormalForm().equals(other.getNormalForm());
+  }
+
+  /**
+   * Creates an integer suitable for hash table indexing. The value is
+   * based on the normalised form of the URN so that it is consistent with
+   * <CODE>equals()</CODE>.
+   *
+   * @return A hash code for this URN
+   */
+  public int hashCode()
+  {
+    return getNormalForm().hashCode();
+  }
+
+  /**
+   * Fetch the lexically normalised version of this URN as described in
+   * RFC 2141 section 5. The leading "urn:" and the NID are case folded to
+   * lower case and the hex digits of any %-escapes in the NSS are converted
+   * to upper case. The rest of the NSS is left untouched as it is case
+   * sensitive. The value is calculated once and then cached. No locking is
+   * needed because every thread would calculate the same string.
+   *
+   * @return The normalised string form
+   */
+  private String getNormalForm()
+  {
+    String ret_val = normal_form;
+
+    if(ret_val != null)
+      return ret_val;
+
+    int nid_len = namespace.length();
+    int nss_len = reference.length();
+    char[] chars = new char[nid_len + nss_len + 5];
+
+    chars[0] = 'u';
+    chars[1] = 'r';
+    chars[2] = 'n';
+    chars[3] = ':';
+
+    for(int i = 0; i < nid_len; i++)
+      chars[i + 4] = Character.toLowerCase(namespace.charAt(i));
+
+    int pos = nid_len + 4;
+    chars[pos++] = ':';
+
+    reference.getChars(0, nss_len, chars, pos);
+
+    for(int i = pos; i < chars.length - 2; i++)
+    {
+      if((chars[i] == '%') &&
+         (Character.digit(chars[i + 1], 16) != -1) &&
+         (Character.digit(chars[i + 2], 16) != -1))
+      {
+        chars[i + 1] = Character.toUpperCase(chars[i + 1]);
+        chars[i + 2] = Character.toUpperCase(chars[i + 2]);
+        i += 2;
+      }
+    }
+
+    ret_val = new String(chars);
+
+    // Most URNs are already written in normal form. Keep the original
+    // string rather than holding two copies of the same characters.
+    if(ret_val.equals(urn))
+      ret_val = urn;
+
+    normal_form = ret_val;
+
+    return ret_val;
   }
 
   /**
@@ -798,4 +939,45 @@ public final class URN extends URI
   {
       RDSManager.removeURNResolver(resolver);
   }
+
+  /**
+   * Turn on or off asking all of the resolvers at once when fetching a
+   * list of resolutions. When on, the answers are still combined in the
+   * order of resolver preference. The default is taken from the
+   * <CODE>urn.resolve.parallel</CODE> system property.
+   *
+   * @param enable true to ask all of the resolvers at once
+   */
+  public static void setParallelResolution(boolean enable)
+  {
+    ResolverExecutor.setParallel(enable);
+  }
+
+  /**
+   * Set the delay before the next resolver is also asked when fetching a
+   * single URL or resource. The first resolver to answer is used and the
+   * rest are cancelled. A resolver that fails or has no answer causes the
+   * next one to be asked straight away. The default is taken from the
+   * <CODE>urn.resolve.hedge.delay</CODE> system property.
+   *
+   * @param millis The delay in milliseconds. Negative only ever asks the
+   *   most preferred resolver
+   */
+  public static void setHedgeDelay(long millis)
+  {
+    ResolverExecutor.setHedgeDelay(millis);
+  }
+
+  /**
+   * Set how long to wait for each resolver when more than one is being
+   * asked at once. A resolver that has not answered in this time is ignored.
+   * The default is taken from the <CODE>urn.resolve.timeout</CODE> system
+   * property.
+   *
+   * @param millis The time in milliseconds. Zero or less waits forever
+   */
+  public static void setResolverTimeout(long millis)
+  {
+    ResolverExecutor.setTimeout(millis);
+  }
 }
@@ -0,0 +1,402 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+
+package org.ietf.uri.resolve.cache;
+
+// Standard imports
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Application specific imports
+import org.ietf.uri.CachingResolverService;
+import org.ietf.uri.URIResourceFactory;
+import org.ietf.uri.URN;
+
+/**
+ * A URN resolver that remembers the answers given by the other resolvers.
+ * <P>
+ *
+ * The resolver is loaded using the name <CODE>cache</CODE> in the resolve
+ * order. It is not asked to resolve anything itself. The answer found by
+ * the other resolvers for each URN and service is kept so that repeated
+ * lookups do not need to go back to them. Lists are kept as they are
+ * after the answers of every resolver have been joined together. Not
+ * finding an answer is remembered as well.
+ * <P>
+ *
+ * Answers are kept for <CODE>urn.resolve.cache.ttl</CODE> milliseconds
+ * (default 5 minutes, zero or less keeps them until they are pushed out).
+ * At most <CODE>urn.resolve.cache.size</CODE> answers (default 500) are
+ * kept, with the least recently used being thrown away first. Resource
+ * connections cannot be shared, so requests for resources are never kept.
+ * <P>
+ *
+ * For details on URIs see the IETF working group:
+ * <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * <P>
+ *
+ * This softare is released under the
+ * <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <P>
+ *
+ * DISCLAIMER:<BR>
+ * This software is the under development, incomplete, and is
+ * known to contain bugs. This software is made available for
+ * review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical
+ * applications.
+ * <P>
+ *
+ * Portions of the APIs for some new features have not
+ * been finalized and APIs may change. Some features are
+ * not fully implemented in this release. Use at your own risk.
+ * <P>
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+public class Resolver
+  implements CachingResolverService
+{
+  /** Property defining how long an answer is kept, in milliseconds */
+  private static final String TTL_PROP = "urn.resolve.cache.ttl";
+
+  /** Property defining the maximum number of answers kept */
+  private static final String SIZE_PROP = "urn.resolve.cache.size";
+
+  /** The default time to keep an answer, in milliseconds */
+  private static final long DEFAULT_TTL = 5 * 60 * 1000;
+
+  /** The default maximum number of answers kept */
+  private static final int DEFAULT_SIZE = 500;
+
+  /**
+   * Key for the kept answers, made of a URN and a service type.
+   */
+  private static final class Key
+  {
+    /** The URN that was resolved */
+    private final URN urn;
+
+    /** The service that was requested */
+    private final int service;
+
+    /**
+     * Create a new key for the URN and service.
+     *
+     * @param urn The URN that was resolved
+     * @param service The service that was requested
+     */
+    Key(URN urn, int service)
+    {
+      this.urn = urn;
+      this.service = service;
+    }
+
+    /**
+     * Compare this key to another for equality.
+     *
+     * @param o The object to compare against
+     * @return true if both the URN and service match
+     */
+    public boolean equals(Object o)
+    {
+      if(!(o instanceof Key))
+        return false;
+
+      Key other = (Key)o;
+
+      return (service == other.service) && urn.equals(other.urn);
+    }
+
+    /**
+     * Generate a hash code from the URN and service.
+     *
+     * @return The hash code for this key
+     */
+    public int hashCode()
+    {
+      return urn.hashCode() * 31 + service;
+    }
+  }
+
+  /**
+   * An answer along with the time that it stops being valid.
+   */
+  private static final class Answer
+  {
+    /** The answer, which may be NO_ANSWER */
+    final Object value;
+
+    /** The time the answer expires. Zero or less never expires */
+    final long expiry;
+
+    /**
+     * Create a new answer.
+     *
+     * @param value The answer, which may be NO_ANSWER
+     * @param expiry The time the answer expires
+     */
+    Answer(Object value, long expiry)
+    {
+      this.value = value;
+      this.expiry = expiry;
+    }
+  }
+
+  /**
+   * Map of the answers, kept in order of use so that the least recently
+   * used answer is dropped once the size limit is reached.
+   */
+  private static final class AnswerMap extends LinkedHashMap
+  {
+    /** The maximum number of answers to keep */
+    private final int max_size;
+
+    /**
+     * Create a new map holding at most the given number of answers.
+     *
+     * @param size The maximum number of answers to keep
+     */
+    AnswerMap(int size)
+    {
+      super(16, 0.75f, true);
+      max_size = size;
+    }
+
+    /**
+     * Drop the least recently used answer once the map is full.
+     *
+     * @param eldest The least recently used entry
+     * @return true if the entry should be removed
+     */
+    protected boolean removeEldestEntry(Map.Entry eldest)
+    {
+      return size() > max_size;
+    }
+  }
+
+  /** The kept answers. Access must be synchronized on the map */
+  private AnswerMap answers;
+
+  /** The time to keep an answer. Zero or less keeps them forever */
+  private long ttl;
+
+  /**
+   * Read the size and time to live settings from the system properties.
+   */
+  public void init()
+  {
+    long time = DEFAULT_TTL;
+    int size = DEFAULT_SIZE;
+
+    try
+    {
+      String prop = System.getProperty(TTL_PROP);
+
+      if(prop != null)
+        time = Long.parseLong(prop.trim());
+
+      prop = System.getProperty(SIZE_PROP);
+
+      if(prop != null)
+        size = Integer.parseInt(prop.trim());
+    }
+    catch(SecurityException se)
+    {
+      // if we can't read it, then ignore it. Use the default.
+    }
+    catch(NumberFormatException nfe)
+    {
+      System.err.println("Invalid URN cache setting: " + nfe);
+    }
+
+    ttl = time;
+    answers = new AnswerMap((size < 1) ? 1 : size);
+  }
+
+  /**
+   * Resources are created by the other resolvers, so the factory is not
+   * needed.
+   *
+   * @param fac The factory to be set.
+   */
+  public void setResourceFactory(URIResourceFactory fac)
+  {
+  }
+
+  /**
+   * Check that the service is one that answers can be kept for. All of the
+   * URI, URC and URN services are supported.
+   *
+   * @param type The type of service required
+   * @return true if the answers for the nominated type can be kept.
+   */
+  public boolean checkService(int type)
+  {
+    boolean ret_val = false;
+
+    switch(type)
+    {
+      case I2L:
+      case I2Ls:
+      case I2C:
+      case I2Cs:
+      case I2N:
+      case I2Ns:
+        ret_val = true;
+        break;
+
+      case I2R:
+      case I2Rs:
+      case II:
+        ret_val = false;
+        break;
+    }
+
+    return ret_val;
+  }
+
+  /**
+   * Any namespace can be cached. If none of the other resolvers can handle
+   * a namespace, there is never an answer to keep.
+   *
+   * @param nid The namespace identifier to check
+   * @return true always
+   */
+  public boolean canResolve(String nid)
+  {
+    return true;
+  }
+
+  /**
+   * The cache does not resolve anything itself, so there is never an
+   * answer.
+   *
+   * @param urn The URN that this service should decode.
+   * @param service The type of object that should be returned
+   * @return null
+   */
+  public Object decode(URN urn, int service)
+  {
+    return null;
+  }
+
+  /**
+   * The cache does not resolve anything itself, so there is never an
+   * answer.
+   *
+   * @param urn The URN that this service should decode.
+   * @param service The type of object that should be returned
+   * @return null
+   */
+  public Object[] decodeList(URN urn, int service)
+  {
+    return null;
+  }
+
+  /**
+   * Fetch the answer kept for the URN and service. A kept list is copied
+   * so that callers can't change what is kept.
+   *
+   * @param urn The URN to be resolved
+   * @param service The type of object wanted
+   * @return The kept answer, NO_ANSWER if it is known that there is no
+   *   answer, or null if nothing is kept
+   */
+  public Object lookup(URN urn, int service)
+  {
+    if(!checkService(service))
+      return null;
+
+    Object ret_val = getAnswer(new Key(urn, service));
+
+    if(ret_val instanceof Object[])
+      ret_val = ((Object[])ret_val).clone();
+
+    return ret_val;
+  }
+
+  /**
+   * Keep the answer found for the URN and service. A list is copied so
+   * that callers can't change what is kept.
+   *
+   * @param urn The URN that was resolved
+   * @param service The type of object that was wanted
+   * @param answer The answer found. Null if there was no answer
+   */
+  public void store(URN urn, int service, Object answer)
+  {
+    if(!checkService(service))
+      return;
+
+    if(answer instanceof Object[])
+      answer = ((Object[])answer).clone();
+
+    putAnswer(new Key(urn, service), answer);
+  }
+
+  /**
+   * Throw away all of the kept answers.
+   */
+  public void clear()
+  {
+    synchronized(answers)
+    {
+      answers.clear();
+    }
+  }
+
+  /**
+   * Fetch a kept answer that has not yet expired.
+   *
+   * @param key The URN and service to look for
+   * @return The answer, NO_ANSWER or null if nothing is kept
+   */
+  private Object getAnswer(Key key)
+  {
+    synchronized(answers)
+    {
+      Answer answer = (Answer)answers.get(key);
+
+      if(answer == null)
+        return null;
+
+      if((answer.expiry > 0) && (System.currentTimeMillis() >= answer.expiry))
+      {
+        answers.remove(key);
+        return null;
+      }
+
+      return answer.value;
+    }
+  }
+
+  /**
+   * Keep an answer for the URN and service.
+   *
+   * @param key The URN and service the answer is for
+   * @param value The answer, which may be null
+   */
+  private void putAnswer(Key key, Object value)
+  {
+    long expiry = (ttl > 0) ? System.currentTimeMillis() + ttl : 0;
+    Answer answer = new Answer((value == null) ? NO_ANSWER : value, expiry);
+
+    synchronized(answers)
+    {
+      answers.put(key, answer);
+    }
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+
+package org.ietf.uri;
+
+// Standard imports
+import junit.framework.TestCase;
+
+// Application specific imports
+// none
+
+/**
+ * Resolves the examples of RFC 3986 section 5.4 against their base URL,
+ * both through the builder directly and through the URL constructor that
+ * takes a context.
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+public class URLBuilderTest extends TestCase
+{
+  /** The base URL that all of the examples are resolved against */
+  private static final String BASE = "http://a/b/c/d;p?q";
+
+  /** Reference and expected result pairs from section 5.4.1 */
+  private static final String[][] NORMAL = {
+    { "g:h",     "g:h" },
+    { "g",       "http://a/b/c/g" },
+    { "./g",     "http://a/b/c/g" },
+    { "g/",      "http://a/b/c/g/" },
+    { "/g",      "http://a/g" },
+    { "//g",     "http://g" },
+    { "?y",      "http://a/b/c/d;p?y" },
+    { "g?y",     "http://a/b/c/g?y" },
+    { "#s",      "http://a/b/c/d;p?q#s" },
+    { "g#s",     "http://a/b/c/g#s" },
+    { "g?y#s",   "http://a/b/c/g?y#s" },
+    { ";x",      "http://a/b/c/;x" },
+    { "g;x",     "http://a/b/c/g;x" },
+    { "g;x?y#s", "http://a/b/c/g;x?y#s" },
+    { "",        "http://a/b/c/d;p?q" },
+    { ".",       "http://a/b/c/" },
+    { "./",      "http://a/b/c/" },
+    { "..",      "http://a/b/" },
+    { "../",     "http://a/b/" },
+    { "../g",    "http://a/b/g" },
+    { "../..",   "http://a/" },
+    { "../../",  "http://a/" },
+    { "../../g", "http://a/g" }
+  };
+
+  /** Reference and expected result pairs from section 5.4.2 */
+  private static final String[][] ABNORMAL = {
+    { "../../../g",    "http://a/g" },
+    { "../../../../g", "http://a/g" },
+    { "/./g",          "http://a/g" },
+    { "/../g",         "http://a/g" },
+    { "g.",            "http://a/b/c/g." },
+    { ".g",            "http://a/b/c/.g" },
+    { "g..",           "http://a/b/c/g.." },
+    { "..g",           "http://a/b/c/..g" },
+    { "./../g",        "http://a/b/g" },
+    { "./g/.",         "http://a/b/c/g/" },
+    { "g/./h",         "http://a/b/c/g/h" },
+    { "g/../h",        "http://a/b/c/h" },
+    { "g;x=1/./y",     "http://a/b/c/g;x=1/y" },
+    { "g;x=1/../y",    "http://a/b/c/y" },
+    { "g?y/./x",       "http://a/b/c/g?y/./x" },
+    { "g?y/../x",      "http://a/b/c/g?y/../x" },
+    { "g#s/./x",       "http://a/b/c/g#s/./x" },
+    { "g#s/../x",      "http://a/b/c/g#s/../x" },
+    { "http:g",        "http:g" }
+  };
+
+  /**
+   * Resolve a reference against the base in strict mode.
+   *
+   * @param ref The reference to resolve
+   * @return The resolved URL
+   */
+  private static String resolve(String ref)
+    throws Exception
+  {
+    URLBuilder builder = new URLBuilder();
+
+    builder.parse(BASE);
+    builder.resolve(ref);
+
+    return builder.toString();
+  }
+
+  /**
+   * Check each pair of reference and expected result.
+   *
+   * @param examples The pairs to check
+   */
+  private static void checkExamples(String[][] examples)
+    throws Exception
+  {
+    for(int i = 0; i < examples.length; i++)
+      assertEquals(examples[i][0], examples[i][1], resolve(examples[i][0]));
+  }
+
+  /**
+   * The normal examples of section 5.4.1.
+   */
+  public void testNormalExamples()
+    throws Exception
+  {
+    checkExamples(NORMAL);
+  }
+
+  /**
+   * The abnormal examples of section 5.4.2.
+   */
+  public void testAbnormalExamples()
+    throws Exception
+  {
+    checkExamples(ABNORMAL);
+  }
+
+  /**
+   * One builder can resolve many references in turn without being parsed
+   * again, each time against the previous result.
+   */
+  public void testResolveInTurn()
+    throws Exception
+  {
+    URLBuilder builder = new URLBuilder();
+
+    builder.parse(BASE);
+    builder.resolve("g/h/");
+    builder.resolve("../i?x");
+    builder.resolve("#f");
+
+    assertEquals("http://a/b/c/g/i?x#f", builder.toString());
+  }
+
+  /**
+   * When not strict, a reference with the same scheme as the base is taken
+   * as relative, while a different scheme still makes it absolute.
+   */
+  public void testNonStrictSameScheme()
+    throws Exception
+  {
+    URLBuilder builder = new URLBuilder();
+
+    builder.parse(BASE);
+    builder.resolve("http:g", 0, 6, false);
+    assertEquals("http://a/b/c/g", builder.toString());
+
+    builder.parse(BASE);
+    builder.resolve("HTTP:../g", 0, 9, false);
+    assertEquals("http://a/b/g", builder.toString());
+
+    builder.parse(BASE);
+    builder.resolve("g:h", 0, 3, false);
+    assertEquals("g:h", builder.toString());
+  }
+
+  /**
+   * The URL constructor taking a context resolves in the non-strict way.
+   */
+  public void testURLWithContext()
+    throws Exception
+  {
+    URL base = new URL(BASE);
+
+    for(int i = 0; i < NORMAL.length; i++)
+    {
+      URL url = new URL(base, NORMAL[i][0]);
+
+      assertEquals(NORMAL[i][0], NORMAL[i][1], url.toExternalForm());
+    }
+
+    URL url = new URL(base, "http:g");
+
+    assertEquals("http://a/b/c/g", url.toExternalForm());
+    assertEquals("a", url.getHost());
+    assertEquals("/b/c/g", url.getPath());
+  }
+}
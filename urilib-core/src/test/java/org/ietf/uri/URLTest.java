@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+
+package org.ietf.uri;
+
+// Standard imports
+import java.net.MalformedURLException;
+
+import junit.framework.TestCase;
+
+// Application specific imports
+// none
+
+/**
+ * Parses URL strings with the single pass tokenizer and checks the parts
+ * that come out, concentrating on the places where it differs from the
+ * older string splitting parser.
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+public class URLTest extends TestCase
+{
+  /**
+   * All of the parts of a hierarchical URL are found.
+   */
+  public void testAllParts()
+    throws Exception
+  {
+    URL url = new URL("HTTP://host.example:8080/a/b?q=1#frag");
+
+    assertEquals("http", url.getProtocol());
+    assertEquals("host.example", url.getHost());
+    assertEquals(8080, url.getPort());
+    assertEquals("/a/b", url.getPath());
+    assertEquals("q=1", url.getQuery());
+    assertEquals("frag", url.getRef());
+  }
+
+  /**
+   * The user info is kept in the external form.
+   */
+  public void testUserInfoKept()
+    throws Exception
+  {
+    String spec = "http://user:pw@host.example/p?q#r";
+    URL url = new URL(spec);
+
+    assertEquals("host.example", url.getHost());
+    assertEquals(spec, url.toExternalForm());
+  }
+
+  /**
+   * Only the first '#' starts the reference. Any later ones belong to it.
+   */
+  public void testReferenceWithHash()
+    throws Exception
+  {
+    URL url = new URL("http://host.example/a#b#c");
+
+    assertEquals("/a", url.getPath());
+    assertEquals("b#c", url.getRef());
+  }
+
+  /**
+   * IPv6 literal hosts are parsed with their brackets, and the colons in
+   * them are not taken as the start of the port.
+   */
+  public void testIPv6Host()
+    throws Exception
+  {
+    URL url = new URL("http://[::1]:8080/p");
+
+    assertEquals("[::1]", url.getHost());
+    assertEquals(8080, url.getPort());
+    assertEquals("/p", url.getPath());
+
+    url = new URL("http://[2001:db8::7]/x");
+
+    assertEquals("[2001:db8::7]", url.getHost());
+    assertEquals(80, url.getPort());
+    assertEquals("http://[2001:db8::7]/x", url.toExternalForm());
+  }
+
+  /**
+   * A port that is not a number, or is too big, is rejected.
+   */
+  public void testBadPort()
+  {
+    try
+    {
+      new URL("http://host.example:80a/");
+      fail("Port with letters accepted");
+    }
+    catch(MalformedURLException mue)
+    {
+      // expected
+    }
+
+    try
+    {
+      new URL("http://host.example:99999999999/");
+      fail("Port out of range accepted");
+    }
+    catch(MalformedURLException mue)
+    {
+      // expected
+    }
+  }
+
+  /**
+   * An empty port gives the default port of the scheme.
+   */
+  public void testEmptyPort()
+    throws Exception
+  {
+    assertEquals(80, new URL("http://host.example:/").getPort());
+  }
+
+  /**
+   * A single slash after the scheme starts an absolute path, not a host.
+   */
+  public void testAbsolutePathWithoutHost()
+    throws Exception
+  {
+    URL url = new URL("http:/abs/path");
+
+    assertNull(url.getHost());
+    assertEquals("/abs/path", url.getPath());
+    assertEquals("http:/abs/path", url.toExternalForm());
+  }
+}
@@ -0,0 +1,586 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+
+package org.ietf.uri;
+
+// Standard imports
+import java.net.MalformedURLException;
+
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+// Application specific imports
+import org.ietf.uri.resolve.cache.Resolver;
+
+/**
+ * Resolves URNs using the shipped <CODE>urn.conf</CODE>, which puts the
+ * cache in front of the file resolver, with a locally registered resolver
+ * as well so that there are two resolvers to ask.
+ * <P>
+ *
+ * The file resolver lives in urilib-net, so a stand in is supplied under
+ * that name through the resolver factory. The cache is the real one found
+ * through the resolver index.
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+public class URNResolveTest extends TestCase
+{
+  /** The namespace both test resolvers answer for */
+  private static final String NID = "urilibtest";
+
+  /** The locally registered resolver */
+  private static final TestResolver local_resolver = new TestResolver("local");
+
+  /** The resolver supplied for the file entry of urn.conf */
+  private static final TestResolver file_resolver = new TestResolver("file");
+
+  /** The namespace of the resolvers used to fill the thread pool */
+  private static final String STUCK_NID = "urilibstuck";
+
+  /** The first resolver for the stuck namespace, which can be held up */
+  private static final TestResolver stuck_resolver =
+    new TestResolver("stuck", STUCK_NID);
+
+  /** The second resolver for the stuck namespace */
+  private static final TestResolver quick_resolver =
+    new TestResolver("quick", STUCK_NID);
+
+  /** Set once the resolvers have been registered */
+  private static boolean registered;
+
+  /**
+   * A resolver that answers with URLs made from its name and the NSS.
+   * List answers also include a URL shared by every instance.
+   */
+  private static class TestResolver implements URNResolverService
+  {
+    /** The name used to build the URLs */
+    private final String name;
+
+    /** The namespace this resolver answers for */
+    private final String nid;
+
+    /** Count of the requests made to this resolver */
+    final AtomicInteger calls = new AtomicInteger();
+
+    /**
+     * If set, single requests wait for this before answering, ignoring
+     * interrupts like a blocking read would
+     */
+    volatile CountDownLatch single_gate;
+
+    /** If set, list requests count this down and then wait for it */
+    volatile CountDownLatch list_gate;
+
+    /** Set when a list request found every other one waiting as well */
+    volatile boolean overlapped;
+
+    /**
+     * Create a resolver with the given name for the test namespace.
+     *
+     * @param name The name used to build the URLs
+     */
+    TestResolver(String name)
+    {
+      this(name, NID);
+    }
+
+    /**
+     * Create a resolver with the given name for a namespace.
+     *
+     * @param name The name used to build the URLs
+     * @param nid The namespace to answer for
+     */
+    TestResolver(String name, String nid)
+    {
+      this.name = name;
+      this.nid = nid;
+    }
+
+    public void init()
+    {
+    }
+
+    public void setResourceFactory(URIResourceFactory fac)
+    {
+    }
+
+    public boolean checkService(int type)
+    {
+      return (type == I2L) || (type == I2Ls);
+    }
+
+    public boolean canResolve(String nid)
+    {
+      return this.nid.equals(nid);
+    }
+
+    public Object decode(URN urn, int service)
+      throws UnsupportedServiceException
+    {
+      if(service != I2L)
+        throw new UnsupportedServiceException("Only URLs");
+
+      calls.incrementAndGet();
+
+      CountDownLatch gate = single_gate;
+
+      if(gate != null)
+        awaitQuietly(gate);
+
+      try
+      {
+        return new URL("http://" + name + ".example/" + urn.getNSS());
+      }
+      catch(MalformedURLException mue)
+      {
+        return null;
+      }
+    }
+
+    public Object[] decodeList(URN urn, int service)
+      throws UnsupportedServiceException
+    {
+      if(service != I2Ls)
+        throw new UnsupportedServiceException("Only URL lists");
+
+      calls.incrementAndGet();
+
+      CountDownLatch gate = list_gate;
+
+      try
+      {
+        if(gate != null)
+        {
+          gate.countDown();
+          overlapped = gate.await(5, TimeUnit.SECONDS);
+        }
+
+        URL[] ret_val = {
+          new URL("http://" + name + ".example/list/" + urn.getNSS()),
+          new URL("http://shared.example/" + urn.getNSS())
+        };
+
+        return ret_val;
+      }
+      catch(InterruptedException ie)
+      {
+        return null;
+      }
+      catch(MalformedURLException mue)
+      {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * A connection that counts how many of its kind are opened and closed.
+   */
+  private static class CountedConnection extends ResourceConnection
+  {
+    /** Count of the connections made */
+    static final AtomicInteger opened = new AtomicInteger();
+
+    /** Count of the connections closed */
+    static final AtomicInteger closed = new AtomicInteger();
+
+    CountedConnection(URI uri)
+    {
+      super(uri);
+      opened.incrementAndGet();
+    }
+
+    public void connect()
+    {
+    }
+
+    public void close()
+    {
+      closed.incrementAndGet();
+    }
+  }
+
+  /**
+   * A resolver that hands out resource connections for its own namespace.
+   * Every request other than a broken list waits for the gate, ignoring
+   * interrupts like a blocking read would. A broken resolver fails its
+   * list once all of the others have started.
+   */
+  private static class ResourceResolver implements URNResolverService
+  {
+    /** True if list requests fail */
+    private final boolean broken;
+
+    /** Counted down by each waiting request as it starts */
+    volatile CountDownLatch started;
+
+    /** Released to let the waiting requests answer */
+    volatile CountDownLatch gate;
+
+    /**
+     * Create a resolver that either answers or fails its lists.
+     *
+     * @param broken true if list requests fail
+     */
+    ResourceResolver(boolean broken)
+    {
+      this.broken = broken;
+    }
+
+    public void init()
+    {
+    }
+
+    public void setResourceFactory(URIResourceFactory fac)
+    {
+    }
+
+    public boolean checkService(int type)
+    {
+      return (type == I2R) || (type == I2Rs);
+    }
+
+    public boolean canResolve(String nid)
+    {
+      return RESOURCE_NID.equals(nid);
+    }
+
+    public Object decode(URN urn, int service)
+      throws UnsupportedServiceException
+    {
+      if(service != I2R)
+        throw new UnsupportedServiceException("Only resources");
+
+      hold();
+
+      return new CountedConnection(urn);
+    }
+
+    public Object[] decodeList(URN urn, int service)
+      throws UnsupportedServiceException
+    {
+      if(service != I2Rs)
+        throw new UnsupportedServiceException("Only resource lists");
+
+      if(broken)
+      {
+        awaitQuietly(started);
+        throw new IllegalStateException("Broken resolver");
+      }
+
+      hold();
+
+      ResourceConnection[] ret_val = { new CountedConnection(urn) };
+
+      return ret_val;
+    }
+
+    /**
+     * Note the start of a request and wait for the gate.
+     */
+    private void hold()
+    {
+      started.countDown();
+      awaitQuietly(gate);
+    }
+  }
+
+  /** The namespace the resource resolvers answer for */
+  private static final String RESOURCE_NID = "urilibresource";
+
+  /** The resource resolver that fails its lists, asked first */
+  private static final ResourceResolver broken_resolver =
+    new ResourceResolver(true);
+
+  /** The resource resolver that answers, asked second */
+  private static final ResourceResolver working_resolver =
+    new ResourceResolver(false);
+
+  /**
+   * Wait for the latch to open, carrying on through any interrupts.
+   *
+   * @param latch The latch to wait for
+   */
+  private static void awaitQuietly(CountDownLatch latch)
+  {
+    boolean interrupted = false;
+
+    while(true)
+    {
+      try
+      {
+        latch.await();
+        break;
+      }
+      catch(InterruptedException ie)
+      {
+        interrupted = true;
+      }
+    }
+
+    if(interrupted)
+      Thread.currentThread().interrupt();
+  }
+
+  /**
+   * Register the test resolvers the first time through.
+   */
+  public void setUp()
+  {
+    synchronized(URNResolveTest.class)
+    {
+      if(!registered)
+      {
+        URI.setURIResolverServiceFactory(new URIResolverServiceFactory()
+        {
+          public URIResolverService findResolverService(String type)
+          {
+            return "file".equals(type) ? file_resolver : null;
+          }
+        });
+
+        URN.addResolver(local_resolver);
+        URN.addResolver(stuck_resolver);
+        URN.addResolver(quick_resolver);
+        URN.addResolver(broken_resolver);
+        URN.addResolver(working_resolver);
+        registered = true;
+      }
+    }
+
+    local_resolver.calls.set(0);
+    file_resolver.calls.set(0);
+  }
+
+  /**
+   * Put the resolution settings back to their defaults.
+   */
+  public void tearDown()
+  {
+    URN.setParallelResolution(false);
+    URN.setHedgeDelay(-1);
+
+    local_resolver.single_gate = null;
+    local_resolver.list_gate = null;
+    file_resolver.single_gate = null;
+    file_resolver.list_gate = null;
+    stuck_resolver.single_gate = null;
+  }
+
+  /**
+   * The shipped urn.conf is the one in use.
+   */
+  public void testShippedOrder()
+  {
+    Enumeration order = RDSManager.listResolverTypesOrder();
+    ArrayList names = new ArrayList();
+
+    while(order.hasMoreElements())
+      names.add(order.nextElement());
+
+    assertEquals("cache", names.get(0));
+    assertEquals("file", names.get(1));
+  }
+
+  /**
+   * Both resolvers are in the chain and the cache sits beside it.
+   */
+  public void testChainHoldsBothResolvers()
+    throws Exception
+  {
+    URNResolverService[] chain =
+      RDSManager.getResolvers(NID, URIResolverService.I2L);
+
+    assertEquals(2, chain.length);
+    assertSame(local_resolver, chain[0]);
+    assertSame(file_resolver, chain[1]);
+
+    Enumeration all = RDSManager.getAllResolvers(NID, URIResolverService.I2Ls);
+    int count = 0;
+
+    while(all.hasMoreElements())
+    {
+      assertFalse(all.nextElement() instanceof CachingResolverService);
+      count++;
+    }
+
+    assertEquals(2, count);
+    assertTrue(RDSManager.getCache(NID, URIResolverService.I2L) instanceof Resolver);
+    assertNull(RDSManager.getCache(NID, URIResolverService.I2R));
+  }
+
+  /**
+   * A URL list joins the answers of both resolvers, and the joined list
+   * comes from the cache the second time.
+   */
+  public void testListsMergedAndCached()
+    throws Exception
+  {
+    URN urn = new URN(NID, "merged");
+    URL[] urls = urn.getURLList();
+
+    assertEquals(5, urls.length);
+    assertEquals("http://local.example/list/merged", urls[0].toString());
+    assertEquals("http://shared.example/merged", urls[1].toString());
+    assertEquals("http://file.example/list/merged", urls[2].toString());
+    assertEquals("http://local.example/merged", urls[3].toString());
+    assertEquals("http://file.example/merged", urls[4].toString());
+
+    int calls = local_resolver.calls.get() + file_resolver.calls.get();
+    assertEquals(4, calls);
+
+    URL[] again = urn.getURLList();
+
+    assertEquals(5, again.length);
+    assertEquals(calls, local_resolver.calls.get() + file_resolver.calls.get());
+
+    for(int i = 0; i < urls.length; i++)
+      assertEquals(urls[i].toString(), again[i].toString());
+  }
+
+  /**
+   * A single URL comes from the most preferred resolver once and then from
+   * the cache.
+   */
+  public void testSingleCached()
+    throws Exception
+  {
+    URN urn = new URN(NID, "single");
+
+    assertEquals("http://local.example/single", urn.getURL().toString());
+    assertEquals("http://local.example/single", urn.getURL().toString());
+    assertEquals(1, local_resolver.calls.get());
+    assertEquals(0, file_resolver.calls.get());
+  }
+
+  /**
+   * In parallel mode both resolvers are asked for their lists at once.
+   */
+  public void testParallelLists()
+    throws Exception
+  {
+    CountDownLatch gate = new CountDownLatch(2);
+
+    local_resolver.list_gate = gate;
+    file_resolver.list_gate = gate;
+    URN.setParallelResolution(true);
+
+    URL[] urls = new URN(NID, "parallel").getURLList();
+
+    assertTrue(local_resolver.overlapped);
+    assertTrue(file_resolver.overlapped);
+    assertEquals(5, urls.length);
+  }
+
+  /**
+   * When hedged, a stuck first resolver does not stop the second one from
+   * answering.
+   */
+  public void testHedged()
+    throws Exception
+  {
+    CountDownLatch stuck = new CountDownLatch(1);
+
+    local_resolver.single_gate = stuck;
+    URN.setHedgeDelay(50);
+
+    try
+    {
+      URL url = new URN(NID, "hedged").getURL();
+
+      assertEquals("http://file.example/hedged", url.toString());
+    }
+    finally
+    {
+      stuck.countDown();
+    }
+  }
+
+  /**
+   * Hedged requests still move on to the next resolver once every thread
+   * in the pool is held by a resolver that does not answer.
+   */
+  public void testHedgedPastFullPool()
+    throws Exception
+  {
+    CountDownLatch stuck = new CountDownLatch(1);
+
+    stuck_resolver.single_gate = stuck;
+    URN.setHedgeDelay(20);
+
+    try
+    {
+      // Each request leaves a thread behind, well past the default pool size
+      for(int i = 0; i < 40; i++)
+      {
+        URL url = new URN(STUCK_NID, "busy" + i).getURL();
+
+        assertEquals("http://quick.example/busy" + i, url.toString());
+      }
+    }
+    finally
+    {
+      stuck.countDown();
+    }
+  }
+
+  /**
+   * When a list resolver fails in parallel mode, every connection made by
+   * the other requests is closed once they finish.
+   */
+  public void testFailedListClosesConnections()
+    throws Exception
+  {
+    // broken single, working single and working list all wait on the gate
+    CountDownLatch started = new CountDownLatch(3);
+    CountDownLatch gate = new CountDownLatch(1);
+
+    broken_resolver.started = started;
+    broken_resolver.gate = gate;
+    working_resolver.started = started;
+    working_resolver.gate = gate;
+    URN.setParallelResolution(true);
+
+    try
+    {
+      new URN(RESOURCE_NID, "failed").getResourceList();
+      fail("The broken resolver did not fail the request");
+    }
+    catch(IllegalStateException ise)
+    {
+      // expected
+    }
+    finally
+    {
+      gate.countDown();
+    }
+
+    long end = System.currentTimeMillis() + 5000;
+
+    while((CountedConnection.closed.get() < 3) &&
+          (System.currentTimeMillis() < end))
+      Thread.sleep(10);
+
+    assertEquals(3, CountedConnection.opened.get());
+    assertEquals(3, CountedConnection.closed.get());
+  }
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+package vlc.net.resolve.file;
+
+// Standard imports
+import java.io.*;
+
+import java.net.URISyntaxException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+
+// Application specific imports
+import org.ietf.uri.resolve.ConfigErrorException;
+
+/**
+ * Reader and writer of the compiled form of the URN bindings file.
+ * <p/>
+ * Parsing a large bindings file is slow. Every line goes through the tokeniser and every
+ * regular expression is compiled before the resolver can answer anything. The compiled
+ * index holds the same namespaces, groups and resources with each substitution already
+ * split into its regex, replacement and flags parts, all checked when the index was
+ * written. Reading it back is a straight walk through the bytes, and the regular
+ * expressions are only compiled when a URN first needs them.
+ * <p/>
+ * The index is created by running this class over a bindings file:
+ * <pre>
+ *   java vlc.net.resolve.file.BindingsIndex urn_bindings [urn_bindings.idx]
+ * </pre>
+ * When no output name is given, <CODE>.idx</CODE> is added to the input name. The
+ * resolver uses the index in place of the bindings file when it is found next to it
+ * and is not older than it. The index must be built again whenever the bindings file
+ * is changed.
+ * <p/>
+ * The format is a sequence of big-endian values. It starts with a magic number and
+ * version, followed by the number of namespaces. Each namespace is its NID, the three
+ * parts of its group substitution and the number of groups. Each group is its name and
+ * the number of resources, and each resource is its URL and the three parts of its
+ * substitution. Strings are written as a byte count and UTF-8 bytes, with a count of
+ * -1 for a missing string.
+ * <p/>
+ * <p/>
+ * For details on URIs see the IETF working group: <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * The specification on a File based RDS implementation may be found at <A
+ * HREF="http://www.vlc.com.au/~justin/java/urn/file_based_resolver.html">
+ * http://www.vlc.com.au/~justin/java/urn/file_based_resolver.html</A>
+ * <p/>
+ * <p/>
+ * This softare is released under the <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <p/>
+ * <p/>
+ * DISCLAIMER:<BR> This software is the under development, incomplete, and is known to contain bugs.
+ * This software is made available for review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical applications.
+ * <p/>
+ * <p/>
+ * Portions of the APIs for some new features have not been finalized and APIs may change. Some
+ * features are not fully implemented in this release. Use at your own risk.
+ * <p/>
+ *
+ * @author Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+public class BindingsIndex
+{
+    /** The extension added to the bindings file name to give the index name */
+    static final String INDEX_EXT = ".idx";
+
+    /** The number every index starts with. "URNI" in ASCII */
+    private static final int MAGIC = 0x55524E49;
+
+    /** The version of the format written by this class */
+    private static final int VERSION = 1;
+
+    /** The character encoding used for all strings */
+    private static final String ENCODING = "UTF-8";
+
+    /** Error message for an index that has been cut short or is damaged */
+    private static final String CORRUPT_MSG = "Corrupt URN bindings index";
+
+    /** Static class only. Don't allow instances */
+    private BindingsIndex()
+    {
+    }
+
+    /**
+     * Read an index from the given location. A local file is mapped into memory and read
+     * directly. Anything else is read from the stream.
+     *
+     * @param url The location of the index
+     * @param is The stream opened on the location
+     * @return A map of the NID to the namespace resolver for it
+     * @throws IOException The index could not be read or is damaged
+     * @throws ConfigErrorException One of the substitutions is not valid
+     */
+    static HashMap read(java.net.URL url, InputStream is)
+        throws IOException, ConfigErrorException
+    {
+        ByteBuffer buffer = null;
+
+        if("file".equals(url.getProtocol()))
+        {
+            File file = null;
+
+            try
+            {
+                file = new File(url.toURI());
+            }
+            catch(URISyntaxException use)
+            {
+                // fall through and read it as a stream
+            }
+            catch(IllegalArgumentException iae)
+            {
+                // fall through and read it as a stream
+            }
+
+            if(file != null)
+            {
+                RandomAccessFile raf = new RandomAccessFile(file, "r");
+
+                try
+                {
+                    FileChannel channel = raf.getChannel();
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                }
+                finally
+                {
+                    raf.close();
+                }
+            }
+        }
+
+        if(buffer == null)
+        {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] block = new byte[8192];
+            int count;
+
+            while((count = is.read(block)) != -1)
+                bytes.write(block, 0, count);
+
+            buffer = ByteBuffer.wrap(bytes.toByteArray());
+        }
+
+        try
+        {
+            return read(buffer);
+        }
+        catch(BufferUnderflowException bue)
+        {
+            throw new IOException(CORRUPT_MSG);
+        }
+    }
+
+    /**
+     * Build the namespace resolvers from the bytes of an index.
+     *
+     * @param buffer The bytes of the index
+     * @return A map of the NID to the namespace resolver for it
+     * @throws IOException The index is not in the right format
+     * @throws ConfigErrorException One of the substitutions is not valid
+     */
+    private static HashMap read(ByteBuffer buffer)
+        throws IOException, ConfigErrorException
+    {
+        if(buffer.getInt() != MAGIC)
+            throw new IOException("Not a URN bindings index");
+
+        int version = buffer.getInt();
+
+        if(version != VERSION)
+            throw new IOException("Unsupported URN bindings index version " + version);
+
+        int nid_count = buffer.getInt();
+        HashMap ret_val = new HashMap(nid_count * 2);
+        byte[] scratch = new byte[256];
+
+        try
+        {
+            for(int i = 0; i < nid_count; i++)
+            {
+                NamespaceResolver resolver =
+                    new NamespaceResolver(readString(buffer, scratch));
+
+                SubstitutionRegex nid_regex = readRegex(buffer, scratch);
+
+                if(nid_regex != null)
+                    resolver.setNidRegex(nid_regex);
+
+                int grp_count = buffer.getInt();
+
+                for(int j = 0; j < grp_count; j++)
+                {
+                    resolver.addGroup(readString(buffer, scratch));
+
+                    int res_count = buffer.getInt();
+
+                    for(int k = 0; k < res_count; k++)
+                    {
+                        String url = readString(buffer, scratch);
+                        resolver.addResource(url, readRegex(buffer, scratch));
+                    }
+                }
+
+                ret_val.put(resolver.getNID(), resolver);
+            }
+        }
+        catch(InvalidRegexException ire)
+        {
+            throw new ConfigErrorException(ire.getMessage());
+        }
+        catch(NoSuchGroupException nsge)
+        {
+            // can't happen as a group is always added first
+            throw new IOException(CORRUPT_MSG);
+        }
+        catch(NullPointerException npe)
+        {
+            // a missing string where one is needed
+            throw new IOException(CORRUPT_MSG);
+        }
+
+        return ret_val;
+    }
+
+    /**
+     * Read the three parts of a substitution and build it.
+     *
+     * @param buffer The bytes to read from
+     * @param scratch A working array for decoding strings
+     * @return The substitution or null if none was written
+     * @throws IOException The index is damaged
+     * @throws InvalidRegexException The replacement is not valid
+     */
+    private static SubstitutionRegex readRegex(ByteBuffer buffer, byte[] scratch)
+        throws IOException, InvalidRegexException
+    {
+        String regex = readString(buffer, scratch);
+        String replacement = readString(buffer, scratch);
+        String flags = readString(buffer, scratch);
+
+        if(regex == null)
+            return null;
+
+        return new SubstitutionRegex(regex, replacement, flags);
+    }
+
+    /**
+     * Read a single string.
+     *
+     * @param buffer The bytes to read from
+     * @param scratch A working array for decoding strings
+     * @return The string or null if it was missing
+     * @throws IOException The index is damaged
+     */
+    private static String readString(ByteBuffer buffer, byte[] scratch)
+        throws IOException
+    {
+        int len = buffer.getInt();
+
+        if(len == -1)
+            return null;
+
+        if((len < 0) || (len > buffer.remaining()))
+            throw new IOException(CORRUPT_MSG);
+
+        if(buffer.hasArray())
+        {
+            int start = buffer.arrayOffset() + buffer.position();
+            buffer.position(buffer.position() + len);
+
+            return new String(buffer.array(), start, len, ENCODING);
+        }
+
+        byte[] bytes = (len <= scratch.length) ? scratch : new byte[len];
+        buffer.get(bytes, 0, len);
+
+        return new String(bytes, 0, len, ENCODING);
+    }
+
+    /**
+     * Write the index for the given namespace resolvers.
+     *
+     * @param resolvers A map of the NID to the namespace resolver for it
+     * @param os The stream to write to
+     * @throws IOException There was an error writing
+     */
+    static void write(HashMap resolvers, OutputStream os)
+        throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(resolvers.size());
+
+        Iterator itr = resolvers.values().iterator();
+
+        while(itr.hasNext())
+        {
+            NamespaceResolver resolver = (NamespaceResolver)itr.next();
+            GroupResource[] groups = resolver.getGroups();
+
+            writeString(out, resolver.getNID());
+            writeRegex(out, resolver.getNidRegex());
+            out.writeInt(groups.length);
+
+            for(int i = 0; i < groups.length; i++)
+            {
+                Resource[] resources = groups[i].getResources();
+
+                writeString(out, groups[i].getName());
+                out.writeInt(resources.length);
+
+                for(int j = 0; j < resources.length; j++)
+                {
+                    writeString(out, resources[j].getURL());
+                    writeRegex(out, resources[j].getRegex());
+                }
+            }
+        }
+
+        out.flush();
+    }
+
+    /**
+     * Write the three parts of a substitution.
+     *
+     * @param out The stream to write to
+     * @param regex The substitution to write. May be null
+     * @throws IOException There was an error writing
+     */
+    private static void writeRegex(DataOutputStream out, SubstitutionRegex regex)
+        throws IOException
+    {
+        if(regex == null)
+        {
+            writeString(out, null);
+            writeString(out, null);
+            writeString(out, null);
+        }
+        else
+        {
+            writeString(out, regex.getRegex());
+            writeString(out, regex.getReplacement());
+            writeString(out, regex.getFlags());
+        }
+    }
+
+    /**
+     * Write a single string.
+     *
+     * @param out The stream to write to
+     * @param str The string to write. May be null
+     * @throws IOException There was an error writing
+     */
+    private static void writeString(DataOutputStream out, String str)
+        throws IOException
+    {
+        if(str == null)
+        {
+            out.writeInt(-1);
+        }
+        else
+        {
+            byte[] bytes = str.getBytes(ENCODING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Compile a bindings file into an index. The first argument is the bindings file and the
+     * optional second argument is the index file to write.
+     *
+     * @param args The command line arguments
+     */
+    public static void main(String[] args)
+    {
+        if((args.length < 1) || (args.length > 2))
+        {
+            System.err.println("Usage: BindingsIndex bindings_file [index_file]");
+            System.exit(1);
+        }
+
+        String out_name = (args.length == 2) ? args[1] : args[0] + INDEX_EXT;
+
+        try
+        {
+            HashMap resolvers;
+            InputStream is = new FileInputStream(args[0]);
+
+            try
+            {
+                resolvers = FileParser.parseBindingsFile(is);
+            }
+            finally
+            {
+                is.close();
+            }
+
+            OutputStream os = new FileOutputStream(out_name);
+
+            try
+            {
+                write(resolvers, os);
+            }
+            finally
+            {
+                os.close();
+            }
+
+            System.out.println("Wrote " + resolvers.size() + " namespaces to " + out_name);
+        }
+        catch(IOException ioe)
+        {
+            System.err.println("Unable to compile " + args[0] + ": " + ioe);
+            System.exit(1);
+        }
+        catch(ConfigErrorException cee)
+        {
+            System.err.println("Error in " + args[0] + ": " + cee.getMessage());
+            System.exit(1);
+        }
+    }
+}
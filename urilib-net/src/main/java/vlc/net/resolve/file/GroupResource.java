@@ -15,10 +15,15 @@ package vlc.net.resolve.file;
 
 // Standard imports
 
-import java.net.MalformedURLException;
 import java.util.ArrayList;
-
-import gnu.regexp.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 // Application specific imports
 import org.ietf.uri.*;
@@ -30,6 +35,11 @@ import org.ietf.uri.*;
  * The holder class does all the manipulation required for each group. On setup, it does validity
  * checking of all data. On query, it generates the completed URLs as required.
  * <p/>
+ * Very large groups may be split up so that several threads generate the URLs at once. The system
+ * property <CODE>urn.bindings.parallel.size</CODE> gives the number of resources a group must have
+ * before this is done. It is not done at all by default. The results are always in the order of
+ * preference, and a request for only the first few results stops as soon as it has them.
+ * <p/>
  * <p/>
  * For details on URIs see the IETF working group: <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
  * The specification on a File based RDS implementation may be found at <A
@@ -54,10 +64,55 @@ import org.ietf.uri.*;
  */
 class GroupResource
 {
+    /** Property defining the group size at which resolving is split across threads */
+    private static final String PARALLEL_PROP = "urn.bindings.parallel.size";
+
+    /** The smallest number of resources worth handing to another thread */
+    private static final int MIN_CHUNK = 16;
+
+    /** Time an idle thread is kept around, in seconds */
+    private static final long IDLE_TIME = 60;
+
+    /** The group size at which resolving is split across threads. Zero or less never splits */
+    private static final int parallel_size;
+
+    /** The number of pieces a large group is split into */
+    private static final int max_chunks;
+
+    /** The pool of threads shared by all groups. Created the first time it is needed */
+    private static ThreadPoolExecutor executor;
+
     private String group;
 
     private ArrayList resource_list;
 
+    /**
+     * Static initialiser to read the settings from the system properties.
+     */
+    static
+    {
+        int size = 0;
+
+        try
+        {
+            String prop = System.getProperty(PARALLEL_PROP);
+
+            if(prop != null)
+                size = Integer.parseInt(prop.trim());
+        }
+        catch(SecurityException se)
+        {
+            // if we can't read it, then ignore it. Don't split.
+        }
+        catch(NumberFormatException nfe)
+        {
+            System.err.println("Invalid value for " + PARALLEL_PROP + ": " + nfe);
+        }
+
+        parallel_size = size;
+        max_chunks = Runtime.getRuntime().availableProcessors();
+    }
+
     /**
      * Create a resource holder for the nominated group.
      *
@@ -92,19 +147,60 @@ class GroupResource
     }
 
     /**
-     * Fetch just a single version of the resource. This takes the resource from the top of the list,
-     * generates the appropriate fully qualified URL and returns that value.
+     * Add a resource with a substitution that has already been built.
+     *
+     * @param url The core Url string to use
+     * @param regex The substitution for this resource
+     */
+    void addResource(String url, SubstitutionRegex regex)
+    {
+        resource_list.add(new Resource(url, regex));
+    }
+
+    /**
+     * Get the name of this group.
+     *
+     * @return The group identifier
+     */
+    String getName()
+    {
+        return group;
+    }
+
+    /**
+     * Get the resources of this group in order of preference.
+     *
+     * @return The list of resources
+     */
+    Resource[] getResources()
+    {
+        Resource[] ret_val = new Resource[resource_list.size()];
+        resource_list.toArray(ret_val);
+
+        return ret_val;
+    }
+
+    /**
+     * Fetch just a single version of the resource. This takes the first resource in order of
+     * preference that matches the URN and returns the fully qualified URL it generates.
      *
      * @param urn The urn that we need to rip apart
-     * @return The fully qualified URL matching this URN.
-     * @throws MalformedURLException An erroroneous URL was created
+     * @return The fully qualified URL matching this URN or null if no resource matches
      */
     String resolveSingle(String urn)
-        throws MalformedURLException
     {
-        Resource res = (Resource)resource_list.get(0);
+        int size = resource_list.size();
+
+        for(int i = 0; i < size; i++)
+        {
+            Resource res = (Resource)resource_list.get(i);
+            String url = res.resolve(urn);
 
-        return res.resolve(urn);
+            if(url != null)
+                return url;
+        }
+
+        return null;
     }
 
     /**
@@ -116,37 +212,208 @@ class GroupResource
      */
     String[] resolveAll(String urn)
     {
-        int i, size;
-        int ret_cnt = 0;
+        return resolveAll(urn, 0);
+    }
+
+    /**
+     * Fetch up to the given number of resources for this URN, in order of preference. No more
+     * resources are looked at once that many have matched. Large groups are split across
+     * threads if that has been asked for.
+     *
+     * @param urn The urn that we need to rip apart
+     * @param max The most URLs to return. Zero or less returns all of them
+     * @return The fully qualified URLs matching this URN.
+     */
+    String[] resolveAll(String urn, int max)
+    {
+        int size = resource_list.size();
+
+        if((max <= 0) || (max > size))
+            max = size;
+
+        int chunks = Math.min(max_chunks, size / MIN_CHUNK);
+
+        // Small requests are likely to be met by the first piece alone, so
+        // handing out the rest would only add work.
+        if((parallel_size <= 0) || (size < parallel_size) || (chunks < 2) ||
+           (max <= size / chunks))
+            return new ResolveTask(urn, 0, size, max).call();
 
-        size = resource_list.size();
-        String[] ret_vals = new String[size];
-        String url;
-        Resource res;
+        // Hand all but the first piece to the pool and work on the first
+        // piece here. The pieces are collected in order so that the
+        // results stay in order of preference.
+        ResolveTask[] tasks = new ResolveTask[chunks];
+        Future[] futures = new Future[chunks];
+        ThreadPoolExecutor pool = getExecutor();
 
-        for(i = 0; i < size; i++)
+        for(int i = 0; i < chunks; i++)
+            tasks[i] = new ResolveTask(urn, size * i / chunks, size * (i + 1) / chunks, max);
+
+        for(int i = 1; i < chunks; i++)
+            futures[i] = pool.submit(tasks[i]);
+
+        String[][] results = new String[chunks][];
+        int found = 0;
+
+        for(int i = 0; i < chunks; i++)
         {
-            try
-            {
-                res = (Resource)resource_list.get(i);
-                url = res.resolve(urn);
-                ret_vals[ret_cnt++] = url;
-            }
-            catch(MalformedURLException mue)
+            if(found >= max)
             {
-                // ignore it because we'll move to the next one
+                tasks[i].cancelled = true;
+                futures[i].cancel(false);
+                continue;
             }
+
+            results[i] = (i == 0) ? tasks[i].call() : waitFor(futures[i], tasks[i]);
+            found += results[i].length;
         }
 
-        // quick check to see if we need to reallocate the size of the array
-        // that is being returned.
-        if(ret_cnt != size)
+        String[] ret_vals = new String[Math.min(found, max)];
+        int ret_cnt = 0;
+
+        for(int i = 0; (i < chunks) && (ret_cnt < ret_vals.length); i++)
         {
-            String[] tmp = new String[ret_cnt];
-            System.arraycopy(ret_vals, 0, tmp, 0, ret_cnt);
-            ret_vals = tmp;
+            if(results[i] == null)
+                continue;
+
+            int count = Math.min(results[i].length, ret_vals.length - ret_cnt);
+            System.arraycopy(results[i], 0, ret_vals, ret_cnt, count);
+            ret_cnt += count;
         }
 
         return ret_vals;
     }
+
+    /**
+     * Wait for a piece of the group to be finished by the pool. If the wait is interrupted the
+     * piece is worked out on this thread instead.
+     *
+     * @param future The future for the piece
+     * @param task The task that works out the piece
+     * @return The URLs from that piece of the group
+     */
+    private static String[] waitFor(Future future, ResolveTask task)
+    {
+        try
+        {
+            return (String[])future.get();
+        }
+        catch(InterruptedException ie)
+        {
+            Thread.currentThread().interrupt();
+            return task.call();
+        }
+        catch(ExecutionException ee)
+        {
+            Throwable cause = ee.getCause();
+
+            if(cause instanceof RuntimeException)
+                throw (RuntimeException)cause;
+
+            throw (Error)cause;
+        }
+    }
+
+    /**
+     * Fetch the shared pool of threads, creating it if needed. The threads are daemons so that
+     * they never hold up the application exiting.
+     *
+     * @return The thread pool
+     */
+    private static synchronized ThreadPoolExecutor getExecutor()
+    {
+        if(executor == null)
+        {
+            ThreadFactory factory = new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "URN Bindings " + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            };
+
+            executor = new ThreadPoolExecutor(0,
+                                              max_chunks,
+                                              IDLE_TIME,
+                                              TimeUnit.SECONDS,
+                                              new SynchronousQueue(),
+                                              factory,
+                                              new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+
+        return executor;
+    }
+
+    /**
+     * Works out the URLs for one piece of the resource list.
+     */
+    private class ResolveTask
+        implements Callable
+    {
+        /** The URN to resolve */
+        private final String urn;
+
+        /** The index of the first resource to look at */
+        private final int start;
+
+        /** The index one past the last resource to look at */
+        private final int end;
+
+        /** The most URLs to find */
+        private final int max;
+
+        /** Set when the results of this piece are no longer wanted */
+        volatile boolean cancelled;
+
+        /**
+         * Create a task for the given piece of the list.
+         *
+         * @param urn The URN to resolve
+         * @param start The index of the first resource
+         * @param end The index one past the last resource
+         * @param max The most URLs to find
+         */
+        ResolveTask(String urn, int start, int end, int max)
+        {
+            this.urn = urn;
+            this.start = start;
+            this.end = end;
+            this.max = max;
+        }
+
+        /**
+         * Generate the URLs of every resource in the piece that matches.
+         *
+         * @return The URLs in order of preference
+         */
+        public String[] call()
+        {
+            String[] ret_vals = new String[Math.min(end - start, max)];
+            int ret_cnt = 0;
+
+            for(int i = start; (i < end) && (ret_cnt < ret_vals.length) && !cancelled; i++)
+            {
+                Resource res = (Resource)resource_list.get(i);
+                String url = res.resolve(urn);
+
+                if(url != null)
+                    ret_vals[ret_cnt++] = url;
+            }
+
+            // quick check to see if we need to reallocate the size of the array
+            // that is being returned.
+            if(ret_cnt != ret_vals.length)
+            {
+                String[] tmp = new String[ret_cnt];
+                System.arraycopy(ret_vals, 0, tmp, 0, ret_cnt);
+                ret_vals = tmp;
+            }
+
+            return ret_vals;
+        }
+    }
 }
@@ -15,11 +15,8 @@ package vlc.net.resolve.file;
 
 // Standard imports
 
-import java.net.MalformedURLException;
 import java.util.HashMap;
 
-import gnu.regexp.*;
-
 // Application specific imports
 import org.ietf.uri.*;
 import org.ietf.uri.resolve.UnknownNIDException;
@@ -65,9 +62,8 @@ public class NamespaceResolver
 {
     private String nid;
 
-    // stuff for the regular expression handling.
-    private RE grp_regex;
-    private String replacement;
+    /** The regular expression to extract the group name from the URN */
+    private SubstitutionRegex grp_regex;
 
     private HashMap groups_list;
 
@@ -99,69 +95,40 @@ public class NamespaceResolver
     void setNidRegex(String regex)
         throws InvalidRegexException
     {
-        int i;
-        RE re;
-        REMatch[] matches;
-        boolean check_case = true;
-
-        char delimiter = regex.charAt(0);
-        String tokenizer_regex =
-            "^" + delimiter + "(.*)" + delimiter + "(.*)" + delimiter + "(.*)" + "$";
-
-        try
-        {
-            re = new RE(tokenizer_regex, 0, RESyntax.RE_SYNTAX_POSIX_EXTENDED);
-
-            // Check the syntax to first make sure that the regex that has been
-            // passed in is in fact of the correct form. If not, then barf.
-            matches = re.getAllMatches(regex);
-
-            if(matches.length == 0)
-            {
-                System.out.println("Invalid RE syntax");
-                throw new InvalidRegexException("Invalid pattern");
-            }
-
-            regex = matches[0].substituteInto("$1");
-            replacement = matches[0].substituteInto("$2");
-            String flag_str = matches[0].substituteInto("$3");
-
-            boolean case_sensitive = (flag_str != null) && (flag_str.equals("i"));
-
-            if(case_sensitive)
-                grp_regex = new RE(regex, 0, RESyntax.RE_SYNTAX_POSIX_EXTENDED);
-            else
-                grp_regex = new RE(regex, RE.REG_ICASE, RESyntax.RE_SYNTAX_POSIX_EXTENDED);
-
-            // Check the repl string for '\' characters and replace them with '$'
-            // We do this the hard way in the raw character array as it is much
-            // faster and less likely to get the RE stuff confused.
-            int len = replacement.length();
-            char[] repl_chars = new char[len];
-            replacement.getChars(0, len, repl_chars, 0);
-
-            len--;  // stop one before the end with the checks
-
-            for(i = 0; i < len; i++)
-            {
-                if(repl_chars[i] == '\\')
-                {
-                    // quick check for legality
-                    if((!Character.isDigit(repl_chars[i + 1])) || (repl_chars[i + 1] == '0'))
-                        throw new InvalidRegexException(
-                            "Illegal Back reference of \'" + repl_chars[i + 1] + "\'");
-
-                    repl_chars[i] = '$';
-                }
-            }
-
-//      System.out.println("repl string is now " + String.valueOf(repl_chars));
-            replacement = String.valueOf(repl_chars);
-        }
-        catch(REException e)
-        {
-            System.out.println("Exception: " + e);
-        }
+        grp_regex = new SubstitutionRegex(regex);
+    }
+
+    /**
+     * Set the substitution that extracts a group ID when it has already been built.
+     *
+     * @param regex The substitution to use
+     */
+    void setNidRegex(SubstitutionRegex regex)
+    {
+        grp_regex = regex;
+    }
+
+    /**
+     * Get the substitution that extracts a group ID from the URN.
+     *
+     * @return The substitution or null if not set
+     */
+    SubstitutionRegex getNidRegex()
+    {
+        return grp_regex;
+    }
+
+    /**
+     * Get all of the groups in this namespace.
+     *
+     * @return The list of groups in no particular order
+     */
+    GroupResource[] getGroups()
+    {
+        GroupResource[] ret_val = new GroupResource[groups_list.size()];
+        groups_list.values().toArray(ret_val);
+
+        return ret_val;
     }
 
     /**
@@ -203,6 +170,22 @@ public class NamespaceResolver
         current_group.addResource(url, regex);
     }
 
+    /**
+     * Add a resource with a substitution that has already been built to the currently set group.
+     *
+     * @param url The core Url string to use
+     * @param regex The substitution for this resource
+     * @throws NoSuchGroupException No group has been set yet
+     */
+    void addResource(String url, SubstitutionRegex regex)
+        throws NoSuchGroupException
+    {
+        if(current_group == null)
+            throw new NoSuchGroupException();
+
+        current_group.addResource(url, regex);
+    }
+
     /**
      * Decode the namespace specific string into a particular resource and retrieve the URL describing
      * it.
@@ -229,16 +212,10 @@ public class NamespaceResolver
         if(res == null)
             throw new UnknownNIDException();
 
-        String ret_val = null;
+        String ret_val = res.resolveSingle(urn.toExternalForm());
 
-        try
-        {
-            ret_val = res.resolveSingle(urn.toExternalForm());
-        }
-        catch(MalformedURLException mue)
-        {
+        if(ret_val == null)
             throw new UnresolvableURIException();
-        }
 
         return ret_val;
     }
@@ -253,6 +230,22 @@ public class NamespaceResolver
      */
     public String[] decodeList(URN urn)
         throws UnknownNIDException
+    {
+        return decodeList(urn, 0);
+    }
+
+    /**
+     * Decode the namespace specific string into a list of resources, stopping once the given
+     * number have been found.
+     *
+     * @param urn The URN that this service should decode.
+     * @param max The most URLs to return. Zero or less returns all of them
+     * @return The list of URLs describing the URN, in order of preference
+     * @throws UnknownNIDException The urn's namespace does not match the one assigned for this
+     * class.
+     */
+    public String[] decodeList(URN urn, int max)
+        throws UnknownNIDException
     {
         String namespace = urn.getNamespace();
 
@@ -266,7 +259,7 @@ public class NamespaceResolver
         if(res == null)
             throw new UnknownNIDException();
 
-        String[] ret_val = res.resolveAll(urn.toExternalForm());
+        String[] ret_val = res.resolveAll(urn.toExternalForm(), max);
 
         return ret_val;
     }
@@ -279,14 +272,9 @@ public class NamespaceResolver
      */
     private String extractGroupName(String urn)
     {
-        // strip out the domain name info from the URI based on the pattern
-        REMatch grp_match = grp_regex.getMatch(urn);
-
-//      System.out.println("Match (" + grp_match.getStartIndex()
-//         + "," + grp_match.getEndIndex() + "): "
-//         + grp_match);
-
-        return grp_match.substituteInto(replacement);
+        // strip out the domain name info from the URI based on the pattern.
+        // No match gives no group, which is reported as an unknown NID.
+        return grp_regex.substitute(urn);
     }
 
     /**
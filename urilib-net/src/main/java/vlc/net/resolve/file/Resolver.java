@@ -21,6 +21,8 @@ import java.net.URLConnection;
 import java.net.MalformedURLException;
 import java.util.Properties;
 import java.util.HashMap;
+import java.util.Timer;
+import java.util.TimerTask;
 
 // Application specific imports
 import org.ietf.uri.*;
@@ -39,11 +41,23 @@ import org.ietf.uri.resolve.ConfigErrorException;
  * <p/>
  * If the file is not found after all this, the resolver exits with an exception.
  * <p/>
+ * A compiled index of the bindings, <CODE>urn_bindings.idx</CODE>, is looked for in the same
+ * place. If it is there and is not older than the bindings file it is loaded instead, which is
+ * much quicker for large files. The index is created with {@link BindingsIndex}.
  * <p/>
- * Currently, there are some restrictions on usage. The bindings file is only loaded on first
+ * <p/>
+ * Currently, there are some restrictions on usage. The bindings file is only located on first
  * reference to this class. That means the system property needs to be set before asking to URN
  * resolution and can't be changed.
  * <p/>
+ * The contents of the file may be changed while running. If the system property
+ * <CODE>urn.bindings.reload</CODE> is set to a number of milliseconds, the file is checked that
+ * often in the background. When its modification time changes it is parsed again and the new
+ * bindings replace the old ones in a single step. Decodes already under way carry on with the
+ * bindings they started with and are never held up by a reload. If the new file cannot be read
+ * or parsed, the old bindings are kept. When the index is being used it is the index that is
+ * checked, so the index needs to be compiled again for changes to be seen.
+ * <p/>
  * <p/>
  * For details on URIs see the IETF working group: <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
  * The specification on a File based RDS implementation may be found at <A
@@ -77,8 +91,23 @@ public class Resolver
     private static final String BAD_TYPE_MSG =
         "File service does not support service type: ";
 
-    /** The list of all the bindings for all URNs type */
-    private static HashMap namespace_resolvers;
+    /** Property defining how often to check the bindings file for changes */
+    private static final String RELOAD_PROP = "urn.bindings.reload";
+
+    /**
+     * The list of all the bindings for all URNs type. This is never changed once it has been
+     * set. Reloading the file replaces the whole map.
+     */
+    private static volatile HashMap namespace_resolvers;
+
+    /** Where the bindings file was loaded from */
+    private static java.net.URL bindings_url;
+
+    /** The modification time of the bindings file when it was last loaded */
+    private static long bindings_modified;
+
+    /** The timer checking the bindings file for changes. Null if not reloading */
+    private static Timer reload_timer;
 
     /** The resource factory used to implement connections */
     private URIResourceFactory resource_factory = null;
@@ -92,8 +121,8 @@ public class Resolver
     {
         try
         {
-            // fetch the properties file as a stream
-            InputStream is = null;
+            java.net.URL url = null;
+            java.net.URL index = null;
 
             // OK, lets try the system property read for the full path
             // If we're not allowed to read it a security exception will be
@@ -111,39 +140,55 @@ public class Resolver
 
                 // Create the URL. If this fails due to bad formatting, the catch
                 // clause below will fix it.
-                java.net.URL url = new java.net.URL(buffer.toString());
-                URLConnection connection = url.openConnection();
+                url = new java.net.URL(buffer.toString());
 
-                // open the connection and clear any possible header stuff that is
-                // not needed to load this from the file.
-                connection.connect();
-                connection.getContentType();
-                connection.getContentEncoding();
-                connection.getContentLength();
-
-                is = connection.getInputStream();
+                buffer.append(BindingsIndex.INDEX_EXT);
+                index = new java.net.URL(buffer.toString());
             }
             else
             {
                 // try the system resources
-                is = ClassLoader.getSystemResourceAsStream(URN_BINDINGS_FILE);
+                url = ClassLoader.getSystemResource(URN_BINDINGS_FILE);
+                index = ClassLoader.getSystemResource(URN_BINDINGS_FILE +
+                                                      BindingsIndex.INDEX_EXT);
             }
 
-            // from that stream load it into a properties table
-            if(is == null)
+            url = chooseBindings(url, index);
+
+            if(url == null)
                 throw new NoURNBindingsException("No stream to bindings file");
 
             // parse the bindings file. If there are syntax errors here this
             // will throw a ConfigErrorException, which we want to pass through
             // to the caller.
-            namespace_resolvers = FileParser.parseBindingsFile(is);
-            is.close();
+            loadBindings(url);
         }
         catch(IOException ioe)
         {
             throw new NoURNBindingsException("Static init URN Bindings:\n" +
                                                  ioe);
         }
+
+        long interval = 0;
+
+        try
+        {
+            String prop = System.getProperty(RELOAD_PROP);
+
+            if(prop != null)
+                interval = Long.parseLong(prop.trim());
+        }
+        catch(SecurityException se)
+        {
+            // if we can't read it, then ignore it. Don't reload.
+        }
+        catch(NumberFormatException nfe)
+        {
+            System.err.println("Invalid value for " + RELOAD_PROP + ": " + nfe);
+        }
+
+        if(interval > 0)
+            startReloading(interval);
     }
 
     /**
@@ -188,6 +233,166 @@ public class Resolver
         return namespace_resolvers.containsKey(nid);
     }
 
+    /**
+     * Decide whether to load the bindings file or the compiled index. The index is used when it
+     * can be read and the bindings file is not newer than it.
+     *
+     * @param url The location of the bindings file. May be null
+     * @param index The location of the index. May be null
+     * @return The location to load the bindings from, or null if there are none
+     */
+    private static java.net.URL chooseBindings(java.net.URL url, java.net.URL index)
+    {
+        if(index == null)
+            return url;
+
+        long index_modified = getLastModified(index);
+
+        if(index_modified == -1)
+            return url;
+
+        if(url != null)
+        {
+            long url_modified = getLastModified(url);
+
+            if(url_modified > index_modified)
+            {
+                System.err.println("URN bindings index " + index + " is older than " +
+                                   url + ". Ignoring the index");
+                return url;
+            }
+        }
+
+        return index;
+    }
+
+    /**
+     * Get the modification time of the file at the given location.
+     *
+     * @param url The location to check
+     * @return The modification time, 0 if not known or -1 if the file can't be opened
+     */
+    private static long getLastModified(java.net.URL url)
+    {
+        try
+        {
+            URLConnection connection = url.openConnection();
+            connection.setUseCaches(false);
+
+            long modified = connection.getLastModified();
+
+            // Make sure it is really there. This also closes any stream opened to get the time
+            connection.getInputStream().close();
+
+            return modified;
+        }
+        catch(IOException ioe)
+        {
+            return -1;
+        }
+    }
+
+    /**
+     * Read and parse the bindings file from the given location. The new bindings are only made
+     * visible once the whole file has been parsed. A location ending in the index extension is
+     * read as a compiled index.
+     *
+     * @param url The location of the bindings file or index
+     * @throws IOException The file could not be read
+     * @throws ConfigErrorException There was a syntax problem somewhere in the file
+     */
+    private static synchronized void loadBindings(java.net.URL url)
+        throws IOException, ConfigErrorException
+    {
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+
+        // open the connection and clear any possible header stuff that is
+        // not needed to load this from the file.
+        connection.connect();
+        connection.getContentType();
+        connection.getContentEncoding();
+        connection.getContentLength();
+
+        long modified = connection.getLastModified();
+        InputStream is = connection.getInputStream();
+        HashMap resolvers;
+
+        try
+        {
+            if(url.getPath().endsWith(BindingsIndex.INDEX_EXT))
+                resolvers = BindingsIndex.read(url, is);
+            else
+                resolvers = FileParser.parseBindingsFile(is);
+        }
+        finally
+        {
+            is.close();
+        }
+
+        bindings_url = url;
+        bindings_modified = modified;
+        namespace_resolvers = resolvers;
+    }
+
+    /**
+     * Check the modification time of the bindings file and load it again if it has changed.
+     * Any problem leaves the current bindings in place.
+     */
+    private static synchronized void checkBindings()
+    {
+        try
+        {
+            URLConnection connection = bindings_url.openConnection();
+            connection.setUseCaches(false);
+
+            long modified = connection.getLastModified();
+
+            // Some protocols open the stream just to get the time, so close it
+            connection.getInputStream().close();
+
+            if((modified == 0) || (modified == bindings_modified))
+                return;
+
+            // Don't keep trying a broken file until it changes again
+            bindings_modified = modified;
+
+            loadBindings(bindings_url);
+
+            // The namespaces we answer for may have changed
+            RDSManager.clearResolverChains();
+        }
+        catch(IOException ioe)
+        {
+            System.err.println("Unable to reload URN bindings: " + ioe);
+        }
+        catch(ConfigErrorException cee)
+        {
+            System.err.println("Unable to reload URN bindings: " + cee);
+        }
+    }
+
+    /**
+     * Start checking the bindings file for changes in the background. Only one check is ever
+     * running, no matter how many resolver instances are created.
+     *
+     * @param interval The time between checks in milliseconds
+     */
+    private static synchronized void startReloading(long interval)
+    {
+        if(reload_timer != null)
+            return;
+
+        reload_timer = new Timer(true);
+        reload_timer.schedule(new TimerTask()
+        {
+            public void run()
+            {
+                checkBindings();
+            }
+        }, interval, interval);
+    }
+
     /**
      * Set the resource factory to be used by the resolver. This will be called once only during the
      * life of this class instance. If the implementation wishes to ignore this then it shall not
@@ -220,12 +425,14 @@ public class Resolver
         if((service != I2L) && (service != I2R))
             throw new UnsupportedServiceException(BAD_TYPE_MSG + service);
 
-        if(!canResolve(nid))
+        // Only look at the bindings once so that a reload can't change them part way through
+        NamespaceResolver res = (NamespaceResolver)namespace_resolvers.get(nid);
+
+        if(res == null)
             return null;
 
         Object ret_val = null;
         String current_url = null;
-        NamespaceResolver res = (NamespaceResolver)namespace_resolvers.get(nid);
 
         try
         {
@@ -240,6 +447,9 @@ public class Resolver
             // ignore this because it allows us to return null
         }
 
+        if(current_url == null)
+            return null;
+
         if(service == I2L)
         {
             try
@@ -296,17 +506,35 @@ public class Resolver
      */
     public Object[] decodeList(URN urn, int service)
         throws UnsupportedServiceException
+    {
+        return decodeList(urn, service, 0);
+    }
+
+    /**
+     * Decode the namespace specific string into no more than the given number of resources. Only
+     * as many of the resources are looked at as needed to find that many matches, so this is much
+     * quicker than fetching the full list when the group is large.
+     *
+     * @param urn The URN that this service should decode.
+     * @param service The type of object that should be returned
+     * @param max The most items to return. Zero or less returns all of them
+     * @return A URC, URI or ResourceConnections as appropriate
+     * @throws UnsupportedServiceException The service requested is not available from this resolver.
+     */
+    public Object[] decodeList(URN urn, int service, int max)
+        throws UnsupportedServiceException
     {
         String nid = urn.getNamespace();
 
         if((service != I2Ls) && (service != I2Rs))
             throw new UnsupportedServiceException(BAD_TYPE_MSG + service);
 
-        if(!canResolve(nid))
-            return null;
-
+        // Only look at the bindings once so that a reload can't change them part way through
         NamespaceResolver res = (NamespaceResolver)namespace_resolvers.get(nid);
 
+        if(res == null)
+            return null;
+
         int i, size;
         int ret_cnt = 0;
         Object[] ret_vals = null;
@@ -314,7 +542,7 @@ public class Resolver
 
         try
         {
-            current_url = res.decodeList(urn);
+            current_url = res.decodeList(urn, max);
         }
         catch(UnknownNIDException une)
         {
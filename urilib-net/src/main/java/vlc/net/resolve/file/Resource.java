@@ -14,12 +14,7 @@
 package vlc.net.resolve.file;
 
 // Standard imports
-
-import java.net.MalformedURLException;
-import java.util.ArrayList;
-import java.util.HashMap;
-
-import gnu.regexp.*;
+// none
 
 // Application specific imports
 import org.ietf.uri.*;
@@ -31,9 +26,8 @@ import org.ietf.uri.*;
  * The holder class does all the manipulation required for each resource. On setup, it does validity
  * checking of all data. On query, it generates the completed URL as required.
  * <p/>
- * There currently are implementation problems with the regex handling. It does not like handling
- * standard punctuation chars in the replacement string with the substitute in there. It attempts to
- * read them as regex expressions. Even when '\' escaped it does not seem to like it :(
+ * The regular expression and replacement string are compiled once when the resource is created.
+ * Punctuation in the replacement string is copied through as plain text.
  * <p/>
  * <p/>
  * For details on URIs see the IETF working group: <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
@@ -62,11 +56,8 @@ class Resource
     /** The base URL that we are dealing with */
     private String url;
 
-    /** The regular expression to change regular expression to something useful */
-    private RE url_regex;
-
-    /** The replacement string */
-    private String replacement;
+    /** The regular expression to change the URN to something useful */
+    private SubstitutionRegex url_regex;
 
     /**
      * Create a new resource and check to see everything is OK. If not, barf
@@ -78,125 +69,57 @@ class Resource
     Resource(String url, String regex)
         throws InvalidRegexException
     {
-        this.url = url;
-
-        checkRegex(regex);
+        this(url, new SubstitutionRegex(regex));
     }
 
     /**
-     * Check the regular expression needed to extract deal with a URL. If it is not of the correct
-     * format then barf. Otherwise exit quietly.
+     * Create a new resource from a substitution that has already been built.
      *
-     * @param regexp The regular expression to set.
-     * @throws InvalidRegexException The Regexp did not fit the required pattern.
+     * @param url The source URL to work with
+     * @param regex The substitution to associate with this URL
      */
-    private void checkRegex(String regex)
-        throws InvalidRegexException
+    Resource(String url, SubstitutionRegex regex)
     {
-        int i;
-        RE re;
-        REMatch[] matches;
-        boolean check_case = true;
-
-        char delimiter = regex.charAt(0);
-        String tokenizer_regex =
-            "^" + delimiter + "(.*)" + delimiter + "(.*)" + delimiter + "(.*)" + "$";
-
-        try
-        {
-            re = new RE(tokenizer_regex, 0, RESyntax.RE_SYNTAX_POSIX_EXTENDED);
-
-            // Check the syntax to first make sure that the regex that has been
-            // passed in is in fact of the correct form. If not, then barf.
-            matches = re.getAllMatches(regex);
-
-            if(matches.length == 0)
-            {
-                System.out.println("Invalid RE syntax");
-                throw new InvalidRegexException("Invalid pattern");
-            }
-
-            regex = matches[0].substituteInto("$1");
-            replacement = matches[0].substituteInto("$2");
-            String flag_str = matches[0].substituteInto("$3");
-
-            boolean case_sensitive = (flag_str != null) && (flag_str.equals("i"));
-
-            try
-            {
-                if(case_sensitive)
-                    url_regex = new RE(regex, 0, RESyntax.RE_SYNTAX_POSIX_EXTENDED);
-                else
-                    url_regex = new RE(regex,
-                                       RE.REG_ICASE,
-                                       RESyntax.RE_SYNTAX_POSIX_EXTENDED);
-            }
-            catch(Exception e)
-            {
-                // means there was something stuffed in the regular expression
-                // definition.
-                throw new InvalidRegexException("Invalid substitution style");
-            }
-
-            // Check the repl string for '\' characters and replace them with '$'
-            // We do this the hard way in the raw character array as it is much
-            // faster and less likely to get the RE stuff confused.
-            int len = replacement.length();
-            char[] repl_chars = new char[len];
-            replacement.getChars(0, len, repl_chars, 0);
-
-            len--;  // stop one before the end with the checks
+        this.url = url;
 
-            for(i = 0; i < len; i++)
-            {
-                if(repl_chars[i] == '\\')
-                {
-                    // quick check for legality
-                    if((!Character.isDigit(repl_chars[i + 1])) ||
-                        (repl_chars[i + 1] == '0'))
-                        throw new InvalidRegexException("Illegal Back reference of \'" +
-                                                            repl_chars[i + 1] + "\'");
+        url_regex = regex;
+    }
 
-                    repl_chars[i] = '$';
-                }
-            }
+    /**
+     * Get the base URL of this resource.
+     *
+     * @return The base URL string
+     */
+    String getURL()
+    {
+        return url;
+    }
 
-//      System.out.println("repl string is now " + String.valueOf(repl_chars));
-            replacement = String.valueOf(repl_chars);
-        }
-        catch(REException e)
-        {
-            System.out.println("Exception: " + e);
-        }
+    /**
+     * Get the substitution used to build the URL.
+     *
+     * @return The substitution for this resource
+     */
+    SubstitutionRegex getRegex()
+    {
+        return url_regex;
     }
 
     /**
-     * Resolve the URL into something meaningful.
+     * Resolve the URL into something meaningful. A URN that doesn't match is common when a group
+     * has many resources, so it is not treated as an error.
      *
      * @param urn The urn to use as the source
-     * @return The fully qualified URL
-     * @throws MalformedURLException The source URL is stuffed
+     * @return The fully qualified URL or null if the urn does not match
      */
     String resolve(String urn)
-        throws MalformedURLException
     {
         // strip out the domain name info from the URI based on the pattern
-        REMatch uri_match = url_regex.getMatch(urn);
-
-//  System.out.println("Checking against url_regex " + url_regex);
-
-        if(uri_match == null)
-            throw new MalformedURLException("Cannot generate a match");
-
-//    System.out.println("Match (" + uri_match.getStartIndex()
-//         + "," + uri_match.getEndIndex() + "): "
-//         + uri_match);
-
-        String tail = uri_match.substituteInto(replacement);
-        StringBuffer buffer = new StringBuffer(url);
-        buffer.append(tail);
+        StringBuffer buffer = new StringBuffer(url.length() + urn.length());
+        buffer.append(url);
 
-//  System.out.println("Final version is " + buffer.toString());
+        if(!url_regex.substituteInto(urn, buffer))
+            return null;
 
         return buffer.toString();
     }
@@ -0,0 +1,635 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+
+package vlc.net.resolve.file;
+
+// Standard imports
+import java.util.ArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+// Application specific imports
+// none
+
+/**
+ * A compiled substitution of the form <code>/regex/replacement/flags</code>
+ * as used in the bindings file.
+ * <p/>
+ * The first character of the definition is taken as the delimiter. The
+ * regular expression is compiled once into a <code>java.util.regex</code>
+ * pattern and the replacement string is broken up into a list of literal
+ * text and group references. Back references are written as <code>\1</code>
+ * to <code>\9</code>. Substituting then only needs one match of the pattern
+ * and a walk along the segment list. A matcher is kept for each thread, so
+ * a single instance may be used by many threads at once.
+ * <p/>
+ * Matching is case insensitive unless the flags are <code>i</code>. This
+ * is the reverse of the usual meaning but is how the bindings files have
+ * always been read.
+ * <p/>
+ * Most definitions start with a fixed piece of text such as
+ * <code>urn:vrml:umel:</code>. That literal prefix is pulled out of the
+ * regular expression when it is compiled, and input that does not contain
+ * it is turned away without running the regular expression at all. The
+ * usual form of a namespace definition, <code>/prefix([^chars]+)/\1/</code>,
+ * is handled entirely without the regular expression engine: the prefix is
+ * compared and the run of characters up to one of the stop characters is
+ * taken as the answer.
+ * <p/>
+ * A definition may also be created from its parts that have already been
+ * split and checked, as is done when reading a compiled bindings index.
+ * The regular expression is then not compiled until it is first needed,
+ * so namespaces and resources that are never asked for cost nothing.
+ * <p/>
+ * <p/>
+ * For details on URIs see the IETF working group: <A HREF="http://www.ietf.org/html.charters/urn-charter.html">URN</A>
+ * The specification on a File based RDS implementation may be found at <A
+ * HREF="http://www.vlc.com.au/~justin/java/urn/file_based_resolver.html">
+ * http://www.vlc.com.au/~justin/java/urn/file_based_resolver.html</A>
+ * <p/>
+ * <p/>
+ * This softare is released under the <A HREF="http://www.gnu.org/copyleft/lgpl.html">GNU LGPL</A>
+ * <p/>
+ * <p/>
+ * DISCLAIMER:<BR> This software is the under development, incomplete, and is known to contain bugs.
+ * This software is made available for review purposes only. Do not rely on this software for
+ * production-quality applications or for mission-critical applications.
+ * <p/>
+ * <p/>
+ * Portions of the APIs for some new features have not been finalized and APIs may change. Some
+ * features are not fully implemented in this release. Use at your own risk.
+ * <p/>
+ *
+ * @author Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+class SubstitutionRegex
+{
+    /** Characters that end the literal prefix of a regular expression */
+    private static final String META_CHARS = ".[]()*+?{}|^$";
+
+    /** Characters that make the character before them optional or repeated */
+    private static final String QUANTIFIERS = "?*+{";
+
+    /** The regular expression part of the definition */
+    private final String regex;
+
+    /** The replacement part of the definition */
+    private final String replacement;
+
+    /** The flags part of the definition */
+    private final String flags;
+
+    /** The compiled regular expression. Null until first needed */
+    private volatile Pattern pattern;
+
+    /** The literal text of each replacement segment, or null for a group */
+    private final String[] seg_text;
+
+    /** The group number of each replacement segment, or -1 for text */
+    private final int[] seg_group;
+
+    /** A matcher for the pattern for each thread using this instance */
+    private final ThreadLocal matchers;
+
+    /** The text that every match must start with. May be empty */
+    private final String literal_prefix;
+
+    /** true if the match must start at the beginning of the input */
+    private final boolean anchored;
+
+    /** true if the literal prefix must match with the same case */
+    private final boolean case_sensitive;
+
+    /**
+     * For a definition of the form prefix([^chars]+) replaced by \1, the
+     * characters that end the group. Null for any other form.
+     */
+    private final String capture_stops;
+
+    /**
+     * Compile the substitution definition. If it is not of the correct
+     * format then barf.
+     *
+     * @param definition The full /regex/replacement/flags definition
+     * @throws InvalidRegexException The definition did not fit the required pattern.
+     */
+    SubstitutionRegex(String definition)
+        throws InvalidRegexException
+    {
+        this(splitDefinition(definition), true);
+    }
+
+    /**
+     * Create a substitution from a definition that has already been split
+     * into its parts. The regular expression is not compiled until it is
+     * first used, so it must already be known to be valid.
+     *
+     * @param regex The regular expression
+     * @param replacement The replacement string
+     * @param flags The flags string
+     * @throws InvalidRegexException The replacement is not valid
+     */
+    SubstitutionRegex(String regex, String replacement, String flags)
+        throws InvalidRegexException
+    {
+        this(new String[] { regex, replacement, flags }, false);
+    }
+
+    /**
+     * Build the substitution from the parts of the definition.
+     *
+     * @param parts The regex, replacement and flags strings
+     * @param compile true if the regular expression should be compiled now
+     * @throws InvalidRegexException The definition is not valid
+     */
+    private SubstitutionRegex(String[] parts, boolean compile)
+        throws InvalidRegexException
+    {
+        regex = parts[0];
+        replacement = parts[1];
+        flags = parts[2];
+
+        case_sensitive = flags.equals("i");
+
+        if(compile)
+            pattern = compile();
+
+        // Split the replacement string into literal text and back references.
+        // Both \n and $n refer to a group. A '\' that ends the string is
+        // just a literal character.
+        ArrayList text_list = new ArrayList();
+        ArrayList group_list = new ArrayList();
+        StringBuffer literal = new StringBuffer();
+        int len = replacement.length();
+
+        for(int i = 0; i < len; i++)
+        {
+            char ch = replacement.charAt(i);
+
+            if((ch == '\\') && (i + 1 < len))
+            {
+                char next = replacement.charAt(i + 1);
+
+                // quick check for legality
+                if(!Character.isDigit(next) || (next == '0'))
+                    throw new InvalidRegexException("Illegal Back reference of \'" +
+                                                    next + "\'");
+            }
+            else if((ch != '$') ||
+                    (i + 1 == len) ||
+                    !Character.isDigit(replacement.charAt(i + 1)))
+            {
+                literal.append(ch);
+                continue;
+            }
+
+            if(literal.length() != 0)
+            {
+                text_list.add(literal.toString());
+                group_list.add(null);
+                literal.setLength(0);
+            }
+
+            i++;
+            text_list.add(null);
+            group_list.add(new Integer(replacement.charAt(i) - '0'));
+        }
+
+        if(literal.length() != 0)
+        {
+            text_list.add(literal.toString());
+            group_list.add(null);
+        }
+
+        int size = text_list.size();
+        seg_text = new String[size];
+        seg_group = new int[size];
+        text_list.toArray(seg_text);
+
+        for(int i = 0; i < size; i++)
+        {
+            Integer grp = (Integer)group_list.get(i);
+            seg_group[i] = (grp == null) ? -1 : grp.intValue();
+        }
+
+        matchers = new ThreadLocal()
+        {
+            protected Object initialValue()
+            {
+                return getPattern().matcher("");
+            }
+        };
+
+        // Pull the literal text off the front of the regex. An alternation
+        // anywhere means the match could start with something else.
+        int regex_len = regex.length();
+        int pos = 0;
+        StringBuffer prefix = new StringBuffer();
+
+        anchored = (regex_len > 0) && (regex.charAt(0) == '^');
+
+        if(anchored)
+            pos++;
+
+        while(pos < regex_len)
+        {
+            char ch = regex.charAt(pos);
+
+            if(ch == '\\')
+            {
+                // Escaped punctuation is literal. Escaped letters and digits
+                // are classes or back references, so stop there.
+                if((pos + 1 == regex_len) ||
+                   Character.isLetterOrDigit(regex.charAt(pos + 1)))
+                    break;
+
+                prefix.append(regex.charAt(pos + 1));
+                pos += 2;
+            }
+            else if(META_CHARS.indexOf(ch) != -1)
+            {
+                break;
+            }
+            else
+            {
+                prefix.append(ch);
+                pos++;
+            }
+        }
+
+        // A quantifier makes the last literal character optional
+        if((pos < regex_len) && (QUANTIFIERS.indexOf(regex.charAt(pos)) != -1) &&
+           (prefix.length() != 0))
+        {
+            prefix.setLength(prefix.length() - 1);
+            pos = -1;
+        }
+
+        if(regex.indexOf('|') != -1)
+        {
+            literal_prefix = "";
+            capture_stops = null;
+        }
+        else
+        {
+            literal_prefix = prefix.toString();
+
+            if((pos != -1) &&
+               (seg_text.length == 1) &&
+               (seg_group[0] == 1))
+                capture_stops = parseCaptureStops(regex, pos);
+            else
+                capture_stops = null;
+        }
+    }
+
+    /**
+     * Break a definition up into its regex, replacement and flags parts. The
+     * regex takes as much as it can, so the last two delimiters mark off the
+     * replacement and flags. This matches the way the definitions have always
+     * been read.
+     *
+     * @param definition The full /regex/replacement/flags definition
+     * @return The three parts of the definition
+     * @throws InvalidRegexException The definition has too few delimiters
+     */
+    private static String[] splitDefinition(String definition)
+        throws InvalidRegexException
+    {
+        if(definition.length() == 0)
+            throw new InvalidRegexException("Invalid pattern");
+
+        char delimiter = definition.charAt(0);
+        int last = definition.lastIndexOf(delimiter);
+        int mid = (last > 0) ? definition.lastIndexOf(delimiter, last - 1) : -1;
+
+        if(mid <= 0)
+            throw new InvalidRegexException("Invalid pattern");
+
+        return new String[] {
+            definition.substring(1, mid),
+            definition.substring(mid + 1, last),
+            definition.substring(last + 1)
+        };
+    }
+
+    /**
+     * Compile the regular expression with the flags of this definition.
+     *
+     * @return The compiled pattern
+     * @throws InvalidRegexException The regular expression is not valid
+     */
+    private Pattern compile()
+        throws InvalidRegexException
+    {
+        try
+        {
+            if(case_sensitive)
+                return Pattern.compile(regex);
+            else
+                return Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+        }
+        catch(PatternSyntaxException pse)
+        {
+            // means there was something stuffed in the regular expression
+            // definition.
+            throw new InvalidRegexException("Invalid substitution style: " +
+                                            pse.getDescription());
+        }
+    }
+
+    /**
+     * Get the compiled pattern, compiling it on first use. Two threads may
+     * both compile it the first time, but they end up with equal patterns.
+     *
+     * @return The compiled pattern
+     */
+    private Pattern getPattern()
+    {
+        Pattern ret_val = pattern;
+
+        if(ret_val == null)
+        {
+            try
+            {
+                ret_val = compile();
+            }
+            catch(InvalidRegexException ire)
+            {
+                // The index compiler checked every pattern before writing it
+                throw new IllegalStateException(ire.getMessage());
+            }
+
+            pattern = ret_val;
+        }
+
+        return ret_val;
+    }
+
+    /**
+     * Get the regular expression part of the definition.
+     *
+     * @return The regular expression string
+     */
+    String getRegex()
+    {
+        return regex;
+    }
+
+    /**
+     * Get the replacement part of the definition.
+     *
+     * @return The replacement string
+     */
+    String getReplacement()
+    {
+        return replacement;
+    }
+
+    /**
+     * Get the flags part of the definition.
+     *
+     * @return The flags string
+     */
+    String getFlags()
+    {
+        return flags;
+    }
+
+    /**
+     * Find the first match of the regular expression in the input and
+     * append the replacement for it to the buffer. If there is no match,
+     * the buffer is left untouched.
+     *
+     * @param input The string to match against
+     * @param buffer The buffer to append the replacement to
+     * @return true if the input matched
+     */
+    boolean substituteInto(CharSequence input, StringBuffer buffer)
+    {
+        if(capture_stops != null)
+            return captureInto(input, buffer);
+
+        if(!mayMatch(input))
+            return false;
+
+        Matcher matcher = (Matcher)matchers.get();
+        matcher.reset(input);
+
+        if(!matcher.find())
+        {
+            matcher.reset("");
+            return false;
+        }
+
+        int group_count = matcher.groupCount();
+
+        for(int i = 0; i < seg_text.length; i++)
+        {
+            int grp = seg_group[i];
+
+            if(grp == -1)
+            {
+                buffer.append(seg_text[i]);
+            }
+            else if(grp <= group_count)
+            {
+                // Groups that took no part in the match add nothing
+                int start = matcher.start(grp);
+
+                if(start != -1)
+                    buffer.append(input, start, matcher.end(grp));
+            }
+        }
+
+        // don't hold on to the input between calls
+        matcher.reset("");
+
+        return true;
+    }
+
+    /**
+     * Find the first match of the regular expression in the input and
+     * return the replacement for it.
+     *
+     * @param input The string to match against
+     * @return The replacement string or null if the input did not match
+     */
+    String substitute(CharSequence input)
+    {
+        StringBuffer buffer = new StringBuffer();
+
+        return substituteInto(input, buffer) ? buffer.toString() : null;
+    }
+
+    /**
+     * Check the literal prefix against the input. If this returns false
+     * the regular expression cannot match. If it returns true, it might.
+     *
+     * @param input The string to check
+     * @return false if the input can be turned away
+     */
+    boolean mayMatch(CharSequence input)
+    {
+        int plen = literal_prefix.length();
+
+        if(plen == 0)
+            return true;
+
+        int last = anchored ? 0 : input.length() - plen;
+
+        // Java's case folding covers more than the ASCII only folding used
+        // by the regex, so this never turns away something that matches.
+        String str = input.toString();
+
+        for(int i = 0; i <= last; i++)
+        {
+            if(str.regionMatches(!case_sensitive, i, literal_prefix, 0, plen))
+                return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Work out the answer for a definition of the form prefix([^chars]+)
+     * replaced by \1 without using the regular expression. Gives the same
+     * result as finding the first match of the expression: the first place
+     * where the prefix is followed by at least one character that is not
+     * a stop character.
+     *
+     * @param input The string to match against
+     * @param buffer The buffer to append the replacement to
+     * @return true if the input matched
+     */
+    private boolean captureInto(CharSequence input, StringBuffer buffer)
+    {
+        int len = input.length();
+        int plen = literal_prefix.length();
+        int last = anchored ? 0 : len - plen - 1;
+
+        for(int i = 0; i <= last; i++)
+        {
+            int start = i + plen;
+
+            if((start >= len) ||
+               (capture_stops.indexOf(input.charAt(start)) != -1) ||
+               !prefixAt(input, i))
+                continue;
+
+            int end = start + 1;
+
+            while((end < len) && (capture_stops.indexOf(input.charAt(end)) == -1))
+                end++;
+
+            buffer.append(input, start, end);
+
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Check to see if the literal prefix appears at the given place in the
+     * input, folding ASCII letters only when matching without case as the
+     * regular expression engine does.
+     *
+     * @param input The string to check
+     * @param offset The index in the input to compare from
+     * @return true if the prefix is there
+     */
+    private boolean prefixAt(CharSequence input, int offset)
+    {
+        int plen = literal_prefix.length();
+
+        for(int i = 0; i < plen; i++)
+        {
+            char a = input.charAt(offset + i);
+            char b = literal_prefix.charAt(i);
+
+            if((a != b) &&
+               (case_sensitive || (toLowerASCII(a) != toLowerASCII(b))))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Check whether the rest of a regular expression is exactly a single
+     * group of one or more characters from a negated set of punctuation,
+     * such as <code>([^\/:]+)</code>, and return the characters in the set.
+     *
+     * @param regex The regular expression
+     * @param pos The index just past the literal prefix
+     * @return The characters in the set or null if not of that form
+     */
+    private static String parseCaptureStops(String regex, int pos)
+    {
+        if(!regex.startsWith("([^", pos))
+            return null;
+
+        int len = regex.length();
+        StringBuffer stops = new StringBuffer();
+
+        pos += 3;
+
+        while((pos < len) && (regex.charAt(pos) != ']'))
+        {
+            char ch = regex.charAt(pos);
+
+            if(ch == '\\')
+            {
+                if((pos + 1 == len) ||
+                   Character.isLetterOrDigit(regex.charAt(pos + 1)))
+                    return null;
+
+                ch = regex.charAt(pos + 1);
+                pos++;
+            }
+            else if("[^-&".indexOf(ch) != -1)
+            {
+                // ranges, nested classes and intersections are too hard
+                return null;
+            }
+
+            // Letters would be affected by case folding. Leave them to the
+            // regex engine.
+            if(Character.isLetter(ch))
+                return null;
+
+            stops.append(ch);
+            pos++;
+        }
+
+        if((stops.length() == 0) || !regex.substring(pos).equals("]+)"))
+            return null;
+
+        return stops.toString();
+    }
+
+    /**
+     * Convert an ASCII upper case letter to lower case.
+     *
+     * @param ch The character to convert
+     * @return The lower case equivalent
+     */
+    private static char toLowerASCII(char ch)
+    {
+        return ((ch >= 'A') && (ch <= 'Z')) ? (char)(ch + ('a' - 'A')) : ch;
+    }
+}
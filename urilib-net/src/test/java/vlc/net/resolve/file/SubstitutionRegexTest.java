@@ -0,0 +1,271 @@
+/*
+ * Copyright (c) 1999 - 2012 The Virtual Light Company
+ *                            http://www.vlc.com.au/
+ *
+ * This code is licensed under the GNU Library GPL v2.1. Please read docs/LICENSE.txt
+ * for the full details. A copy of the LGPL may be found at
+ *
+ * http://www.gnu.org/copyleft/lgpl.html
+ *
+ * The code is distributed as-is and contains no warranty or guarantee for fitnesse of
+ * purpose. Use it at your own risk.
+ */
+
+
+package vlc.net.resolve.file;
+
+// Standard imports
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+// Application specific imports
+// none
+
+/**
+ * Checks that the literal prefix check and the capture shortcut of
+ * {@link SubstitutionRegex} give the same answers as running the regular
+ * expression through <code>java.util.regex</code> on every input.
+ *
+ * @author  Justin Couch
+ * @version 0.7 (27 August 1999)
+ */
+public class SubstitutionRegexTest extends TestCase
+{
+    /** Anchored definitions of the usual namespace form */
+    private static final String[][] ANCHORED = {
+        { "^urn:foo:([^:/]+)", "\\1" },
+        { "^http://([^/?#]+)", "\\1" },
+        { "^key:([^/]+)", "\\1" }
+    };
+
+    /** Unanchored definitions of the usual namespace form */
+    private static final String[][] UNANCHORED = {
+        { "foo:([^:/]+)", "\\1" },
+        { "bar/([^/?#]+)", "\\1" },
+        { ":([^:]+)", "\\1" }
+    };
+
+    /** Definitions with escaped punctuation in the prefix or stop set */
+    private static final String[][] ESCAPED = {
+        { "^urn\\:isbn\\.([^\\.]+)", "\\1" },
+        { "\\$x\\(([^\\)]+)", "\\1" },
+        { "a\\.b\\/([^\\/\\?]+)", "\\1" }
+    };
+
+    /** Definitions that must be left to the regex engine */
+    private static final String[][] GENERAL = {
+        { "^urn:foo:(.*)$", "http://host.example/\\1" },
+        { "^urn:(foo|bar):([^/]+)", "\\2" },
+        { "ab*c:([^/]+)", "\\1" },
+        { "urn:fo+:([^/]+)", "\\1" },
+        { "\\d+:([^/]+)", "$1-\\1" },
+        { "^urn:foo:([^:/]+)", "x/\\1" },
+        { "^urn:foo:([^a-z]+)", "\\1" },
+        { "^urn:foo:([^x/]+)", "\\1" },
+        { "^urn:foo:([^:/]*)", "\\1" },
+        { "^urn:foo:([^:/]+)x", "\\1" },
+        { "^urn:foo:([^:/]+)", "" }
+    };
+
+    /** Inputs tried against every definition */
+    private static final String[] INPUTS = {
+        "",
+        "u",
+        "urn:foo:",
+        "urn:foo:bar",
+        "urn:foo:bar/baz",
+        "urn:foo:/bar",
+        "urn:foo::bar",
+        "URN:FOO:Bar",
+        "Urn:Foo:bar:baz",
+        "xurn:foo:abc",
+        "urn:foooo:abc",
+        "urn:bar:abc/def",
+        "urn:foo:abcx",
+        "urn:foo:ABC",
+        "urn:foo:abXcd/e",
+        "a foo:bar",
+        "FOO:bar:baz",
+        "foo:",
+        "foo:foo:x",
+        "bar/q?x",
+        "BAR/query#frag",
+        "http://host.example/path",
+        "HTTP://Host.Example?q",
+        "key:value/rest",
+        "KEY:value",
+        "\u212Aey:value",
+        "urn:isbn.123.4",
+        "URN:ISBN.9",
+        "urn:isbn.",
+        "urnxisbn.1",
+        "$x(abc)d",
+        "$X(abc",
+        "$x()",
+        "a.b/c?d",
+        "A.B/c/d",
+        "axb/c",
+        "abbbc:x/y",
+        "ac:e",
+        "ABC:q",
+        "12:ab/c",
+        "::",
+        "a:b:c",
+        "urn:foo:\u00df\u00e9"
+    };
+
+    /**
+     * Work out the answer using only <code>java.util.regex</code>, with the
+     * same reading of the flags as the bindings file.
+     *
+     * @param regex The regular expression
+     * @param replacement The replacement with back references
+     * @param flags The flags of the definition
+     * @param input The string to match against
+     * @return The substituted string or null if there was no match
+     */
+    private static String reference(String regex,
+                                    String replacement,
+                                    String flags,
+                                    String input)
+    {
+        Pattern pattern = flags.equals("i") ?
+                          Pattern.compile(regex) :
+                          Pattern.compile(regex, Pattern.CASE_INSENSITIVE);
+
+        Matcher matcher = pattern.matcher(input);
+
+        if(!matcher.find())
+            return null;
+
+        StringBuffer buf = new StringBuffer();
+        int len = replacement.length();
+
+        for(int i = 0; i < len; i++)
+        {
+            char ch = replacement.charAt(i);
+
+            if(((ch == '\\') || (ch == '$')) &&
+               (i + 1 < len) &&
+               Character.isDigit(replacement.charAt(i + 1)))
+            {
+                int grp = replacement.charAt(++i) - '0';
+
+                if((grp <= matcher.groupCount()) && (matcher.group(grp) != null))
+                    buf.append(matcher.group(grp));
+            }
+            else
+            {
+                buf.append(ch);
+            }
+        }
+
+        return buf.toString();
+    }
+
+    /**
+     * Compare the answers for every input, with both readings of the flags
+     * and from both ways of creating the definition.
+     *
+     * @param definitions The regular expression and replacement pairs
+     */
+    private static void checkDefinitions(String[][] definitions)
+        throws Exception
+    {
+        String[] flag_list = { "", "i" };
+
+        for(int i = 0; i < definitions.length; i++)
+        {
+            String regex = definitions[i][0];
+            String replacement = definitions[i][1];
+
+            for(int j = 0; j < flag_list.length; j++)
+            {
+                String flags = flag_list[j];
+
+                SubstitutionRegex parts =
+                    new SubstitutionRegex(regex, replacement, flags);
+
+                SubstitutionRegex whole =
+                    new SubstitutionRegex("!" + regex + '!' + replacement +
+                                          '!' + flags);
+
+                for(int k = 0; k < INPUTS.length; k++)
+                {
+                    String input = INPUTS[k];
+                    String expected =
+                        reference(regex, replacement, flags, input);
+                    String msg = "/" + regex + "/" + replacement + "/" +
+                                 flags + " on \"" + input + "\"";
+
+                    assertEquals(msg, expected, parts.substitute(input));
+                    assertEquals(msg, expected, whole.substitute(input));
+
+                    // The prefix check may only turn away non-matches
+                    if(expected != null)
+                        assertTrue(msg, parts.mayMatch(input));
+                }
+            }
+        }
+    }
+
+    /**
+     * Prefixes that must be at the start of the input.
+     */
+    public void testAnchored()
+        throws Exception
+    {
+        checkDefinitions(ANCHORED);
+    }
+
+    /**
+     * Prefixes that may be found anywhere in the input.
+     */
+    public void testUnanchored()
+        throws Exception
+    {
+        checkDefinitions(UNANCHORED);
+    }
+
+    /**
+     * Prefixes and stop sets written with escaped punctuation.
+     */
+    public void testEscaped()
+        throws Exception
+    {
+        checkDefinitions(ESCAPED);
+    }
+
+    /**
+     * Definitions that only have the prefix check in front of the regex.
+     */
+    public void testGeneral()
+        throws Exception
+    {
+        checkDefinitions(GENERAL);
+    }
+
+    /**
+     * Case folding follows the regex engine, which only folds ASCII, and
+     * is turned off by the <code>i</code> flag.
+     */
+    public void testCaseFolding()
+        throws Exception
+    {
+        SubstitutionRegex folded =
+            new SubstitutionRegex("^urn:foo:([^:/]+)", "\\1", "");
+        SubstitutionRegex exact =
+            new SubstitutionRegex("^urn:foo:([^:/]+)", "\\1", "i");
+
+        assertEquals("Bar", folded.substitute("URN:Foo:Bar/x"));
+        assertNull(exact.substitute("URN:Foo:Bar/x"));
+        assertEquals("Bar", exact.substitute("urn:foo:Bar/x"));
+
+        SubstitutionRegex key = new SubstitutionRegex("^key:([^/]+)", "\\1", "");
+
+        assertNull(key.substitute("\u212Aey:value"));
+        assertEquals("value", key.substitute("KEY:value"));
+    }
+}